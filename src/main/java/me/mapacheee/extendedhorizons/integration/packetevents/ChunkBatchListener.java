@@ -0,0 +1,60 @@
+package me.mapacheee.extendedhorizons.integration.packetevents;
+
+import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.event.PacketListenerAbstract;
+import com.github.retrooper.packetevents.event.PacketListenerPriority;
+import com.github.retrooper.packetevents.event.PacketReceiveEvent;
+import com.github.retrooper.packetevents.event.PacketSendEvent;
+import com.github.retrooper.packetevents.protocol.packettype.PacketType;
+import com.github.retrooper.packetevents.wrapper.play.client.WrapperPlayClientChunkBatchAck;
+import com.google.inject.Inject;
+import com.thewinterframework.service.annotation.Service;
+import com.thewinterframework.service.annotation.lifecycle.OnEnable;
+import me.mapacheee.extendedhorizons.viewdistance.service.ChunkFlowController;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+/*
+ *   Feeds chunk batch traffic to ChunkFlowController
+ *   Every outgoing batch finished packet, the server's and ours, is recorded in wire order,
+ *   and every acknowledgement from the client is matched to the oldest one. Acknowledgements
+ *   of our batches are cancelled here, the server's pass through untouched
+ */
+@Service
+public class ChunkBatchListener {
+
+    private final ChunkFlowController flowController;
+
+    @Inject
+    public ChunkBatchListener(ChunkFlowController flowController) {
+        this.flowController = flowController;
+    }
+
+    @OnEnable
+    public void register() {
+        PacketEvents.getAPI().getEventManager().registerListener(new PacketListenerAbstract(PacketListenerPriority.NORMAL) {
+            @Override
+            public void onPacketSend(@NotNull PacketSendEvent event) {
+                if (event.getPacketType() == PacketType.Play.Server.CHUNK_BATCH_END) {
+                    Player player = event.getPlayer();
+                    if (player != null) {
+                        flowController.onBatchEnd(player.getUniqueId());
+                    }
+                }
+            }
+
+            @Override
+            public void onPacketReceive(@NotNull PacketReceiveEvent event) {
+                if (event.getPacketType() == PacketType.Play.Client.CHUNK_BATCH_ACK) {
+                    Player player = event.getPlayer();
+                    if (player == null) return;
+
+                    WrapperPlayClientChunkBatchAck wrapper = new WrapperPlayClientChunkBatchAck(event);
+                    if (flowController.onAck(player.getUniqueId(), wrapper.getDesiredChunksPerTick())) {
+                        event.setCancelled(true);
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,262 @@
+package me.mapacheee.extendedhorizons.integration.packetevents;
+
+import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.event.PacketListenerAbstract;
+import com.github.retrooper.packetevents.event.PacketListenerPriority;
+import com.github.retrooper.packetevents.event.PacketSendEvent;
+import com.github.retrooper.packetevents.netty.buffer.ByteBufHelper;
+import com.github.retrooper.packetevents.protocol.packettype.PacketType;
+import com.github.retrooper.packetevents.protocol.world.chunk.Column;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerChunkData;
+import com.google.inject.Inject;
+import com.thewinterframework.service.annotation.Service;
+import com.thewinterframework.service.annotation.lifecycle.OnEnable;
+import me.mapacheee.extendedhorizons.viewdistance.service.SelfTrafficTracker;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ *   The one PacketEvents listener for outgoing CHUNK_DATA
+ *   Peeks the chunk coordinates and hands the packet to every registered consumer
+ *   Our own sends (SelfTrafficTracker) only reach consumers registered for them, such as
+ *   the cache capture; the rest treat the stream as the server's traffic
+ *   The Column is decoded at most once and only when a consumer asks for it, so
+ *   consumers that need just the coordinates cost no decode at all; consumers that
+ *   keep the chunk copy its encoded body instead
+ *   Runs on Netty threads; consumers must be thread-safe and quick
+ */
+@Service
+public class ChunkPacketDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkPacketDispatcher.class);
+    private static final boolean DEBUG = false;
+
+    /**
+     * Receives each outgoing server chunk packet
+     */
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(ChunkPacket packet);
+    }
+
+    /**
+     * One outgoing chunk packet, shared by all consumers of the dispatch
+     */
+    public final class ChunkPacket {
+        private final PacketSendEvent event;
+        private final Player player;
+        private final long key;
+        private final int bodyStart;
+        private boolean own;
+        private Column column;
+        private boolean decoded;
+        private byte[] body;
+
+        private ChunkPacket(PacketSendEvent event, Player player, long key, int bodyStart) {
+            this.event = event;
+            this.player = player;
+            this.key = key;
+            this.bodyStart = bodyStart;
+        }
+
+        public Player player() {
+            return player;
+        }
+
+        public long key() {
+            return key;
+        }
+
+        public int chunkX() {
+            return (int) (key & 0xFFFFFFFFL);
+        }
+
+        public int chunkZ() {
+            return (int) (key >> 32);
+        }
+
+        /**
+         * Whether the packet is one of our own sends rather than the server's
+         */
+        public boolean isOwn() {
+            return own;
+        }
+
+        /**
+         * Encoded body size in bytes, without the packet id
+         */
+        public int size() {
+            return ByteBufHelper.writerIndex(event.getByteBuf()) - bodyStart;
+        }
+
+        /**
+         * Decodes the packet on first use
+         * @return the column, or null if it could not be decoded
+         */
+        public Column column() {
+            if (!decoded) {
+                decoded = true;
+                decodes.increment();
+                try {
+                    column = new WrapperPlayServerChunkData(event).getColumn();
+                } catch (Throwable e) {
+                    if (DEBUG) {
+                        logger.warn("[EH] Failed to decode chunk {},{}: {}", chunkX(), chunkZ(), e.getMessage());
+                    }
+                }
+            }
+            return column;
+        }
+
+        /**
+         * Copies the encoded body, without the packet id, as the server wrote it.
+         * A copy because the outgoing buffer is pooled and released once written to the socket.
+         * @return the body, or null if it could not be read
+         */
+        public byte[] body() {
+            if (body == null) {
+                Object buffer = event.getByteBuf();
+                int readerIndex = ByteBufHelper.readerIndex(buffer);
+                try {
+                    ByteBufHelper.readerIndex(buffer, bodyStart);
+                    byte[] bytes = new byte[ByteBufHelper.writerIndex(buffer) - bodyStart];
+                    ByteBufHelper.readBytes(buffer, bytes);
+                    body = bytes;
+                } catch (RuntimeException e) {
+                    if (DEBUG) {
+                        logger.warn("[EH] Failed to copy chunk {},{}: {}", chunkX(), chunkZ(), e.getMessage());
+                    }
+                } finally {
+                    ByteBufHelper.readerIndex(buffer, readerIndex);
+                }
+            }
+            return body;
+        }
+
+        /**
+         * Keeps the packet from reaching the client; later consumers still see it
+         */
+        public void cancel() {
+            event.setCancelled(true);
+        }
+    }
+
+    private final SelfTrafficTracker selfTraffic;
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+    private final List<Consumer> ownTrafficConsumers = new CopyOnWriteArrayList<>();
+    private final LongAdder packets = new LongAdder();
+    private final LongAdder decodes = new LongAdder();
+
+    @Inject
+    public ChunkPacketDispatcher(SelfTrafficTracker selfTraffic) {
+        this.selfTraffic = selfTraffic;
+    }
+
+    @OnEnable
+    public void register() {
+        PacketEvents.getAPI().getEventManager().registerListener(new PacketListenerAbstract(PacketListenerPriority.NORMAL) {
+            @Override
+            public void onPacketSend(@NotNull PacketSendEvent event) {
+                if (event.getPacketType() == PacketType.Play.Server.CHUNK_DATA) {
+                    dispatch(event);
+                }
+            }
+        });
+    }
+
+    /**
+     * Registers a consumer of the server's chunk packets
+     */
+    public void addConsumer(Consumer consumer) {
+        addConsumer(consumer, false);
+    }
+
+    /**
+     * @param ownTraffic Whether the consumer also receives our own chunk packets
+     */
+    public void addConsumer(Consumer consumer, boolean ownTraffic) {
+        consumers.add(consumer);
+        if (ownTraffic) {
+            ownTrafficConsumers.add(consumer);
+        }
+    }
+
+    /**
+     * Server chunk packets dispatched so far
+     */
+    public long getPackets() {
+        return packets.sum();
+    }
+
+    /**
+     * Columns decoded so far, at most one per dispatched packet
+     */
+    public long getDecodes() {
+        return decodes.sum();
+    }
+
+    private void dispatch(PacketSendEvent event) {
+        Player player = event.getPlayer();
+        if (player == null) {
+            return;
+        }
+
+        int bodyStart = ByteBufHelper.readerIndex(event.getByteBuf());
+        ChunkPacket packet;
+        try {
+            packet = new ChunkPacket(event, player, ChunkPacketKeys.peek(event), bodyStart);
+        } catch (RuntimeException e) {
+            packet = decodeKey(event, player, bodyStart);
+            if (packet == null) {
+                return;
+            }
+        }
+
+        if (selfTraffic.consume(player.getUniqueId(), packet.key())) {
+            packet.own = true;
+            accept(ownTrafficConsumers, packet);
+            if (packet.decoded) {
+                selfTraffic.countDecoded();
+            } else {
+                selfTraffic.countSkipped();
+            }
+            return;
+        }
+
+        packets.increment();
+        accept(consumers, packet);
+    }
+
+    private static void accept(List<Consumer> consumers, ChunkPacket packet) {
+        for (Consumer consumer : consumers) {
+            try {
+                consumer.accept(packet);
+            } catch (Throwable e) {
+                if (DEBUG) {
+                    logger.warn("[EH] Chunk packet consumer failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Fallback when the coordinates cannot be peeked: decode up front and reuse the column
+     */
+    private ChunkPacket decodeKey(PacketSendEvent event, Player player, int bodyStart) {
+        ChunkPacket probe = new ChunkPacket(event, player, 0L, bodyStart);
+        Column column = probe.column();
+        if (column == null) {
+            return null;
+        }
+        ChunkPacket packet = new ChunkPacket(event, player, ((long) column.getZ() << 32) | (column.getX() & 0xFFFFFFFFL), bodyStart);
+        packet.column = column;
+        packet.decoded = true;
+        return packet;
+    }
+}
@@ -0,0 +1,32 @@
+package me.mapacheee.extendedhorizons.integration.packetevents;
+
+import com.github.retrooper.packetevents.protocol.world.chunk.Column;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerChunkData;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/*
+ *   Encodes decoded chunk columns back into CHUNK_DATA packet bodies
+ *   Used when demoting entries from the decoded tier to the packet tier
+ */
+public final class ChunkPacketEncoder {
+
+    private ChunkPacketEncoder() {}
+
+    /**
+     * Encodes a column with the server's protocol version, without the packet id
+     */
+    public static byte[] encode(Column column) {
+        WrapperPlayServerChunkData wrapper = new WrapperPlayServerChunkData(column);
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            wrapper.setBuffer(buffer);
+            wrapper.write();
+            byte[] body = new byte[buffer.readableBytes()];
+            buffer.readBytes(body);
+            return body;
+        } finally {
+            buffer.release();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package me.mapacheee.extendedhorizons.integration.packetevents;
+
+import com.github.retrooper.packetevents.event.PacketSendEvent;
+import com.github.retrooper.packetevents.netty.buffer.ByteBufHelper;
+
+/*
+ *   Reads the chunk coordinates of an outgoing CHUNK_DATA packet without decoding it
+ *   The body starts with the chunk X and Z as two ints; the reader index is restored
+ *   so wrappers built afterwards read the packet from the start
+ *   Used by ChunkPacketDispatcher to skip our own chunk sends before paying for a decode
+ */
+public final class ChunkPacketKeys {
+
+    private ChunkPacketKeys() {
+    }
+
+    /**
+     * @return the packed chunk key, z in the high and x in the low 32 bits
+     */
+    public static long peek(PacketSendEvent event) {
+        Object buffer = event.getByteBuf();
+        int readerIndex = ByteBufHelper.readerIndex(buffer);
+        try {
+            int chunkX = ByteBufHelper.readInt(buffer);
+            int chunkZ = ByteBufHelper.readInt(buffer);
+            return ((long) chunkZ << 32) | (chunkX & 0xFFFFFFFFL);
+        } finally {
+            ByteBufHelper.readerIndex(buffer, readerIndex);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package me.mapacheee.extendedhorizons.integration.packetevents;
+
+import com.github.retrooper.packetevents.protocol.world.chunk.BaseChunk;
+import com.github.retrooper.packetevents.protocol.world.chunk.Column;
+import com.github.retrooper.packetevents.protocol.world.chunk.TileEntity;
+import com.github.retrooper.packetevents.protocol.world.chunk.impl.v_1_18.Chunk_v1_18;
+import com.github.retrooper.packetevents.protocol.world.chunk.palette.DataPalette;
+
+/*
+ *   Measures the heap footprint of a decoded PacketEvents Column
+ *   Walks the section palettes and their packed storage arrays, which hold almost all
+ *   of the memory, and adds fixed costs for headers, heightmaps and block entities
+ *   Assumes compressed oops (the default below 32GB heaps)
+ */
+public final class ColumnMemoryEstimator {
+
+    /**
+     * Used when the Column layout is not the one this estimator understands
+     */
+    public static final int FALLBACK_BYTES = 40 * 1024;
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int COLUMN_BYTES = 64;
+    private static final int SECTION_BYTES = OBJECT_HEADER + 2 * REFERENCE + 8;
+    private static final int PALETTE_BYTES = OBJECT_HEADER + 3 * REFERENCE + 16;
+    private static final int STORAGE_BYTES = OBJECT_HEADER + REFERENCE + 16;
+    private static final int PALETTE_ENTRY_BYTES = 8;
+    private static final int HEIGHTMAPS_BYTES = 2 * (ARRAY_HEADER + 37 * 8) + 256;
+    private static final int TILE_ENTITY_BYTES = 256;
+    private static final int LEGACY_SECTION_BYTES = 10 * 1024;
+
+    private ColumnMemoryEstimator() {
+    }
+
+    public static int estimate(Column column) {
+        try {
+            long bytes = COLUMN_BYTES + HEIGHTMAPS_BYTES;
+
+            BaseChunk[] sections = column.getChunks();
+            if (sections != null) {
+                bytes += ARRAY_HEADER + (long) sections.length * REFERENCE;
+                for (BaseChunk section : sections) {
+                    if (section instanceof Chunk_v1_18 modern) {
+                        bytes += SECTION_BYTES + paletteBytes(modern.getChunkData()) + paletteBytes(modern.getBiomeData());
+                    } else if (section != null) {
+                        bytes += LEGACY_SECTION_BYTES;
+                    }
+                }
+            }
+
+            TileEntity[] tileEntities = column.getTileEntities();
+            if (tileEntities != null) {
+                bytes += ARRAY_HEADER + (long) tileEntities.length * (REFERENCE + TILE_ENTITY_BYTES);
+            }
+
+            return (int) Math.min(Integer.MAX_VALUE, bytes);
+        } catch (Throwable e) {
+            // Different PacketEvents internals, keep caching with a coarse weight
+            return FALLBACK_BYTES;
+        }
+    }
+
+    private static long paletteBytes(DataPalette palette) {
+        if (palette == null) {
+            return 0;
+        }
+        long bytes = PALETTE_BYTES;
+        if (palette.palette != null) {
+            bytes += ARRAY_HEADER + (long) palette.palette.size() * PALETTE_ENTRY_BYTES;
+        }
+        if (palette.storage != null) {
+            long[] data = palette.storage.getData();
+            bytes += STORAGE_BYTES + (data != null ? ARRAY_HEADER + (long) data.length * 8 : 0);
+        }
+        return bytes;
+    }
+}
@@ -1,108 +1,59 @@
 package me.mapacheee.extendedhorizons.integration.packetevents;
 
-import com.github.retrooper.packetevents.PacketEvents;
-import com.github.retrooper.packetevents.event.PacketListenerAbstract;
-import com.github.retrooper.packetevents.event.PacketListenerPriority;
-import com.github.retrooper.packetevents.event.PacketSendEvent;
-import com.github.retrooper.packetevents.protocol.packettype.PacketType;
-import com.github.retrooper.packetevents.protocol.world.chunk.Column;
-import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerChunkData;
+import com.google.inject.Inject;
 import com.thewinterframework.service.annotation.Service;
 import com.thewinterframework.service.annotation.lifecycle.OnEnable;
-import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
-import org.bukkit.Bukkit;
-import org.bukkit.plugin.Plugin;
-import org.bukkit.plugin.java.JavaPlugin;
+import me.mapacheee.extendedhorizons.viewdistance.service.BlockChangeLog;
+import me.mapacheee.extendedhorizons.viewdistance.service.ChunkCacheManager;
+import me.mapacheee.extendedhorizons.viewdistance.service.ViewSnapshotTracker;
 
-import java.util.*;
+import java.util.UUID;
 
 /*
- *   LRU cache for PacketEvents Column objects intercepted from server chunk packets
- *   Stores complete chunk data with lighting for reuse as fake chunks
- *   Implements automatic TTL-based expiration and size-based eviction
+ *   Captures chunk packets for reuse as fake chunks: the server's own and the ones we
+ *   build from chunks we load or generate ourselves
+ *   Copies the encoded body straight off the wire into the packet tier of ChunkCacheManager,
+ *   filed under the world of the receiving player's view snapshot (the Bukkit player is not
+ *   safe on the Netty thread); nothing is decoded, and a resend writes the same bytes back
+ *   Nothing is captured while that world is unknown, e.g. right after a respawn
+ *   Consumes ChunkPacketDispatcher and only copies when the manager wants the capture,
+ *   so chunks already cached clean cost nothing
+ *   Each capture is stored with the BlockChangeLog stamp it was taken at, which is what
+ *   a client later sent that copy holds
+ *   Eviction, expiration and statistics live in the manager
  */
 @Service
 public class PacketChunkCacheService {
 
-    private static final int DEFAULT_MAX_ENTRIES = 512;
-    private static final long DEFAULT_TTL_MILLIS = 300_000L;
-
-    private final Plugin plugin = JavaPlugin.getPlugin(ExtendedHorizonsPlugin.class);
-    private final int maxEntries = DEFAULT_MAX_ENTRIES;
-    private final long ttlMillis = DEFAULT_TTL_MILLIS;
-
-    private static final class Entry {
-        final Column column;
-        long lastAccess;
-        Entry(Column c) { this.column = c; this.lastAccess = System.currentTimeMillis(); }
+    private final ChunkCacheManager cacheManager;
+    private final ChunkPacketDispatcher dispatcher;
+    private final ViewSnapshotTracker viewSnapshots;
+    private final BlockChangeLog blockChangeLog;
+
+    @Inject
+    public PacketChunkCacheService(ChunkCacheManager cacheManager, ChunkPacketDispatcher dispatcher,
+                                   ViewSnapshotTracker viewSnapshots, BlockChangeLog blockChangeLog) {
+        this.cacheManager = cacheManager;
+        this.dispatcher = dispatcher;
+        this.viewSnapshots = viewSnapshots;
+        this.blockChangeLog = blockChangeLog;
     }
 
-    private final Map<Long, Entry> cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
-            return size() > maxEntries;
-        }
-    });
-
     @OnEnable
     public void register() {
-        PacketEvents.getAPI().getEventManager().registerListener(new PacketListenerAbstract(PacketListenerPriority.MONITOR) {
-            @Override
-            public void onPacketSend(PacketSendEvent event) {
-                if (event.getPacketType() != PacketType.Play.Server.CHUNK_DATA) return;
-
-                try {
-                    WrapperPlayServerChunkData wrapper = new WrapperPlayServerChunkData(event);
-                    Column column = wrapper.getColumn();
-                    if (column == null) return;
-
-                    long key = getKey(column.getX(), column.getZ());
-                    cache.put(key, new Entry(column));
-                } catch (Throwable e) {
-                    // Silently ignore packet processing errors to avoid spam
-                    // These are typically version compatibility issues or malformed packets
-                    // Logging would create excessive noise in production
-                }
-            }
-        });
-
-        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
-            long now = System.currentTimeMillis();
-            synchronized (cache) {
-                cache.entrySet().removeIf(e -> now - e.getValue().lastAccess > ttlMillis);
-            }
-        }, 300L, 300L);
-    }
+        dispatcher.addConsumer(packet -> {
+            UUID worldId = viewSnapshots.worldOf(packet.player().getUniqueId());
+            if (worldId == null || !cacheManager.wantsCapture(worldId, packet.chunkX(), packet.chunkZ())) return;
 
-    public Column get(int x, int z) {
-        long key = getKey(x, z);
-        Entry e = cache.get(key);
-        if (e == null) return null;
-        long now = System.currentTimeMillis();
-        if (now - e.lastAccess > ttlMillis) {
-            cache.remove(key);
-            return null;
-        }
-        e.lastAccess = now;
-        return e.column;
-    }
+            long sequence = blockChangeLog.sequence();
+            byte[] body = packet.body();
+            if (body == null) return;
 
-    public void put(int x, int z, Column column) {
-        long key = getKey(x, z);
-        cache.put(key, new Entry(column));
+            cacheManager.putEncoded(worldId, packet.chunkX(), packet.chunkZ(), body, sequence);
+        }, true);
     }
 
     public int size() {
-        return cache.size();
-    }
-
-    public void clear() {
-        synchronized (cache) {
-            cache.clear();
-        }
-    }
-
-    private static long getKey(int x, int z) {
-        return (long) x & 0xFFFFFFFFL | ((long) z & 0xFFFFFFFFL) << 32;
+        return cacheManager.getStats().memoryEntries();
     }
 }
@@ -5,16 +5,19 @@ import com.github.retrooper.packetevents.event.PacketListenerAbstract;
 import com.github.retrooper.packetevents.event.PacketListenerPriority;
 import com.github.retrooper.packetevents.event.PacketSendEvent;
 import com.github.retrooper.packetevents.protocol.packettype.PacketType;
-import com.github.retrooper.packetevents.protocol.world.chunk.Column;
-import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerChunkData;
 import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerUnloadChunk;
 import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerUpdateViewDistance;
 import com.thewinterframework.service.annotation.Service;
 import com.thewinterframework.service.annotation.lifecycle.OnEnable;
 import com.google.inject.Inject;
 import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
-import me.mapacheee.extendedhorizons.viewdistance.service.ChunkPacketInterceptor;
-import me.mapacheee.extendedhorizons.viewdistance.service.ViewDistanceService;
+import me.mapacheee.extendedhorizons.viewdistance.cache.FrameCompressor;
+import me.mapacheee.extendedhorizons.viewdistance.entity.ViewSnapshot;
+import me.mapacheee.extendedhorizons.viewdistance.service.BlockChangeLog;
+import me.mapacheee.extendedhorizons.viewdistance.service.ClientChunkLedger;
+import me.mapacheee.extendedhorizons.viewdistance.service.EgressBudget;
+import me.mapacheee.extendedhorizons.viewdistance.service.FakeChunkTracker;
+import me.mapacheee.extendedhorizons.viewdistance.service.ViewSnapshotTracker;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.craftbukkit.entity.CraftPlayer;
@@ -22,30 +25,49 @@ import net.minecraft.network.protocol.game.ClientboundSetChunkCacheRadiusPacket;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 
+import java.util.UUID;
+
 /*
  *   Intercepts packets and manages fake chunk system
- *   - Caches chunk packets for reuse as fake chunks
- *   - Prevents client from unloading extended chunks
+ *   - Lets the client chunk ledger decide which unloads reach the client
  *   - Maintains proper view distance for client
+ *   - Reads player state only from ViewSnapshotTracker, never the Bukkit player
+ *   - Keeps the client chunk ledger in step with real chunk sends, unloads and respawns;
+ *     a respawn also empties FakeChunkTracker, so the fake ring is sent again
+ *   - Drops a server chunk send only when the client already holds the very same body,
+ *     going by the fingerprint the ledger kept of its last full send; the block change log
+ *     misses changes made without block events, so it alone cannot prove a copy current
+ *   - Reports the real chunk traffic that does go out to EgressBudget
 */
 @Service
 public class PacketInterceptionService {
 
     private Logger logger;
-    private final ViewDistanceService viewDistanceService;
+    private final ViewSnapshotTracker viewSnapshots;
     private final PacketChunkCacheService chunkCache;
-    @SuppressWarnings("unused") // Reserved for future use
-    private final ChunkPacketInterceptor chunkPacketInterceptor;
+    private final ClientChunkLedger clientChunkLedger;
+    private final FakeChunkTracker fakeChunkTracker;
+    private final BlockChangeLog blockChangeLog;
+    private final ChunkPacketDispatcher dispatcher;
+    private final EgressBudget egressBudget;
     private static final boolean DEBUG = false;
 
     @Inject
     public PacketInterceptionService(
-            ViewDistanceService viewDistanceService,
+            ViewSnapshotTracker viewSnapshots,
             PacketChunkCacheService chunkCache,
-            ChunkPacketInterceptor chunkPacketInterceptor) {
-        this.viewDistanceService = viewDistanceService;
+            ClientChunkLedger clientChunkLedger,
+            FakeChunkTracker fakeChunkTracker,
+            BlockChangeLog blockChangeLog,
+            ChunkPacketDispatcher dispatcher,
+            EgressBudget egressBudget) {
+        this.viewSnapshots = viewSnapshots;
         this.chunkCache = chunkCache;
-        this.chunkPacketInterceptor = chunkPacketInterceptor;
+        this.clientChunkLedger = clientChunkLedger;
+        this.fakeChunkTracker = fakeChunkTracker;
+        this.blockChangeLog = blockChangeLog;
+        this.dispatcher = dispatcher;
+        this.egressBudget = egressBudget;
     }
 
     @OnEnable
@@ -57,61 +79,77 @@ public class PacketInterceptionService {
                     Player player = (Player) event.getPlayer();
                     if (player == null) return;
 
-                    var view = viewDistanceService.getPlayerView(player.getUniqueId());
-                    if (view == null) return;
-
                     WrapperPlayServerUnloadChunk wrapper = new WrapperPlayServerUnloadChunk(event);
-                    int chunkX = wrapper.getChunkX();
-                    int chunkZ = wrapper.getChunkZ();
-
-                    int playerChunkX = player.getLocation().getBlockX() >> 4;
-                    int playerChunkZ = player.getLocation().getBlockZ() >> 4;
-                    int dx = Math.abs(chunkX - playerChunkX);
-                    int dz = Math.abs(chunkZ - playerChunkZ);
-                    int chebyshev = Math.max(dx, dz);
-
-                    int margin = 1;
-                    if (chebyshev <= view.getTargetDistance() + margin) {
+                    if (clientChunkLedger.onServerUnload(player.getUniqueId(), wrapper.getChunkX(), wrapper.getChunkZ())) {
                         event.setCancelled(true);
                     }
+                } else if (event.getPacketType() == PacketType.Play.Server.RESPAWN
+                        || event.getPacketType() == PacketType.Play.Server.JOIN_GAME) {
+                    // The client drops every chunk it holds when its level is recreated
+                    Player player = event.getPlayer();
+                    if (player != null) {
+                        viewSnapshots.onLevelChange(player.getUniqueId());
+                        clientChunkLedger.clear(player.getUniqueId());
+                        fakeChunkTracker.clear(player.getUniqueId());
+                    }
                 } else if (event.getPacketType() == PacketType.Play.Server.UPDATE_VIEW_DISTANCE) {
                     Player player = event.getPlayer();
                     if (player == null) return;
-                    var view = viewDistanceService.getPlayerView(player.getUniqueId());
+                    ViewSnapshot view = viewSnapshots.get(player.getUniqueId());
                     if (view == null) return;
 
                     WrapperPlayServerUpdateViewDistance wrapper = new WrapperPlayServerUpdateViewDistance(event);
                     int serverRadius = wrapper.getViewDistance();
-                    int target = view.getTargetDistance();
-                    if (serverRadius < target) {
+                    if (serverRadius < view.radius()) {
                         event.setCancelled(true);
+                        // The view may change before the task runs; send the radius it holds then
                         Bukkit.getScheduler().runTask(ExtendedHorizonsPlugin.getPlugin(ExtendedHorizonsPlugin.class), () -> {
-                            ((CraftPlayer) player).getHandle().connection.send(new ClientboundSetChunkCacheRadiusPacket(target));
+                            ViewSnapshot current = viewSnapshots.get(player.getUniqueId());
+                            if (current == null || !player.isOnline()) return;
+                            int radius = Math.max(serverRadius, current.radius());
+                            ((CraftPlayer) player).getHandle().connection.send(new ClientboundSetChunkCacheRadiusPacket(radius));
                         });
                     }
-                } else if (event.getPacketType() == PacketType.Play.Server.CHUNK_DATA) {
-                    try {
-                        WrapperPlayServerChunkData wrapper = new WrapperPlayServerChunkData(event);
-                        Column column = wrapper.getColumn();
-
-                        if (column == null) return;
-
-                        chunkCache.put(column.getX(), column.getZ(), column);
-
-                        if (DEBUG && chunkCache.size() % 100 == 0) {
-                            logger.info("[EH] Cached {} real chunks", chunkCache.size());
-                        }
-                    } catch (Throwable ex) {
-                        if (DEBUG) {
-                            logger.warn("[EH] Error intercepting chunk: {}", ex.getMessage());
-                        }
-                    }
                 }
             }
         });
+        dispatcher.addConsumer(this::onChunkData, true);
 
         if (DEBUG) {
             logger.info("[EH] Packet interception system registered with fake chunk support");
         }
     }
+
+    /**
+     * Fingerprints the body, never decodes it. Our own sends are recorded by the sender,
+     * with the stamp they were built at; only their body is added here.
+     * The world comes from the view snapshot; the Bukkit player is not safe here
+     */
+    private void onChunkData(ChunkPacketDispatcher.ChunkPacket packet) {
+        UUID playerId = packet.player().getUniqueId();
+        UUID worldId = viewSnapshots.worldOf(playerId);
+        byte[] body = worldId != null ? packet.body() : null;
+        long fingerprint = body != null ? FrameCompressor.fingerprint(body) : 0L;
+        if (packet.isOwn()) {
+            if (body != null) {
+                clientChunkLedger.attachBody(playerId, worldId, packet.key(), fingerprint, body.length);
+            }
+            return;
+        }
+
+        if (body != null) {
+            if (clientChunkLedger.holdsBody(playerId, worldId, packet.key(), fingerprint, body.length)) {
+                packet.cancel();
+                return;
+            }
+            clientChunkLedger.record(playerId, worldId, packet.key(), blockChangeLog.sequence(), fingerprint, body.length);
+        } else if (worldId != null) {
+            clientChunkLedger.record(playerId, worldId, packet.key(), blockChangeLog.sequence());
+        }
+        egressBudget.recordRealChunk(packet.size());
+
+        if (DEBUG && chunkCache.size() % 100 == 0) {
+            logger.info("[EH] Cached {} real chunks", chunkCache.size());
+        }
+    }
 }
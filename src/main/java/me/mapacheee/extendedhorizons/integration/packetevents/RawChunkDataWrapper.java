@@ -0,0 +1,32 @@
+package me.mapacheee.extendedhorizons.integration.packetevents;
+
+import com.github.retrooper.packetevents.protocol.packettype.PacketType;
+import com.github.retrooper.packetevents.wrapper.PacketWrapper;
+
+/*
+ *   CHUNK_DATA packet whose body is already encoded
+ *   Lets cached chunk packets be written back to a client without decoding them
+ */
+public class RawChunkDataWrapper extends PacketWrapper<RawChunkDataWrapper> {
+
+    private byte[] body;
+
+    public RawChunkDataWrapper(byte[] body) {
+        super(PacketType.Play.Server.CHUNK_DATA);
+        this.body = body;
+    }
+
+    @Override
+    public void write() {
+        writeBytes(body);
+    }
+
+    @Override
+    public void copy(RawChunkDataWrapper wrapper) {
+        this.body = wrapper.body;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
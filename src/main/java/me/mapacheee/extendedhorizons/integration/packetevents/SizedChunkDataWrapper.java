@@ -0,0 +1,32 @@
+package me.mapacheee.extendedhorizons.integration.packetevents;
+
+import com.github.retrooper.packetevents.netty.buffer.ByteBufHelper;
+import com.github.retrooper.packetevents.protocol.world.chunk.Column;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerChunkData;
+
+/*
+ *   CHUNK_DATA packet built from a Column that remembers how large it encoded
+ *   The size is taken while the packet is written into its buffer, before the buffer
+ *   is handed to the channel, so it is safe to read once the send call returns
+ */
+public class SizedChunkDataWrapper extends WrapperPlayServerChunkData {
+
+    private int encodedSize;
+
+    public SizedChunkDataWrapper(Column column) {
+        super(column);
+    }
+
+    @Override
+    public void write() {
+        super.write();
+        encodedSize = ByteBufHelper.writerIndex(getBuffer());
+    }
+
+    /**
+     * Packet bytes including the packet id, 0 until written
+     */
+    public int getEncodedSize() {
+        return encodedSize;
+    }
+}
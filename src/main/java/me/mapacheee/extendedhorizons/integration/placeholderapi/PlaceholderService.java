@@ -73,6 +73,10 @@ public class PlaceholderService extends PlaceholderExpansion {
             return String.valueOf(view.getTargetDistance());
         }
 
+        if ("effective_distance".equalsIgnoreCase(params)) {
+            return String.valueOf(view.getEffectiveDistance());
+        }
+
         return null;
     }
 }
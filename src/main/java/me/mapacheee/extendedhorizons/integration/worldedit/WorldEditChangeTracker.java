@@ -0,0 +1,104 @@
+package me.mapacheee.extendedhorizons.integration.worldedit;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.event.extent.EditSessionEvent;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.eventbus.Subscribe;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import me.mapacheee.extendedhorizons.viewdistance.service.BlockChangeLog;
+import me.mapacheee.extendedhorizons.viewdistance.service.BlockUpdateForwarder;
+import me.mapacheee.extendedhorizons.viewdistance.service.ChunkCacheManager;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ *   Marks cached chunk sections dirty for every block a WorldEdit edit sets
+ *   Wraps each edit session's extent; a section is reported once per tick per edit,
+ *   so million-block edits do not turn into a million cache lookups
+ *   Touched chunks held as fake chunks are resent whole, an edit rarely stays small
+ */
+final class WorldEditChangeTracker {
+
+    private final ChunkCacheManager cacheManager;
+    private final BlockUpdateForwarder blockUpdateForwarder;
+    private final BlockChangeLog blockChangeLog;
+
+    private WorldEditChangeTracker(ChunkCacheManager cacheManager, BlockUpdateForwarder blockUpdateForwarder,
+                                   BlockChangeLog blockChangeLog) {
+        this.cacheManager = cacheManager;
+        this.blockUpdateForwarder = blockUpdateForwarder;
+        this.blockChangeLog = blockChangeLog;
+    }
+
+    static Object register(ChunkCacheManager cacheManager, BlockUpdateForwarder blockUpdateForwarder,
+                           BlockChangeLog blockChangeLog) {
+        WorldEditChangeTracker tracker = new WorldEditChangeTracker(cacheManager, blockUpdateForwarder, blockChangeLog);
+        WorldEdit.getInstance().getEventBus().register(tracker);
+        return tracker;
+    }
+
+    static void unregister(Object tracker) {
+        WorldEdit.getInstance().getEventBus().unregister(tracker);
+    }
+
+    @Subscribe
+    public void onEditSession(EditSessionEvent event) {
+        if (event.getStage() != EditSession.Stage.BEFORE_CHANGE || event.getWorld() == null) {
+            return;
+        }
+        World world = BukkitAdapter.adapt(event.getWorld());
+        event.setExtent(new TrackingExtent(event.getExtent(), world));
+    }
+
+    private final class TrackingExtent extends AbstractDelegateExtent {
+
+        private final World world;
+        private final Map<Long, Long> reportedSections = new HashMap<>();
+        private int reportedTick = -1;
+
+        TrackingExtent(Extent extent, World world) {
+            super(extent);
+            this.world = world;
+        }
+
+        @Override
+        public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 position, T block) throws WorldEditException {
+            boolean changed = super.setBlock(position, block);
+            if (changed) {
+                report(position.x(), position.y(), position.z());
+            }
+            return changed;
+        }
+
+        /**
+         * Marks are deduplicated only within a tick: a chunk recaptured in between must be marked again
+         */
+        private synchronized void report(int x, int y, int z) {
+            int tick = Bukkit.getCurrentTick();
+            if (tick != reportedTick) {
+                reportedSections.clear();
+                reportedTick = tick;
+            }
+            long chunkKey = ((long) (z >> 4) << 32) | ((x >> 4) & 0xFFFFFFFFL);
+            long bit = 1L << ((y >> 4) & 63);
+            Long reported = reportedSections.get(chunkKey);
+            if (reported != null && (reported & bit) != 0) {
+                return;
+            }
+            reportedSections.put(chunkKey, reported != null ? reported | bit : bit);
+            cacheManager.markDirty(world, x, y, z);
+            if (reported == null) {
+                blockUpdateForwarder.chunkChanged(world, x >> 4, z >> 4);
+            }
+            blockChangeLog.chunkChanged(world, x >> 4, z >> 4);
+        }
+    }
+}
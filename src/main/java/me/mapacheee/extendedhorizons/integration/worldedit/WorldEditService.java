@@ -0,0 +1,72 @@
+package me.mapacheee.extendedhorizons.integration.worldedit;
+
+import com.google.inject.Inject;
+import com.thewinterframework.service.annotation.Service;
+import com.thewinterframework.service.annotation.lifecycle.OnDisable;
+import com.thewinterframework.service.annotation.lifecycle.OnEnable;
+import me.mapacheee.extendedhorizons.shared.service.ConfigService;
+import me.mapacheee.extendedhorizons.viewdistance.service.BlockChangeLog;
+import me.mapacheee.extendedhorizons.viewdistance.service.BlockUpdateForwarder;
+import me.mapacheee.extendedhorizons.viewdistance.service.ChunkCacheManager;
+import org.bukkit.Bukkit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ *   WorldEdit integration service.
+ *   Registers the edit tracker only if enabled in config and WorldEdit (or FAWE) is present;
+ *   WorldEdit classes are only touched through WorldEditChangeTracker, so this service
+ *   loads fine without it.
+ *   FastAsyncWorldEdit queues most edits past the session extents, so with it installed the
+ *   chunk cache also recaptures the chunk packets the server resends after such an edit.
+ */
+@Service
+public class WorldEditService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorldEditService.class);
+
+    private final ConfigService configService;
+    private final ChunkCacheManager cacheManager;
+    private final BlockUpdateForwarder blockUpdateForwarder;
+    private final BlockChangeLog blockChangeLog;
+    private Object tracker;
+
+    @Inject
+    public WorldEditService(ConfigService configService, ChunkCacheManager cacheManager,
+                            BlockUpdateForwarder blockUpdateForwarder, BlockChangeLog blockChangeLog) {
+        this.configService = configService;
+        this.cacheManager = cacheManager;
+        this.blockUpdateForwarder = blockUpdateForwarder;
+        this.blockChangeLog = blockChangeLog;
+    }
+
+    @OnEnable
+    public void init() {
+        var cfg = configService.get().integrations().worldedit();
+        boolean enabled = cfg != null && cfg.enabled();
+        if (!enabled || !Bukkit.getPluginManager().isPluginEnabled("WorldEdit")) return;
+
+        try {
+            tracker = WorldEditChangeTracker.register(cacheManager, blockUpdateForwarder, blockChangeLog);
+        } catch (Throwable e) {
+            logger.warn("[EH] WorldEdit found but edit tracking could not be registered: {}", e.getMessage());
+        }
+        if (Bukkit.getPluginManager().isPluginEnabled("FastAsyncWorldEdit")) {
+            cacheManager.setRecaptureServerChunks(true);
+            logger.info("[EH] FastAsyncWorldEdit found, its queued edits skip tracking; server chunk packets refresh the cache instead");
+        }
+    }
+
+    @OnDisable
+    public void shutdown() {
+        cacheManager.setRecaptureServerChunks(false);
+        if (tracker != null) {
+            WorldEditChangeTracker.unregister(tracker);
+            tracker = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return tracker != null;
+    }
+}
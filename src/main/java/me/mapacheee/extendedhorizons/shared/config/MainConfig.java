@@ -3,6 +3,8 @@ package me.mapacheee.extendedhorizons.shared.config;
 import com.thewinterframework.configurate.config.Configurate;
 import org.spongepowered.configurate.objectmapping.ConfigSerializable;
 
+import java.util.Map;
+
 /*
  * Represents the main 'config.yml' structure.
  * Only contains the keys present in the shipped config.yml.
@@ -17,34 +19,62 @@ public record MainConfig(
         MessagesConfig messages
 ) {
     @ConfigSerializable
-    public record ViewDistanceConfig(int maxDistance, int minDistance, int defaultDistance) {}
+    public record ViewDistanceConfig(int maxDistance, int minDistance, int defaultDistance,
+                                     boolean adaptive, int adaptiveFillSeconds, boolean capToClient) {}
 
     @ConfigSerializable
     public record PerformanceConfig(
             int maxChunksPerTick,
+            boolean clientFlowControl,
+            int egressBudgetKbPerSecond,
+            LoadScalingConfig loadScaling,
             FakeChunksConfig fakeChunks,
             int chunkProcessorThreads
     ) {
+        @ConfigSerializable
+        public record LoadScalingConfig(boolean enabled, double msptHigh, double msptLow, int backlogHigh, int step) {}
+
         @ConfigSerializable
         public record FakeChunksConfig(
                 boolean enabled,
-                int maxCachedPackets,
-                boolean useCompression,
+                int maxCacheSizeMb,
+                int hotTierPercent,
+                String compressionCodec,
+                int compressionLevel,
+                boolean offHeapCache,
                 int cacheCleanupInterval,
+                int cacheTtlSeconds,
                 boolean enableMemoryCache,
-                int maxMemoryCacheSize
-        ) {}
+                boolean diskCache,
+                int diskCacheSizeMb,
+                int memoryPressureThreshold,
+                boolean precompressedFrames,
+                int precompressedFramesMb,
+                Map<String, WorldCacheConfig> worlds
+        ) {
+            /**
+             * Overrides for the named world, or null when it uses the global settings
+             */
+            public WorldCacheConfig world(String worldName) {
+                return worlds != null ? worlds.get(worldName) : null;
+            }
+        }
+
+        @ConfigSerializable
+        public record WorldCacheConfig(String profile, int maxCacheSizeMb, int cacheTtlSeconds) {}
     }
 
     @ConfigSerializable
     public record DatabaseConfig(boolean enabled, String fileName) {}
 
     @ConfigSerializable
-    public record IntegrationsConfig(PlaceholderIntegration placeholderapi, LuckPermsIntegration luckperms) {
+    public record IntegrationsConfig(PlaceholderIntegration placeholderapi, LuckPermsIntegration luckperms, WorldEditIntegration worldedit) {
         @ConfigSerializable
         public record PlaceholderIntegration(boolean enabled) {}
         @ConfigSerializable
         public record LuckPermsIntegration(boolean enabled, int checkInterval, boolean useGroupPermissions) {}
+        @ConfigSerializable
+        public record WorldEditIntegration(boolean enabled) {}
     }
 
     @ConfigSerializable
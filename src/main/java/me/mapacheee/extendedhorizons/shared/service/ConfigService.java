@@ -3,16 +3,40 @@ package me.mapacheee.extendedhorizons.shared.service;
 import com.google.inject.Inject;
 import com.thewinterframework.configurate.Container;
 import com.thewinterframework.service.annotation.Service;
+import com.thewinterframework.service.annotation.lifecycle.OnEnable;
+import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
 import me.mapacheee.extendedhorizons.shared.config.MainConfig;
 import me.mapacheee.extendedhorizons.shared.config.MessageConfig;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Map;
 
 /*
  * Service for accessing plugin configurations.
  * It provides a centralized and type-safe way to retrieve
  * values from config.yml and messages.yml.
+ * Keys of older versions are no longer read; a config still using them
+ * gets one warning per key at startup naming what replaced it.
  */
 @Service
 public class ConfigService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigService.class);
+
+    private static final String FAKE_CHUNKS = "performance.fake-chunks.";
+    private static final Map<String, String> DEPRECATED_KEYS = Map.of(
+            FAKE_CHUNKS + "max-cached-packets",
+            "use max-cache-size-mb instead (about 30KB per chunk packet, default 150)",
+            FAKE_CHUNKS + "use-compression",
+            "use compression-codec instead: none, lz4, deflate or raw-deflate (default lz4)",
+            FAKE_CHUNKS + "max-memory-cache-size",
+            "decoded chunks now share max-cache-size-mb, split by hot-tier-percent"
+    );
+
     private final Container<MainConfig> config;
     private final Container<MessageConfig> messages;
 
@@ -22,6 +46,20 @@ public class ConfigService {
         this.messages = messages;
     }
 
+    @OnEnable
+    public void checkDeprecatedKeys() {
+        File file = new File(JavaPlugin.getPlugin(ExtendedHorizonsPlugin.class).getDataFolder(), "config.yml");
+        if (!file.isFile()) {
+            return;
+        }
+        YamlConfiguration yaml = YamlConfiguration.loadConfiguration(file);
+        DEPRECATED_KEYS.forEach((key, replacement) -> {
+            if (yaml.contains(key)) {
+                logger.warn("[EH] config.yml: {} is no longer read, {}", key, replacement);
+            }
+        });
+    }
+
     public MainConfig get() {
         return config.get();
     }
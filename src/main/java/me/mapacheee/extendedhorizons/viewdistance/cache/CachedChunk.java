@@ -0,0 +1,30 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import com.github.retrooper.packetevents.protocol.world.chunk.Column;
+
+/*
+ *   A chunk served by ChunkCacheManager
+ *   Either the decoded Column from the hot tier or the encoded packet body from a lower tier
+ *   sequence is the BlockChangeLog stamp the copy was captured at, what a client sent it holds
+ *   Encoded copies also carry the FrameCompressor fingerprint of their body, taken off the main thread
+ */
+public record CachedChunk(int x, int z, Column column, byte[] packetBody, long sequence, long fingerprint) {
+
+    /**
+     * Stamp of a copy whose capture is not known, e.g. restored from disk;
+     * a client holding it is refreshed in full
+     */
+    public static final long UNKNOWN_SEQUENCE = -1L;
+
+    public static CachedChunk decoded(int x, int z, Column column) {
+        return new CachedChunk(x, z, column, null, UNKNOWN_SEQUENCE, 0L);
+    }
+
+    public static CachedChunk encoded(int x, int z, byte[] packetBody, long sequence, long fingerprint) {
+        return new CachedChunk(x, z, null, packetBody, sequence, fingerprint);
+    }
+
+    public boolean isDecoded() {
+        return column != null;
+    }
+}
@@ -0,0 +1,286 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ *   L3 tier: chunk packets spilled to disk when evicted from memory
+ *   One file per chunk, kept under a byte limit by evicting the least recently used
+ *   The directory is wiped on startup because worlds may have changed meanwhile,
+ *   unless the cache is persistent (immutable worlds): then existing files are indexed again,
+ *   but only when the format file says they were written in the same format (protocol
+ *   version and codec); anything else is wiped since its bodies may no longer match the server
+ *   All methods do blocking IO and must not be called from the main thread, except
+ *   contains and the size getters which only look at the index
+ *   File operations are serialized, so a remove never races a write of the same chunk
+ *   Each world partition owns one instance in its own subdirectory
+ */
+public final class ChunkDiskCache {
+
+    private static final String EXTENSION = ".bin";
+    private static final String FORMAT_FILE = "format";
+
+    private final Path directory;
+    /** Stored length per chunk in access order, eldest first; guarded by this */
+    private final LinkedHashMap<Long, Integer> index = new LinkedHashMap<>(256, 0.75F, true);
+    /** Held for every file operation; taken before the index monitor, never after */
+    private final Object io = new Object();
+    private long sizeBytes;
+    private volatile long maximumBytes;
+    private final String format;
+
+    /**
+     * @param format Identifies how bodies are encoded; a persistent cache written in
+     *               another format is wiped instead of indexed
+     */
+    public ChunkDiskCache(Path directory, long maximumBytes, boolean persistent, String format) throws IOException {
+        this.directory = directory;
+        this.maximumBytes = maximumBytes;
+        this.format = format;
+        Files.createDirectories(directory);
+        if (persistent && format.equals(readFormat())) {
+            loadIndex();
+        } else {
+            deleteFiles();
+            writeFormat();
+        }
+    }
+
+    public synchronized boolean contains(long key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Reads a stored packet, or returns null if absent or unreadable
+     */
+    public byte[] read(long key) {
+        synchronized (io) {
+            synchronized (this) {
+                if (index.get(key) == null) {
+                    return null;
+                }
+            }
+            try {
+                return Files.readAllBytes(fileFor(key));
+            } catch (IOException e) {
+                remove(key);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Writes a packet through a temporary file so readers never see partial data
+     */
+    public void write(long key, byte[] data) throws IOException {
+        synchronized (io) {
+            Path target = fileFor(key);
+            Path temp = directory.resolve(target.getFileName() + ".tmp");
+            Files.write(temp, data);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            synchronized (this) {
+                Integer previous = index.put(key, data.length);
+                sizeBytes += data.length - (previous != null ? previous : 0);
+            }
+            trim();
+        }
+    }
+
+    public void remove(long key) {
+        synchronized (io) {
+            synchronized (this) {
+                Integer length = index.remove(key);
+                if (length == null) {
+                    return;
+                }
+                sizeBytes -= length;
+            }
+            deleteFile(key);
+        }
+    }
+
+    public void clear() {
+        synchronized (io) {
+            synchronized (this) {
+                index.clear();
+                sizeBytes = 0;
+            }
+            deleteFiles();
+            writeFormat();
+        }
+    }
+
+    /**
+     * Clears the cache and removes its directory, used when the world unloads
+     */
+    public void delete() {
+        synchronized (io) {
+            synchronized (this) {
+                index.clear();
+                sizeBytes = 0;
+            }
+            deleteFiles();
+            try {
+                Files.deleteIfExists(directory);
+            } catch (IOException ignored) {
+                // Wiped on next start anyway
+            }
+        }
+    }
+
+    /**
+     * Removes the per-world directories left under root by a previous run,
+     * except the ones named in keep
+     */
+    public static void wipe(Path root, Set<String> keep) {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+            for (Path entry : entries) {
+                if (keep.contains(entry.getFileName().toString())) {
+                    continue;
+                }
+                if (Files.isDirectory(entry)) {
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(entry)) {
+                        for (Path file : files) {
+                            Files.deleteIfExists(file);
+                        }
+                    }
+                }
+                Files.deleteIfExists(entry);
+            }
+        } catch (IOException ignored) {
+            // Best effort, stale files are never indexed so they are never served
+        }
+    }
+
+    public void setMaximumBytes(long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+        synchronized (io) {
+            trim();
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Evicts the least recently used files until the cache fits; caller holds io
+     */
+    private void trim() {
+        List<Long> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<Long, Integer>> eldest = index.entrySet().iterator();
+            while (sizeBytes > maximumBytes && eldest.hasNext()) {
+                Map.Entry<Long, Integer> entry = eldest.next();
+                sizeBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        for (long key : evicted) {
+            deleteFile(key);
+        }
+    }
+
+    /**
+     * Rebuilds the index from files of a previous run, dropping partial writes
+     */
+    private void loadIndex() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (file.getFileName().toString().equals(FORMAT_FILE)) {
+                    continue;
+                }
+                Long key = keyOf(file.getFileName().toString());
+                if (key == null) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                long length = Files.size(file);
+                synchronized (this) {
+                    index.put(key, (int) length);
+                    sizeBytes += length;
+                }
+            }
+        } catch (IOException ignored) {
+            // Whatever was indexed is served, the rest is overwritten later
+        }
+        synchronized (io) {
+            trim();
+        }
+    }
+
+    private static Long keyOf(String fileName) {
+        if (!fileName.endsWith(EXTENSION)) {
+            return null;
+        }
+        String[] parts = fileName.substring(0, fileName.length() - EXTENSION.length()).split("\\.");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            int x = Integer.parseInt(parts[0]);
+            int z = Integer.parseInt(parts[1]);
+            return ((long) z << 32) | (x & 0xFFFFFFFFL);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Path fileFor(long key) {
+        int x = (int) (key & 0xFFFFFFFFL);
+        int z = (int) (key >> 32);
+        return directory.resolve(x + "." + z + EXTENSION);
+    }
+
+    private String readFormat() {
+        try {
+            return Files.readString(directory.resolve(FORMAT_FILE)).trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeFormat() {
+        try {
+            Files.writeString(directory.resolve(FORMAT_FILE), format);
+        } catch (IOException ignored) {
+            // Without it the next start wipes the files instead of indexing them
+        }
+    }
+
+    private void deleteFile(long key) {
+        try {
+            Files.deleteIfExists(fileFor(key));
+        } catch (IOException ignored) {
+            // A leftover file is harmless, it is overwritten or wiped on next start
+        }
+    }
+
+    private void deleteFiles() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException ignored) {
+            // Best effort, stale files are never indexed so they are never served
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ *   Measures compression ratio and throughput of packet codecs on real chunk packets
+ *   Runs synchronously on the calling thread, callers schedule it off the main thread
+ */
+public final class CodecBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2;
+
+    public record Result(String codec, long rawBytes, long storedBytes, double compressMBps, double decompressMBps) {
+        /**
+         * Stored size as a share of the raw size (lower is better)
+         */
+        public double ratio() {
+            return rawBytes > 0 ? (double) storedBytes / rawBytes : 1.0;
+        }
+    }
+
+    private CodecBenchmark() {
+    }
+
+    /**
+     * @param samples Uncompressed chunk packet bodies
+     * @param rounds Timed passes over all samples per codec
+     */
+    public static List<Result> run(List<byte[]> samples, List<PacketCodec> codecs, int rounds) {
+        List<Result> results = new ArrayList<>(codecs.size());
+        if (samples.isEmpty()) {
+            return results;
+        }
+
+        int largest = 0;
+        long rawBytes = 0;
+        for (byte[] sample : samples) {
+            largest = Math.max(largest, sample.length);
+            rawBytes += sample.length;
+        }
+        byte[] output = new byte[largest];
+
+        for (PacketCodec codec : codecs) {
+            byte[][] stored = new byte[samples.size()][];
+            for (int warmup = 0; warmup < WARMUP_ROUNDS; warmup++) {
+                for (int i = 0; i < stored.length; i++) {
+                    stored[i] = PacketCodecs.encode(codec, samples.get(i));
+                    PacketCodecs.decodeInto(stored[i], output);
+                }
+            }
+
+            long compressNanos = 0;
+            long decompressNanos = 0;
+            long storedBytes = 0;
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < stored.length; i++) {
+                    stored[i] = PacketCodecs.encode(codec, samples.get(i));
+                }
+                compressNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (byte[] packet : stored) {
+                    PacketCodecs.decodeInto(packet, output);
+                }
+                decompressNanos += System.nanoTime() - start;
+            }
+            for (byte[] packet : stored) {
+                storedBytes += packet.length;
+            }
+
+            double totalMb = rawBytes * (double) rounds / (1024.0 * 1024.0);
+            results.add(new Result(
+                    codec.name(),
+                    rawBytes,
+                    storedBytes,
+                    totalMb / Math.max(1e-9, compressNanos / 1e9),
+                    totalMb / Math.max(1e-9, decompressNanos / 1e9)
+            ));
+        }
+        return results;
+    }
+}
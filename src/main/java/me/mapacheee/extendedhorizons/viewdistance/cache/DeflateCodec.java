@@ -0,0 +1,78 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ *   Deflate at a configurable level, with or without the zlib header and checksum
+ *   Deflater and Inflater instances are reused per thread instead of created per packet
+ */
+final class DeflateCodec implements PacketCodec {
+
+    static final int ZLIB_ID = 1;
+    static final int RAW_ID = 2;
+
+    private final boolean raw;
+    private final int level;
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters;
+
+    DeflateCodec(boolean raw, int level) {
+        this.raw = raw;
+        this.level = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, level));
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(this.level, raw));
+        this.inflaters = ThreadLocal.withInitial(() -> new Inflater(raw));
+    }
+
+    @Override
+    public int id() {
+        return raw ? RAW_ID : ZLIB_ID;
+    }
+
+    @Override
+    public String name() {
+        return (raw ? "raw-deflate" : "deflate") + "-" + level;
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        // zlib's deflateBound plus header and trailer
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + 6;
+    }
+
+    @Override
+    public int compress(byte[] src, int length, byte[] dst, int dstOffset) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(src, 0, length);
+        deflater.finish();
+        int written = deflater.deflate(dst, dstOffset, dst.length - dstOffset);
+        if (!deflater.finished()) {
+            throw new IllegalStateException("Compressed output exceeded its bound");
+        }
+        return written;
+    }
+
+    @Override
+    public void decompress(byte[] src, int offset, int length, byte[] dst, int originalLength) {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(src, offset, length);
+        try {
+            int read = 0;
+            while (read < originalLength) {
+                int n = inflater.inflate(dst, read, originalLength - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != originalLength) {
+                throw new IllegalStateException("Truncated deflate stream: " + read + "/" + originalLength);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt deflate stream", e);
+        }
+    }
+}
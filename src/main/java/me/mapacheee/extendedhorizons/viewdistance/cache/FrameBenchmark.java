@@ -0,0 +1,71 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import java.util.List;
+
+/*
+ *   Measures what shared compressed frames save on real chunk packets
+ *   Without them every send deflates the packet on the viewer's connection; with them only
+ *   the first send does, later ones only fingerprint the body to find the cached frame
+ *   Runs synchronously on the calling thread, callers schedule it off the main thread
+ */
+public final class FrameBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int SAMPLE_PACKET_ID = 0x27;
+
+    public record Result(int chunks, long rawBytes, long frameBytes, double compressMicros, double reuseMicros) {
+        /**
+         * CPU milliseconds saved per thousand sends of chunks whose frame is already cached
+         */
+        public double savedMillisPerThousand() {
+            return Math.max(0.0, compressMicros - reuseMicros);
+        }
+    }
+
+    private FrameBenchmark() {
+    }
+
+    /**
+     * @param samples Uncompressed chunk packet bodies
+     * @param threshold Network compression threshold to build frames for
+     * @param rounds Timed passes over all samples
+     * @return null when there are no samples
+     */
+    public static Result run(List<byte[]> samples, int threshold, int rounds) {
+        if (samples.isEmpty()) {
+            return null;
+        }
+
+        for (int warmup = 0; warmup < WARMUP_ROUNDS; warmup++) {
+            for (byte[] sample : samples) {
+                FrameCompressor.compress(SAMPLE_PACKET_ID, sample, threshold);
+                FrameCompressor.fingerprint(sample);
+            }
+        }
+
+        long compressNanos = 0;
+        long reuseNanos = 0;
+        long rawBytes = 0;
+        long frameBytes = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (byte[] sample : samples) {
+                byte[] frame = FrameCompressor.compress(SAMPLE_PACKET_ID, sample, threshold);
+                if (round == 0) {
+                    rawBytes += sample.length;
+                    frameBytes += frame.length;
+                }
+            }
+            compressNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (byte[] sample : samples) {
+                FrameCompressor.fingerprint(sample);
+            }
+            reuseNanos += System.nanoTime() - start;
+        }
+
+        double sends = (double) samples.size() * rounds;
+        return new Result(samples.size(), rawBytes, frameBytes, compressNanos / 1000.0 / sends, reuseNanos / 1000.0 / sends);
+    }
+}
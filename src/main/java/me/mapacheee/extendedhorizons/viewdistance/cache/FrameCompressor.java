@@ -0,0 +1,82 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import java.util.Arrays;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+/*
+ *   Builds network frames the way the server's compression handler does
+ *   A frame is the uncompressed data length as a VarInt (0 below the threshold)
+ *   followed by the packet id and body, zlib-deflated at or above the threshold;
+ *   the frame length prefix and encryption are left to the connection
+ *   Also fingerprints packet bodies, so a cached frame is only reused for identical bytes
+ */
+public final class FrameCompressor {
+
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(Deflater::new);
+
+    private FrameCompressor() {
+    }
+
+    /**
+     * @param threshold the server's network compression threshold, at least 0
+     */
+    public static byte[] compress(int packetId, byte[] body, int threshold) {
+        int idSize = varIntSize(packetId);
+        byte[] data = new byte[idSize + body.length];
+        writeVarInt(data, 0, packetId);
+        System.arraycopy(body, 0, data, idSize, body.length);
+
+        if (data.length < threshold) {
+            byte[] frame = new byte[1 + data.length];
+            System.arraycopy(data, 0, frame, 1, data.length);
+            return frame;
+        }
+
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        int prefix = varIntSize(data.length);
+        byte[] frame = new byte[prefix + data.length / 2 + 64];
+        writeVarInt(frame, 0, data.length);
+        int position = prefix;
+        while (!deflater.finished()) {
+            if (position == frame.length) {
+                frame = Arrays.copyOf(frame, frame.length * 2);
+            }
+            position += deflater.deflate(frame, position, frame.length - position);
+        }
+        return Arrays.copyOf(frame, position);
+    }
+
+    /**
+     * Two independent checksums of the body; together with its length they tell bodies apart
+     */
+    public static long fingerprint(byte[] body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        Adler32 adler = new Adler32();
+        adler.update(body);
+        return crc.getValue() << 32 | adler.getValue();
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarInt(byte[] target, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[offset] = (byte) value;
+    }
+}
@@ -0,0 +1,202 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/*
+ *   LZ4 block format in plain Java, no native library
+ *   Greedy single-probe matcher: a few times faster than deflate level 1 in both
+ *   directions for a somewhat lower ratio, which suits the mostly repetitive palettes
+ *   and light arrays of chunk packets
+ */
+final class Lz4Codec implements PacketCodec {
+
+    static final int ID = 3;
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_LOG = 12;
+    private static final int SKIP_TRIGGER = 6;
+
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final ThreadLocal<int[]> hashTables = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    @Override
+    public int id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "lz4";
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    @Override
+    public int compress(byte[] src, int length, byte[] dst, int dstOffset) {
+        int[] table = hashTables.get();
+        Arrays.fill(table, 0);
+
+        int anchor = 0;
+        int op = dstOffset;
+
+        if (length > MF_LIMIT) {
+            int matchStartLimit = length - MF_LIMIT;
+            int matchEndLimit = length - LAST_LITERALS;
+            int ip = 0;
+
+            while (ip < matchStartLimit) {
+                int sequence = readInt(src, ip);
+                int hash = hash(sequence);
+                int ref = table[hash] - 1;
+                table[hash] = ip + 1;
+
+                if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                    ip += 1 + ((ip - anchor) >>> SKIP_TRIGGER);
+                    continue;
+                }
+
+                while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchEndLimit && src[ip + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+
+                op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+                ip += matchLength;
+                anchor = ip;
+
+                if (ip - 2 < matchStartLimit) {
+                    table[hash(readInt(src, ip - 2))] = ip - 1;
+                }
+            }
+        }
+
+        op = writeLastLiterals(src, anchor, length - anchor, dst, op);
+        return op - dstOffset;
+    }
+
+    @Override
+    public void decompress(byte[] src, int offset, int length, byte[] dst, int originalLength) {
+        int ip = offset;
+        int end = offset + length;
+        int op = 0;
+
+        while (ip < end) {
+            int token = src[ip++] & 0xFF;
+
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int b;
+                do {
+                    b = src[ip++] & 0xFF;
+                    literals += b;
+                } while (b == 255);
+            }
+            System.arraycopy(src, ip, dst, op, literals);
+            ip += literals;
+            op += literals;
+
+            if (ip >= end) {
+                break;
+            }
+
+            int distance = (src[ip++] & 0xFF) | ((src[ip++] & 0xFF) << 8);
+            int matchLength = token & 0x0F;
+            if (matchLength == 15) {
+                int b;
+                do {
+                    b = src[ip++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+
+            int ref = op - distance;
+            if (distance == 0 || ref < 0 || op + matchLength > originalLength) {
+                throw new IllegalStateException("Corrupt LZ4 block at " + (ip - offset));
+            }
+            if (distance >= matchLength) {
+                System.arraycopy(dst, ref, dst, op, matchLength);
+            } else {
+                // Overlapping match repeats the last bytes, copy one by one
+                for (int i = 0; i < matchLength; i++) {
+                    dst[op + i] = dst[ref + i];
+                }
+            }
+            op += matchLength;
+        }
+
+        if (op != originalLength) {
+            throw new IllegalStateException("Truncated LZ4 block: " + op + "/" + originalLength);
+        }
+    }
+
+    private static int writeSequence(byte[] src, int literalStart, int literals, int distance, int matchLength,
+                                     byte[] dst, int op) {
+        int tokenPos = op++;
+        int token;
+        if (literals >= 15) {
+            token = 15 << 4;
+            op = writeLength(literals - 15, dst, op);
+        } else {
+            token = literals << 4;
+        }
+        System.arraycopy(src, literalStart, dst, op, literals);
+        op += literals;
+
+        dst[op++] = (byte) distance;
+        dst[op++] = (byte) (distance >>> 8);
+
+        int extra = matchLength - MIN_MATCH;
+        if (extra >= 15) {
+            token |= 15;
+            op = writeLength(extra - 15, dst, op);
+        } else {
+            token |= extra;
+        }
+        dst[tokenPos] = (byte) token;
+        return op;
+    }
+
+    private static int writeLastLiterals(byte[] src, int literalStart, int literals, byte[] dst, int op) {
+        if (literals >= 15) {
+            dst[op++] = (byte) (15 << 4);
+            op = writeLength(literals - 15, dst, op);
+        } else {
+            dst[op++] = (byte) (literals << 4);
+        }
+        System.arraycopy(src, literalStart, dst, op, literals);
+        return op + literals;
+    }
+
+    private static int writeLength(int length, byte[] dst, int op) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte[] src, int index) {
+        return (int) INT_LE.get(src, index);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
@@ -0,0 +1,64 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ *   Byte ceiling shared by several caches
+ *   Caches charge the weight of every entry they hold and release it when the entry leaves,
+ *   so used() is the exact sum of the measured entry weights at any moment
+ *   The owner decides what to evict when the ceiling is exceeded
+ *   A budget may have a parent: every charge also counts against the parent,
+ *   so per-world budgets add up to one shared ceiling
+ */
+public final class MemoryBudget {
+
+    private final AtomicLong used = new AtomicLong();
+    private final MemoryBudget parent;
+    private volatile long ceiling;
+
+    public MemoryBudget(long ceiling) {
+        this(ceiling, null);
+    }
+
+    public MemoryBudget(long ceiling, MemoryBudget parent) {
+        this.ceiling = ceiling;
+        this.parent = parent;
+    }
+
+    public void charge(long bytes) {
+        used.addAndGet(bytes);
+        if (parent != null) {
+            parent.charge(bytes);
+        }
+    }
+
+    public void release(long bytes) {
+        used.addAndGet(-bytes);
+        if (parent != null) {
+            parent.release(bytes);
+        }
+    }
+
+    public long used() {
+        return used.get();
+    }
+
+    public long ceiling() {
+        return ceiling;
+    }
+
+    public void setCeiling(long ceiling) {
+        this.ceiling = ceiling;
+    }
+
+    /**
+     * Bytes above the ceiling, or zero when within it
+     */
+    public long overage() {
+        return Math.max(0L, used.get() - ceiling);
+    }
+
+    public boolean isExceeded() {
+        return used.get() > ceiling;
+    }
+}
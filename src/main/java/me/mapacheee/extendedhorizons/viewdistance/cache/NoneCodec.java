@@ -0,0 +1,35 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+/*
+ *   Identity codec, stores packets as they are
+ */
+final class NoneCodec implements PacketCodec {
+
+    static final int ID = 0;
+
+    @Override
+    public int id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "none";
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return length;
+    }
+
+    @Override
+    public int compress(byte[] src, int length, byte[] dst, int dstOffset) {
+        System.arraycopy(src, 0, dst, dstOffset, length);
+        return length;
+    }
+
+    @Override
+    public void decompress(byte[] src, int offset, int length, byte[] dst, int originalLength) {
+        System.arraycopy(src, offset, dst, 0, originalLength);
+    }
+}
@@ -0,0 +1,385 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ *   Slab allocator for byte payloads kept outside the Java heap
+ *   Memory is reserved as 4MB direct buffers, each split into equal slots of one size class
+ *   Size classes grow by ~25% so a payload wastes at most a quarter of its slot
+ *   Callers get a long handle and must free it explicitly, there is no GC tracking
+ *   Slots carry a generation, so a handle read after it was freed returns null
+ *   instead of bytes that now belong to another payload. Generations are kept per slab
+ *   index, so this also holds once an empty slab was released and its index reused
+ */
+public final class OffHeapSlabStore {
+
+    public static final long NO_HANDLE = 0L;
+
+    private static final int SLAB_BYTES = 4 * 1024 * 1024;
+    private static final int MIN_SLOT_BYTES = 1024;
+    private static final int MAX_SLOT_BYTES = 1024 * 1024;
+    private static final double CLASS_GROWTH = 1.25;
+    private static final int SLOT_ALIGNMENT = 256;
+
+    // Handle layout: class(6) | generation(8) | slab(13) | slot(12) | length(25)
+    private static final int LENGTH_BITS = 25;
+    private static final int SLOT_BITS = 12;
+    private static final int SLAB_BITS = 13;
+    private static final int GENERATION_BITS = 8;
+    private static final int SLOT_SHIFT = LENGTH_BITS;
+    private static final int SLAB_SHIFT = SLOT_SHIFT + SLOT_BITS;
+    private static final int GENERATION_SHIFT = SLAB_SHIFT + SLAB_BITS;
+    private static final int CLASS_SHIFT = GENERATION_SHIFT + GENERATION_BITS;
+
+    private static final int[] SLOT_SIZES = buildSlotSizes();
+
+    public record Stats(
+            long reservedBytes,
+            long allocatedBytes,
+            long usedBytes,
+            int slabs,
+            long liveAllocations,
+            long failedAllocations
+    ) {
+        /**
+         * Share of allocated slot space not covered by payload bytes
+         */
+        public double internalFragmentation() {
+            return allocatedBytes > 0 ? 1.0 - (double) usedBytes / allocatedBytes : 0.0;
+        }
+
+        /**
+         * Share of reserved slab memory sitting in free slots
+         */
+        public double externalFragmentation() {
+            return reservedBytes > 0 ? 1.0 - (double) allocatedBytes / reservedBytes : 0.0;
+        }
+    }
+
+    private static final class Slab {
+        final ByteBuffer buffer;
+        final int[] freeSlots;
+        final byte[] generations;
+        int freeCount;
+
+        Slab(int slotCount, byte[] generations) {
+            this.buffer = ByteBuffer.allocateDirect(SLAB_BYTES);
+            this.freeSlots = new int[slotCount];
+            this.generations = generations;
+            for (int i = 0; i < slotCount; i++) {
+                freeSlots[i] = slotCount - 1 - i;
+            }
+            this.freeCount = slotCount;
+        }
+
+        boolean isFull() {
+            return freeCount == 0;
+        }
+
+        boolean isEmpty() {
+            return freeCount == freeSlots.length;
+        }
+    }
+
+    /**
+     * All slabs of one slot size, guarded by the instance monitor
+     */
+    private final class SizeClass {
+        final int classIndex;
+        final int slotBytes;
+        final int slotsPerSlab;
+        final List<Slab> slabs = new ArrayList<>();
+        final ArrayDeque<Integer> available = new ArrayDeque<>();
+        final ArrayDeque<Integer> releasedIndexes = new ArrayDeque<>();
+        /** Slot generations per slab index; outlive released slabs so a reused index keeps counting */
+        final List<byte[]> generations = new ArrayList<>();
+
+        SizeClass(int classIndex, int slotBytes) {
+            this.classIndex = classIndex;
+            this.slotBytes = slotBytes;
+            this.slotsPerSlab = SLAB_BYTES / slotBytes;
+        }
+
+        synchronized long allocate(byte[] data) {
+            Integer slabIndex = available.peekFirst();
+            if (slabIndex == null) {
+                slabIndex = newSlab();
+                if (slabIndex == null) {
+                    return NO_HANDLE;
+                }
+            }
+
+            Slab slab = slabs.get(slabIndex);
+            int slot = slab.freeSlots[--slab.freeCount];
+            if (slab.isFull()) {
+                available.pollFirst();
+            }
+            int generation = ++slab.generations[slot] & 0xFF;
+            slab.buffer.put(slot * slotBytes, data, 0, data.length);
+
+            allocatedBytes.addAndGet(slotBytes);
+            usedBytes.addAndGet(data.length);
+            liveAllocations.increment();
+            return encode(classIndex, generation, slabIndex, slot, data.length);
+        }
+
+        synchronized byte[] read(int generation, int slabIndex, int slot, int length) {
+            Slab slab = slabIndex < slabs.size() ? slabs.get(slabIndex) : null;
+            if (slab == null || (slab.generations[slot] & 0xFF) != generation) {
+                return null;
+            }
+            byte[] data = new byte[length];
+            slab.buffer.get(slot * slotBytes, data, 0, length);
+            return data;
+        }
+
+        synchronized boolean free(int generation, int slabIndex, int slot, int length) {
+            Slab slab = slabIndex < slabs.size() ? slabs.get(slabIndex) : null;
+            if (slab == null || (slab.generations[slot] & 0xFF) != generation) {
+                return false;
+            }
+            slab.generations[slot]++;
+            if (slab.isFull()) {
+                available.addLast(slabIndex);
+            }
+            slab.freeSlots[slab.freeCount++] = slot;
+
+            allocatedBytes.addAndGet(-slotBytes);
+            usedBytes.addAndGet(-length);
+            liveAllocations.decrement();
+            return true;
+        }
+
+        /**
+         * Drops empty slabs so the GC can return their direct memory
+         */
+        synchronized int releaseEmptySlabs() {
+            int released = 0;
+            for (int i = 0; i < slabs.size(); i++) {
+                Slab slab = slabs.get(i);
+                if (slab != null && slab.isEmpty()) {
+                    slabs.set(i, null);
+                    available.remove(i);
+                    releasedIndexes.addLast(i);
+                    reservedBytes.addAndGet(-SLAB_BYTES);
+                    slabCount.decrementAndGet();
+                    released++;
+                }
+            }
+            return released;
+        }
+
+        synchronized void reset() {
+            for (Slab slab : slabs) {
+                if (slab != null) {
+                    reservedBytes.addAndGet(-SLAB_BYTES);
+                    slabCount.decrementAndGet();
+                    int live = slab.freeSlots.length - slab.freeCount;
+                    allocatedBytes.addAndGet(-(long) live * slotBytes);
+                    liveAllocations.add(-live);
+                }
+            }
+            slabs.clear();
+            available.clear();
+            releasedIndexes.clear();
+            generations.clear();
+        }
+
+        private Integer newSlab() {
+            if (reservedBytes.get() + SLAB_BYTES > maximumBytes) {
+                return null;
+            }
+            Integer index = releasedIndexes.pollFirst();
+            if (index == null) {
+                if (slabs.size() >= (1 << SLAB_BITS)) {
+                    return null;
+                }
+                index = slabs.size();
+                slabs.add(null);
+                generations.add(new byte[slotsPerSlab]);
+            }
+            try {
+                slabs.set(index, new Slab(slotsPerSlab, generations.get(index)));
+            } catch (OutOfMemoryError e) {
+                // Direct memory limit (-XX:MaxDirectMemorySize) reached
+                slabs.set(index, null);
+                releasedIndexes.addLast(index);
+                return null;
+            }
+            available.addLast(index);
+            reservedBytes.addAndGet(SLAB_BYTES);
+            slabCount.incrementAndGet();
+            return index;
+        }
+    }
+
+    private final SizeClass[] classes;
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong slabCount = new AtomicLong();
+    private final LongAdder liveAllocations = new LongAdder();
+    private final LongAdder failedAllocations = new LongAdder();
+    private volatile long maximumBytes;
+
+    /**
+     * @param maximumBytes Upper bound for reserved direct memory
+     */
+    public OffHeapSlabStore(long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+        this.classes = new SizeClass[SLOT_SIZES.length];
+        for (int i = 0; i < SLOT_SIZES.length; i++) {
+            classes[i] = new SizeClass(i, SLOT_SIZES[i]);
+        }
+    }
+
+    /**
+     * Copies the payload into a free slot
+     * @return handle for the payload, or NO_HANDLE if it is empty, too large or memory is exhausted
+     */
+    public long allocate(byte[] data) {
+        int classIndex = classFor(data.length);
+        if (classIndex < 0) {
+            failedAllocations.increment();
+            return NO_HANDLE;
+        }
+
+        SizeClass sizeClass = classes[classIndex];
+        long handle = sizeClass.allocate(data);
+        if (handle == NO_HANDLE && releaseEmptySlabs() > 0) {
+            handle = sizeClass.allocate(data);
+        }
+        if (handle == NO_HANDLE) {
+            failedAllocations.increment();
+        }
+        return handle;
+    }
+
+    /**
+     * Copies the payload back onto the heap, or returns null if the handle was freed
+     */
+    public byte[] read(long handle) {
+        return classes[classOf(handle)].read(generationOf(handle), slabOf(handle), slotOf(handle), lengthOf(handle));
+    }
+
+    /**
+     * Returns the slot to its slab. Freeing a stale handle is a no-op.
+     */
+    public void free(long handle) {
+        if (handle != NO_HANDLE) {
+            classes[classOf(handle)].free(generationOf(handle), slabOf(handle), slotOf(handle), lengthOf(handle));
+        }
+    }
+
+    /**
+     * Bytes the handle occupies in its slab, including slot padding
+     */
+    public static int slotSize(long handle) {
+        return SLOT_SIZES[classOf(handle)];
+    }
+
+    public static int lengthOf(long handle) {
+        return (int) (handle & ((1L << LENGTH_BITS) - 1));
+    }
+
+    /**
+     * Largest payload that fits in a slot
+     */
+    public static int maxPayloadBytes() {
+        return MAX_SLOT_BYTES;
+    }
+
+    public void setMaximumBytes(long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+        if (reservedBytes.get() > maximumBytes) {
+            releaseEmptySlabs();
+        }
+    }
+
+    public int releaseEmptySlabs() {
+        int released = 0;
+        for (SizeClass sizeClass : classes) {
+            released += sizeClass.releaseEmptySlabs();
+        }
+        return released;
+    }
+
+    /**
+     * Drops every slab. Only for shutdown: outstanding handles must not be used afterwards.
+     */
+    public void clear() {
+        for (SizeClass sizeClass : classes) {
+            sizeClass.reset();
+        }
+        usedBytes.set(0);
+    }
+
+    public Stats stats() {
+        return new Stats(
+                reservedBytes.get(),
+                allocatedBytes.get(),
+                usedBytes.get(),
+                (int) slabCount.get(),
+                liveAllocations.sum(),
+                failedAllocations.sum()
+        );
+    }
+
+    private static int classFor(int length) {
+        if (length <= 0 || length > MAX_SLOT_BYTES) {
+            return -1;
+        }
+        int low = 0;
+        int high = SLOT_SIZES.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (SLOT_SIZES[mid] >= length) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private static long encode(int classIndex, int generation, int slab, int slot, int length) {
+        return ((long) classIndex << CLASS_SHIFT)
+                | ((long) generation << GENERATION_SHIFT)
+                | ((long) slab << SLAB_SHIFT)
+                | ((long) slot << SLOT_SHIFT)
+                | length;
+    }
+
+    private static int classOf(long handle) {
+        return (int) (handle >>> CLASS_SHIFT);
+    }
+
+    private static int generationOf(long handle) {
+        return (int) ((handle >>> GENERATION_SHIFT) & ((1 << GENERATION_BITS) - 1));
+    }
+
+    private static int slabOf(long handle) {
+        return (int) ((handle >>> SLAB_SHIFT) & ((1 << SLAB_BITS) - 1));
+    }
+
+    private static int slotOf(long handle) {
+        return (int) ((handle >>> SLOT_SHIFT) & ((1 << SLOT_BITS) - 1));
+    }
+
+    private static int[] buildSlotSizes() {
+        List<Integer> sizes = new ArrayList<>();
+        int size = MIN_SLOT_BYTES;
+        while (size < MAX_SLOT_BYTES) {
+            sizes.add(size);
+            int next = (int) Math.ceil(size * CLASS_GROWTH);
+            size = (next + SLOT_ALIGNMENT - 1) / SLOT_ALIGNMENT * SLOT_ALIGNMENT;
+        }
+        sizes.add(MAX_SLOT_BYTES);
+        return sizes.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,35 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+/*
+ *   Compression algorithm for cached chunk packets
+ *   Implementations are stateless or keep per-thread state, so one instance is shared by all threads
+ *   Framing (codec id and original length) is added by PacketCodecs, codecs only see payloads
+ */
+public interface PacketCodec {
+
+    /**
+     * Stable identifier written in front of every stored payload
+     */
+    int id();
+
+    /**
+     * Name used in config.yml and benchmark output
+     */
+    String name();
+
+    /**
+     * Upper bound of the compressed size for an input of the given length
+     */
+    int maxCompressedLength(int length);
+
+    /**
+     * Compresses src[0, length) into dst starting at dstOffset
+     * @return number of bytes written
+     */
+    int compress(byte[] src, int length, byte[] dst, int dstOffset);
+
+    /**
+     * Decompresses src[offset, offset + length) into dst[0, originalLength)
+     */
+    void decompress(byte[] src, int offset, int length, byte[] dst, int originalLength);
+}
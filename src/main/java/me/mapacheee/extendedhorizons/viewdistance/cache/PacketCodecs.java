@@ -0,0 +1,121 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import java.util.List;
+import java.util.Locale;
+
+/*
+ *   Registry and framing for packet codecs
+ *   Stored form: [codec id: 1 byte][original length: 4 bytes][codec payload]
+ *   The header makes every stored packet self-describing, so entries written before
+ *   a codec change (or spilled to disk) still decode, and decompression can size its
+ *   output exactly once instead of growing a stream buffer
+ */
+public final class PacketCodecs {
+
+    public static final PacketCodec NONE = new NoneCodec();
+    public static final PacketCodec LZ4 = new Lz4Codec();
+
+    private static final int HEADER_BYTES = 5;
+    private static final int DEFAULT_LEVEL = 6;
+
+    /**
+     * Decoders by id; the level only matters when compressing
+     */
+    private static final PacketCodec[] DECODERS = {
+            NONE,
+            new DeflateCodec(false, DEFAULT_LEVEL),
+            new DeflateCodec(true, DEFAULT_LEVEL),
+            LZ4
+    };
+
+    /**
+     * Per-thread scratch buffer for compression output, grown on demand and reused
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+    private PacketCodecs() {
+    }
+
+    /**
+     * Resolves a codec from config: none, deflate, raw-deflate or lz4
+     * Unknown or missing names fall back to none
+     */
+    public static PacketCodec forName(String name, int level) {
+        if (name == null) {
+            return NONE;
+        }
+        int effectiveLevel = level > 0 ? level : DEFAULT_LEVEL;
+        return switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "deflate", "zlib", "gzip" -> new DeflateCodec(false, effectiveLevel);
+            case "raw-deflate", "raw" -> new DeflateCodec(true, effectiveLevel);
+            case "lz4" -> LZ4;
+            default -> NONE;
+        };
+    }
+
+    /**
+     * Codecs compared by the benchmark command
+     */
+    public static List<PacketCodec> benchmarkCandidates() {
+        return List.of(
+                NONE,
+                LZ4,
+                new DeflateCodec(true, 1),
+                new DeflateCodec(true, 6),
+                new DeflateCodec(false, 1),
+                new DeflateCodec(false, 6),
+                new DeflateCodec(false, 9)
+        );
+    }
+
+    /**
+     * Compresses a packet into its framed stored form
+     */
+    public static byte[] encode(PacketCodec codec, byte[] data) {
+        int bound = HEADER_BYTES + codec.maxCompressedLength(data.length);
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < bound) {
+            scratch = new byte[bound];
+            SCRATCH.set(scratch);
+        }
+
+        scratch[0] = (byte) codec.id();
+        writeInt(scratch, 1, data.length);
+        int written = codec.compress(data, data.length, scratch, HEADER_BYTES);
+
+        byte[] stored = new byte[HEADER_BYTES + written];
+        System.arraycopy(scratch, 0, stored, 0, stored.length);
+        return stored;
+    }
+
+    /**
+     * Decompresses a framed packet into a new array of exactly the original size
+     */
+    public static byte[] decode(byte[] stored) {
+        byte[] data = new byte[originalLength(stored)];
+        decodeInto(stored, data);
+        return data;
+    }
+
+    /**
+     * Decompresses a framed packet into a caller-owned buffer, which must hold originalLength bytes
+     */
+    public static void decodeInto(byte[] stored, byte[] destination) {
+        int id = stored[0] & 0xFF;
+        if (id >= DECODERS.length) {
+            throw new IllegalStateException("Unknown packet codec id " + id);
+        }
+        DECODERS[id].decompress(stored, HEADER_BYTES, stored.length - HEADER_BYTES, destination, originalLength(stored));
+    }
+
+    public static int originalLength(byte[] stored) {
+        return ((stored[1] & 0xFF) << 24) | ((stored[2] & 0xFF) << 16) | ((stored[3] & 0xFF) << 8) | (stored[4] & 0xFF);
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,165 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/*
+ *   Map from packed chunk key to value, sharded by 32x32 chunk region
+ *   Each region holds a slot array for its 1024 chunks and a presence bitmap (16 longs),
+ *   so a lookup is one region lookup plus an array read, and area queries scan bitmaps
+ *   instead of probing every chunk key
+ *   Reads are lock-free; writes must be serialized by the owner
+ */
+final class RegionTable<T> {
+
+    static final int REGION_SHIFT = 5;
+    static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    static final int SLOTS = 1 << (2 * REGION_SHIFT);
+    static final int WORDS = SLOTS / Long.SIZE;
+
+    static final class Region<T> {
+        final AtomicReferenceArray<T> slots = new AtomicReferenceArray<>(SLOTS);
+        final AtomicLongArray presence = new AtomicLongArray(WORDS);
+        int count;
+    }
+
+    private final ConcurrentHashMap<Long, Region<T>> regions = new ConcurrentHashMap<>();
+    private volatile int size;
+
+    T get(long key) {
+        Region<T> region = regions.get(regionKeyOf(key));
+        return region == null ? null : region.slots.get(slotOf(key));
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value, or null
+     */
+    T put(long key, T value) {
+        Region<T> region = regions.computeIfAbsent(regionKeyOf(key), k -> new Region<>());
+        int slot = slotOf(key);
+        T previous = region.slots.getAndSet(slot, value);
+        if (previous == null) {
+            region.count++;
+            region.presence.set(slot >>> 6, region.presence.get(slot >>> 6) | (1L << slot));
+            size++;
+        }
+        return previous;
+    }
+
+    T remove(long key) {
+        long regionKey = regionKeyOf(key);
+        Region<T> region = regions.get(regionKey);
+        if (region == null) {
+            return null;
+        }
+        int slot = slotOf(key);
+        T previous = region.slots.getAndSet(slot, null);
+        if (previous != null) {
+            onSlotCleared(regionKey, region, slot);
+        }
+        return previous;
+    }
+
+    /**
+     * Removes the key only while it still maps to the expected value
+     */
+    boolean remove(long key, T expected) {
+        long regionKey = regionKeyOf(key);
+        Region<T> region = regions.get(regionKey);
+        if (region == null) {
+            return false;
+        }
+        int slot = slotOf(key);
+        if (!region.slots.compareAndSet(slot, expected, null)) {
+            return false;
+        }
+        onSlotCleared(regionKey, region, slot);
+        return true;
+    }
+
+    Region<T> region(long regionKey) {
+        return regions.get(regionKey);
+    }
+
+    void clear() {
+        regions.clear();
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Consumer<T> action) {
+        for (Region<T> region : regions.values()) {
+            for (int word = 0; word < WORDS; word++) {
+                long bits = region.presence.get(word);
+                while (bits != 0) {
+                    int slot = (word << 6) | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    T value = region.slots.get(slot);
+                    if (value != null) {
+                        action.accept(value);
+                    }
+                }
+            }
+        }
+    }
+
+    List<T> values(int limit) {
+        List<T> values = new ArrayList<>(Math.min(limit, size));
+        for (Region<T> region : regions.values()) {
+            for (int slot = 0; slot < SLOTS && values.size() < limit; slot++) {
+                T value = region.slots.get(slot);
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+            if (values.size() >= limit) {
+                break;
+            }
+        }
+        return values;
+    }
+
+    private void onSlotCleared(long regionKey, Region<T> region, int slot) {
+        region.presence.set(slot >>> 6, region.presence.get(slot >>> 6) & ~(1L << slot));
+        size--;
+        if (--region.count == 0) {
+            regions.remove(regionKey, region);
+        }
+    }
+
+    static long regionKeyOf(long chunkKey) {
+        int x = (int) chunkKey;
+        int z = (int) (chunkKey >> 32);
+        return regionKey(x >> REGION_SHIFT, z >> REGION_SHIFT);
+    }
+
+    static long regionKey(int regionX, int regionZ) {
+        return ((long) regionZ << 32) | (regionX & 0xFFFFFFFFL);
+    }
+
+    static int slotOf(long chunkKey) {
+        int x = (int) chunkKey;
+        int z = (int) (chunkKey >> 32);
+        return ((z & REGION_MASK) << REGION_SHIFT) | (x & REGION_MASK);
+    }
+
+    /**
+     * Rebuilds a chunk key from its region key and slot
+     */
+    static long chunkKey(long regionKey, int slot) {
+        int x = ((int) regionKey << REGION_SHIFT) | (slot & REGION_MASK);
+        int z = ((int) (regionKey >> 32) << REGION_SHIFT) | (slot >>> REGION_SHIFT);
+        return ((long) z << 32) | (x & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,609 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/*
+ *   Concurrent byte-weighted cache keyed by packed chunk coordinates
+ *   Window TinyLFU policy: new entries land in a small LRU window, then compete
+ *   against the coldest entry of a segmented LRU (probation + protected) for admission
+ *   Chunks seen only once (flyovers) lose against the hot set instead of flushing it
+ *   Every policy operation is O(1); lookups never block on the policy lock
+ *   Entries are stored per 32x32 chunk region (RegionTable), which allows bitmap
+ *   presence queries over an area and dropping a region in one call
+ */
+public final class TinyLfuCache<V> {
+
+    public enum RemovalCause {
+        /** Pushed out because the cache ran out of weight */
+        EVICTED,
+        /** Not accessed within the idle time passed to expire */
+        EXPIRED,
+        /** Overwritten by a put for the same key */
+        REPLACED,
+        /** Removed by remove or clear */
+        EXPLICIT
+    }
+
+    /**
+     * Receives every value that leaves the cache, so owners can release resources.
+     * Called outside the policy lock on the thread that caused the removal.
+     */
+    @FunctionalInterface
+    public interface RemovalListener<V> {
+        void onRemoval(long key, V value, RemovalCause cause);
+    }
+
+    private record Removal<V>(long key, V value, RemovalCause cause) {}
+
+    /**
+     * Approximate heap cost of one entry's bookkeeping (node and its region slot).
+     * Byte-measuring weighers add it so the weight covers the whole entry.
+     */
+    public static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.80;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static final class Node<V> {
+        final long key;
+        volatile V value;
+        int weight;
+        int queue;
+        volatile long accessTime;
+        Node<V> prev;
+        Node<V> next;
+
+        Node(long key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.accessTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list in access order, head is the least recently used
+     */
+    private static final class AccessQueue<V> {
+        Node<V> head;
+        Node<V> tail;
+
+        void addLast(Node<V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void unlink(Node<V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node<V> node) {
+            if (tail != node) {
+                unlink(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+        }
+    }
+
+    private final RegionTable<Node<V>> data = new RegionTable<>();
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final ToIntFunction<V> weigher;
+    private final FrequencySketch sketch;
+
+    private final AccessQueue<V> window = new AccessQueue<>();
+    private final AccessQueue<V> probation = new AccessQueue<>();
+    private final AccessQueue<V> protectedQueue = new AccessQueue<>();
+
+    private long maximumWeight;
+    private long windowMaximum;
+    private long protectedMaximum;
+    private long windowWeight;
+    private long protectedWeight;
+    private volatile long weightedSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile RemovalListener<V> removalListener;
+    private MemoryBudget memoryBudget;
+    private List<Removal<V>> pendingRemovals = new ArrayList<>();
+
+    /**
+     * @param maximumWeight Total weight the cache may hold, usually bytes
+     * @param expectedEntries Rough entry count used to size the frequency sketch
+     * @param weigher Computes the weight of a value when it is inserted
+     */
+    public TinyLfuCache(long maximumWeight, long expectedEntries, ToIntFunction<V> weigher) {
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(expectedEntries);
+        applyMaximum(maximumWeight);
+    }
+
+    /**
+     * Returns the cached value and records the access, or null on a miss
+     */
+    public V get(long key) {
+        Node<V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            recordAccess(key, null);
+            return null;
+        }
+        hits.increment();
+        node.accessTime = System.currentTimeMillis();
+        recordAccess(key, node);
+        return node.value;
+    }
+
+    /**
+     * Returns the cached value without touching statistics or recency
+     */
+    public V peek(long key) {
+        Node<V> node = data.get(key);
+        return node == null ? null : node.value;
+    }
+
+    public boolean contains(long key) {
+        return data.containsKey(key);
+    }
+
+    /**
+     * Returns up to limit values in no particular order, without touching statistics or recency
+     */
+    public List<V> sample(int limit) {
+        List<V> values = new ArrayList<>(Math.min(limit, data.size()));
+        for (Node<V> node : data.values(limit)) {
+            values.add(node.value);
+        }
+        return values;
+    }
+
+    /**
+     * Returns which of the given keys are cached, without touching statistics or recency.
+     * Keys are grouped by region and intersected with each region's presence bitmap,
+     * so the cost is one lookup per region rather than one per key.
+     */
+    public Set<Long> presentKeys(Collection<Long> keys) {
+        Map<Long, long[]> wanted = new HashMap<>();
+        for (long key : keys) {
+            long[] mask = wanted.computeIfAbsent(RegionTable.regionKeyOf(key), k -> new long[RegionTable.WORDS]);
+            int slot = RegionTable.slotOf(key);
+            mask[slot >>> 6] |= 1L << slot;
+        }
+
+        Set<Long> present = new HashSet<>();
+        for (Map.Entry<Long, long[]> entry : wanted.entrySet()) {
+            RegionTable.Region<Node<V>> region = data.region(entry.getKey());
+            if (region == null) {
+                continue;
+            }
+            long[] mask = entry.getValue();
+            for (int word = 0; word < RegionTable.WORDS; word++) {
+                long matches = mask[word] & region.presence.get(word);
+                while (matches != 0) {
+                    int slot = (word << 6) | Long.numberOfTrailingZeros(matches);
+                    matches &= matches - 1;
+                    present.add(RegionTable.chunkKey(entry.getKey(), slot));
+                }
+            }
+        }
+        return present;
+    }
+
+    /**
+     * Removes every entry of a 32x32 chunk region at once
+     * @return number of entries removed
+     */
+    public int removeRegion(int regionX, int regionZ) {
+        long regionKey = RegionTable.regionKey(regionX, regionZ);
+        int removed = 0;
+        List<Removal<V>> dropped;
+        policyLock.lock();
+        try {
+            RegionTable.Region<Node<V>> region = data.region(regionKey);
+            if (region != null) {
+                for (int slot = 0; slot < RegionTable.SLOTS; slot++) {
+                    Node<V> node = region.slots.get(slot);
+                    if (node != null && data.remove(node.key, node)) {
+                        unlink(node);
+                        addPending(node.key, node.value, RemovalCause.EXPLICIT);
+                        removed++;
+                    }
+                }
+            }
+            dropped = takePendingRemovals();
+        } finally {
+            policyLock.unlock();
+        }
+        notifyRemovals(dropped);
+        return removed;
+    }
+
+    /**
+     * Inserts or replaces a value. Returns false if it is heavier than the whole cache;
+     * any older value of the key is removed then, so it is never served in its place.
+     */
+    public boolean put(long key, V value) {
+        int weight = Math.max(1, weigher.applyAsInt(value));
+        if (weight > maximumWeight) {
+            remove(key);
+            return false;
+        }
+
+        List<Removal<V>> removed;
+        policyLock.lock();
+        try {
+            Node<V> node = data.get(key);
+            if (node != null) {
+                if (node.value != value) {
+                    addPending(key, node.value, RemovalCause.REPLACED);
+                }
+                int delta = weight - node.weight;
+                node.value = value;
+                node.weight = weight;
+                node.accessTime = System.currentTimeMillis();
+                if (node.queue == WINDOW) {
+                    windowWeight += delta;
+                } else if (node.queue == PROTECTED) {
+                    protectedWeight += delta;
+                }
+                addWeight(delta);
+                onAccess(node);
+            } else {
+                node = new Node<>(key, value, weight);
+                node.queue = WINDOW;
+                data.put(key, node);
+                window.addLast(node);
+                windowWeight += weight;
+                addWeight(weight);
+                sketch.increment(key);
+            }
+            evict();
+            removed = takePendingRemovals();
+        } finally {
+            policyLock.unlock();
+        }
+        notifyRemovals(removed);
+        return true;
+    }
+
+    /**
+     * Removes a key and returns its value, or null if absent
+     */
+    public V remove(long key) {
+        Node<V> node;
+        policyLock.lock();
+        try {
+            node = data.remove(key);
+            if (node == null) {
+                return null;
+            }
+            unlink(node);
+        } finally {
+            policyLock.unlock();
+        }
+        RemovalListener<V> listener = removalListener;
+        if (listener != null) {
+            listener.onRemoval(key, node.value, RemovalCause.EXPLICIT);
+        }
+        return node.value;
+    }
+
+    /**
+     * Drops every entry not accessed within the given idle time
+     * @return number of entries removed
+     */
+    public int expire(long maxIdleMillis) {
+        long cutoff = System.currentTimeMillis() - maxIdleMillis;
+        int removed = 0;
+        List<Removal<V>> expired;
+        policyLock.lock();
+        try {
+            removed += expireQueue(window, cutoff);
+            removed += expireQueue(probation, cutoff);
+            removed += expireQueue(protectedQueue, cutoff);
+            expired = takePendingRemovals();
+        } finally {
+            policyLock.unlock();
+        }
+        notifyRemovals(expired);
+        return removed;
+    }
+
+    public void clear() {
+        List<Removal<V>> cleared;
+        policyLock.lock();
+        try {
+            if (removalListener != null) {
+                data.forEach(node -> addPending(node.key, node.value, RemovalCause.EXPLICIT));
+            }
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            windowWeight = 0;
+            protectedWeight = 0;
+            addWeight(-weightedSize);
+            cleared = takePendingRemovals();
+        } finally {
+            policyLock.unlock();
+        }
+        notifyRemovals(cleared);
+    }
+
+    /**
+     * Changes the weight limit, evicting immediately if the cache is now over it
+     */
+    public void setMaximumWeight(long maximumWeight) {
+        List<Removal<V>> evicted;
+        policyLock.lock();
+        try {
+            applyMaximum(maximumWeight);
+            evict();
+            evicted = takePendingRemovals();
+        } finally {
+            policyLock.unlock();
+        }
+        notifyRemovals(evicted);
+    }
+
+    /**
+     * Evicts until the cache weighs at most the given amount, without changing its maximum
+     * @return weight released
+     */
+    public long trimTo(long targetWeight) {
+        List<Removal<V>> evicted;
+        long before;
+        policyLock.lock();
+        try {
+            before = weightedSize;
+            long savedMaximum = maximumWeight;
+            applyMaximum(Math.max(0L, targetWeight));
+            evict();
+            applyMaximum(savedMaximum);
+            evicted = takePendingRemovals();
+        } finally {
+            policyLock.unlock();
+        }
+        notifyRemovals(evicted);
+        return before - weightedSize;
+    }
+
+    /**
+     * Charges the weight of every entry to a shared budget; the current content is transferred
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        policyLock.lock();
+        try {
+            if (this.memoryBudget != null) {
+                this.memoryBudget.release(weightedSize);
+            }
+            this.memoryBudget = memoryBudget;
+            if (memoryBudget != null) {
+                memoryBudget.charge(weightedSize);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public void setRemovalListener(RemovalListener<V> removalListener) {
+        this.removalListener = removalListener;
+    }
+
+    public long maximumWeight() {
+        return maximumWeight;
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public double hitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total > 0 ? (h * 100.0 / total) : 0.0;
+    }
+
+    private void addWeight(long delta) {
+        weightedSize += delta;
+        if (memoryBudget != null) {
+            memoryBudget.charge(delta);
+        }
+    }
+
+    private void applyMaximum(long maximumWeight) {
+        this.maximumWeight = Math.max(1L, maximumWeight);
+        this.windowMaximum = Math.max(1L, (long) (this.maximumWeight * WINDOW_RATIO));
+        this.protectedMaximum = (long) ((this.maximumWeight - windowMaximum) * PROTECTED_RATIO);
+    }
+
+    /**
+     * Reads only try the lock: under contention the recency update is dropped,
+     * which costs a little policy accuracy but never stalls a reader
+     */
+    private void recordAccess(long key, Node<V> node) {
+        if (!policyLock.tryLock()) {
+            return;
+        }
+        try {
+            sketch.increment(key);
+            if (node != null && data.get(key) == node) {
+                onAccess(node);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void onAccess(Node<V> node) {
+        switch (node.queue) {
+            case WINDOW -> window.moveToBack(node);
+            case PROBATION -> {
+                probation.unlink(node);
+                node.queue = PROTECTED;
+                protectedQueue.addLast(node);
+                protectedWeight += node.weight;
+                while (protectedWeight > protectedMaximum && protectedQueue.head != null) {
+                    Node<V> demoted = protectedQueue.head;
+                    protectedQueue.unlink(demoted);
+                    protectedWeight -= demoted.weight;
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+            default -> protectedQueue.moveToBack(node);
+        }
+    }
+
+    /**
+     * Moves window overflow into probation as admission candidates, then, while
+     * over the limit, lets the newest candidate duel the probation LRU victim
+     */
+    private void evict() {
+        while (windowWeight > windowMaximum && window.head != null) {
+            Node<V> candidate = window.head;
+            window.unlink(candidate);
+            windowWeight -= candidate.weight;
+            candidate.queue = PROBATION;
+            probation.addLast(candidate);
+        }
+
+        while (weightedSize > maximumWeight) {
+            Node<V> victim = probation.head;
+            Node<V> candidate = probation.tail;
+            if (victim == null) {
+                victim = protectedQueue.head != null ? protectedQueue.head : window.head;
+                if (victim == null) {
+                    return;
+                }
+                evictNode(victim);
+                continue;
+            }
+            if (victim == candidate) {
+                evictNode(victim);
+                continue;
+            }
+            if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evictNode(victim);
+            } else {
+                evictNode(candidate);
+            }
+        }
+    }
+
+    private void evictNode(Node<V> node) {
+        data.remove(node.key, node);
+        unlink(node);
+        evictions.increment();
+        addPending(node.key, node.value, RemovalCause.EVICTED);
+    }
+
+    private void addPending(long key, V value, RemovalCause cause) {
+        if (removalListener != null) {
+            pendingRemovals.add(new Removal<>(key, value, cause));
+        }
+    }
+
+    private List<Removal<V>> takePendingRemovals() {
+        if (pendingRemovals.isEmpty()) {
+            return null;
+        }
+        List<Removal<V>> taken = pendingRemovals;
+        pendingRemovals = new ArrayList<>();
+        return taken;
+    }
+
+    private void notifyRemovals(List<Removal<V>> removals) {
+        RemovalListener<V> listener = removalListener;
+        if (removals == null || listener == null) {
+            return;
+        }
+        for (Removal<V> removal : removals) {
+            listener.onRemoval(removal.key(), removal.value(), removal.cause());
+        }
+    }
+
+    private void unlink(Node<V> node) {
+        switch (node.queue) {
+            case WINDOW -> {
+                window.unlink(node);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> probation.unlink(node);
+            default -> {
+                protectedQueue.unlink(node);
+                protectedWeight -= node.weight;
+            }
+        }
+        addWeight(-node.weight);
+    }
+
+    private int expireQueue(AccessQueue<V> queue, long cutoff) {
+        int removed = 0;
+        Node<V> node = queue.head;
+        while (node != null) {
+            Node<V> next = node.next;
+            if (node.accessTime < cutoff) {
+                data.remove(node.key, node);
+                unlink(node);
+                addPending(node.key, node.value, RemovalCause.EXPIRED);
+                removed++;
+            }
+            node = next;
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,51 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import java.util.Locale;
+
+/*
+ *   How the chunk caches treat one world, chosen per world in config.yml
+ *   STANDARD: global TTL, invalidated on change
+ *   IMMUTABLE: for maps that never change; entries never expire or invalidate and the
+ *   disk tier is written through and kept across restarts
+ *   VOLATILE: for worlds that change constantly; short TTL and block changes are tracked
+ *   DISABLED: nothing of the world is cached
+ */
+public enum WorldCacheProfile {
+    STANDARD,
+    IMMUTABLE,
+    VOLATILE,
+    DISABLED;
+
+    public boolean caches() {
+        return this != DISABLED;
+    }
+
+    public boolean expires() {
+        return this != IMMUTABLE;
+    }
+
+    /**
+     * Whether block changes should invalidate or mark cached chunks dirty
+     */
+    public boolean tracksBlockChanges() {
+        return this == STANDARD || this == VOLATILE;
+    }
+
+    public boolean persistsToDisk() {
+        return this == IMMUTABLE;
+    }
+
+    /**
+     * Parses a config value, falling back to STANDARD for unknown or missing names
+     */
+    public static WorldCacheProfile fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return STANDARD;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return STANDARD;
+        }
+    }
+}
@@ -4,9 +4,20 @@ import com.google.inject.Inject;
 import com.thewinterframework.command.CommandComponent;
 import com.thewinterframework.service.ReloadServiceManager;
 import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
-import me.mapacheee.extendedhorizons.integration.packetevents.PacketChunkCacheService;
+import me.mapacheee.extendedhorizons.integration.packetevents.ChunkPacketDispatcher;
 import me.mapacheee.extendedhorizons.shared.service.ConfigService;
 import me.mapacheee.extendedhorizons.shared.service.MessageService;
+import me.mapacheee.extendedhorizons.viewdistance.cache.CodecBenchmark;
+import me.mapacheee.extendedhorizons.viewdistance.cache.FrameBenchmark;
+import me.mapacheee.extendedhorizons.viewdistance.cache.PacketCodecs;
+import me.mapacheee.extendedhorizons.viewdistance.service.ChunkCacheManager;
+import me.mapacheee.extendedhorizons.viewdistance.service.ChunkFlowController;
+import me.mapacheee.extendedhorizons.viewdistance.service.EgressBudget;
+import me.mapacheee.extendedhorizons.viewdistance.service.MemoryPressureMonitor;
+import me.mapacheee.extendedhorizons.viewdistance.service.PacketBatcher;
+import me.mapacheee.extendedhorizons.viewdistance.service.PrecompressedFrameService;
+import me.mapacheee.extendedhorizons.viewdistance.service.SelfTrafficTracker;
+import me.mapacheee.extendedhorizons.viewdistance.service.ServerLoadController;
 import me.mapacheee.extendedhorizons.viewdistance.service.ViewDistanceService;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
@@ -18,6 +29,8 @@ import org.incendo.cloud.annotations.Command;
 import org.incendo.cloud.annotations.Permission;
 import org.incendo.cloud.paper.util.sender.Source;
 
+import java.util.List;
+
 /*
  *   Command entrypoint for user/admin operations
 */
@@ -28,8 +41,20 @@ public class ViewDistanceCommand {
     private final MessageService messageService;
     private final ConfigService configService;
     private final ReloadServiceManager reloadServiceManager;
-    private final PacketChunkCacheService cacheService;
+    private final ChunkCacheManager cacheManager;
+    private final MemoryPressureMonitor memoryPressureMonitor;
     private final me.mapacheee.extendedhorizons.viewdistance.service.FakeChunkService fakeChunkService;
+    private final SelfTrafficTracker selfTraffic;
+    private final ChunkPacketDispatcher chunkPacketDispatcher;
+    private final PrecompressedFrameService frameService;
+    private final PacketBatcher packetBatcher;
+    private final ChunkFlowController flowController;
+    private final EgressBudget egressBudget;
+    private final ServerLoadController loadController;
+
+    private static final int BENCHMARK_SAMPLES = 256;
+    private static final int BENCHMARK_ROUNDS = 5;
+    private static final int BENCHMARK_DEFAULT_THRESHOLD = 256;
 
     @Inject
     public ViewDistanceCommand(
@@ -37,15 +62,31 @@ public class ViewDistanceCommand {
             MessageService messageService,
             ConfigService configService,
             ReloadServiceManager reloadServiceManager,
-            PacketChunkCacheService cacheService,
-            me.mapacheee.extendedhorizons.viewdistance.service.FakeChunkService fakeChunkService
+            ChunkCacheManager cacheManager,
+            MemoryPressureMonitor memoryPressureMonitor,
+            me.mapacheee.extendedhorizons.viewdistance.service.FakeChunkService fakeChunkService,
+            SelfTrafficTracker selfTraffic,
+            ChunkPacketDispatcher chunkPacketDispatcher,
+            PrecompressedFrameService frameService,
+            PacketBatcher packetBatcher,
+            ChunkFlowController flowController,
+            EgressBudget egressBudget,
+            ServerLoadController loadController
     ) {
         this.viewDistanceService = viewDistanceService;
         this.messageService = messageService;
         this.configService = configService;
         this.reloadServiceManager = reloadServiceManager;
-        this.cacheService = cacheService;
+        this.cacheManager = cacheManager;
+        this.memoryPressureMonitor = memoryPressureMonitor;
         this.fakeChunkService = fakeChunkService;
+        this.selfTraffic = selfTraffic;
+        this.chunkPacketDispatcher = chunkPacketDispatcher;
+        this.frameService = frameService;
+        this.packetBatcher = packetBatcher;
+        this.flowController = flowController;
+        this.egressBudget = egressBudget;
+        this.loadController = loadController;
     }
 
     @Command("eh|extendedhorizons|horizons|viewdistance|vd help")
@@ -132,6 +173,11 @@ public class ViewDistanceCommand {
             return;
         }
         messageService.sendOtherCurrentDistance(sender, target.getName(), view.getTargetDistance());
+        if (view.getEffectiveDistance() < view.getTargetDistance()) {
+            sender.sendMessage("§3Lowered to §6" + view.getEffectiveDistance() + " §3chunks (client render distance §6"
+                    + target.getClientViewDistance() + "§3, ping §6" + target.getPing() + " ms§3, load reduction §6"
+                    + loadController.getReduction() + "§3)");
+        }
     }
 
     @Command("eh|extendedhorizons|horizons|viewdistance|vd setplayer <player> <distance>")
@@ -176,32 +222,119 @@ public class ViewDistanceCommand {
         int max = Bukkit.getMaxPlayers();
         int countWithView = 0;
         int sum = 0;
+        int lowered = 0;
         for (Player p : Bukkit.getOnlinePlayers()) {
             var v = viewDistanceService.getPlayerView(p.getUniqueId());
             if (v != null) {
                 countWithView++;
                 sum += v.getTargetDistance();
+                if (v.getEffectiveDistance() < v.getTargetDistance()) {
+                    lowered++;
+                }
             }
         }
         int avg = countWithView == 0 ? 0 : (sum / countWithView);
 
-        int cachedFakePackets = fakeChunkService.getCacheSize();
-        double fakeMemoryMB = fakeChunkService.getEstimatedMemoryUsageMB();
-
-        int cacheEntries = cacheService.size();
+        ChunkCacheManager.Stats cache = cacheManager.getStats();
 
         sender.sendMessage("§3========= §6ExtendedHorizons Stats §3=========");
         sender.sendMessage("§3Players Online: §d" + online + "§3/§d" + max);
         sender.sendMessage("§3Average Distance: §6" + avg + " §3chunks");
+        if (lowered > 0) {
+            sender.sendMessage("§3Lowered by connection, client setting or load: §d" + lowered + " §3players");
+        }
+        sender.sendMessage("§3Load Reduction: §6" + loadController.getReduction() + " §3chunks (MSPT §6"
+                + String.format("%.1f", loadController.getLastMspt()) + "§3, §d" + loadController.getLastBacklog() + " §3chunks queued)");
         sender.sendMessage("§3Server View Distance: §6" + fakeChunkService.getServerViewDistance() + " §3chunks");
         sender.sendMessage("§3");
-        sender.sendMessage("§3Fake Chunks Cache: §d" + cachedFakePackets + " §3packets");
-        sender.sendMessage("§3Fake Memory Usage: §6" + String.format("%.2f", fakeMemoryMB) + " MB");
-        sender.sendMessage("§3Cache Hit Rate: §6" + String.format("%.1f%%", fakeChunkService.getCacheHitRate()));
-        sender.sendMessage("§3Legacy Cache: §d" + cacheEntries);
+        sender.sendMessage("§3Decoded Cache (L1): §d" + cache.decodedEntries() + " §3chunks, §6" + toMb(cache.decodedBytes()) + " MB");
+        sender.sendMessage("§3Packet Cache (L2): §d" + cache.packetEntries() + " §3packets, §6" + toMb(cache.packetBytes()) + " MB");
+        sender.sendMessage("§3Off-Heap: §6" + toMb(cache.offHeap().usedBytes()) + "§3/§6" + toMb(cache.offHeap().reservedBytes())
+                + " MB §3in §d" + cache.offHeap().slabs() + " §3slabs, fragmentation §6"
+                + String.format("%.1f%%", cache.offHeap().internalFragmentation() * 100) + " §3slot / §6"
+                + String.format("%.1f%%", cache.offHeap().externalFragmentation() * 100) + " §3slab");
+        sender.sendMessage("§3Disk Cache (L3): §d" + cache.diskEntries() + " §3packets, §6" + toMb(cache.diskBytes()) + " MB");
+        sender.sendMessage("§3Memory Budget: §6" + toMb(cache.memoryBytes()) + "§3/§6" + toMb(cache.budgetBytes())
+                + " MB §3(heap §6" + toMb(cache.heapBytes()) + " MB§3, off-heap §6" + toMb(cache.offHeap().reservedBytes()) + " MB§3)");
+        sender.sendMessage("§3Cache Hit Rate: §6" + String.format("%.1f%%", cache.hitRate()));
+        sender.sendMessage("§3Promotions: §d" + cache.promotions() + " §3Demotions: §d" + cache.demotions());
+        sender.sendMessage("§3Self-traffic: §d" + selfTraffic.getSkipped() + " §3skipped, §d"
+                + selfTraffic.getDecoded() + " §3decoded anyway");
+        sender.sendMessage("§3Server chunk packets: §d" + chunkPacketDispatcher.getPackets() + " §3seen, §d"
+                + chunkPacketDispatcher.getDecodes() + " §3decoded");
+        if (configService.get().performance().fakeChunks().precompressedFrames()) {
+            sender.sendMessage("§3Shared frames: §d" + frameService.getCompressed() + " §3compressed, §d"
+                    + frameService.getReused() + " §3reused");
+        }
+        sender.sendMessage("§3Batched writes: §d" + packetBatcher.getWrites() + " §3in §d"
+                + packetBatcher.getFlushes() + " §3flushes");
+        if (flowController.isEnabled()) {
+            sender.sendMessage("§3Chunk batches: §d" + flowController.getBatches() + " §3sent, §d"
+                    + flowController.getCuts() + " §3rate cuts");
+        }
+        sender.sendMessage("§3Horizon egress: §6" + toKb(egressBudget.getHorizonRate()) + " KB/s"
+                + (egressBudget.getLimit() > 0
+                        ? " §3of §6" + toKb(egressBudget.getEffectiveLimit()) + " KB/s §3(budget §6" + toKb(egressBudget.getLimit()) + " KB/s§3)"
+                        : " §3(unlimited)")
+                + " §3real chunks §6" + toKb(egressBudget.getRealRate()) + " KB/s");
+        sender.sendMessage("§3Heap Occupancy: §6" + String.format("%.0f%%", memoryPressureMonitor.getOccupancy() * 100)
+                + (cacheManager.isAdmissionsPaused() ? " §c(pressure, fake chunk loading paused)" : ""));
+        for (ChunkCacheManager.WorldStats world : cacheManager.getWorldStats()) {
+            sender.sendMessage("§3 - §6" + world.worldName() + " §3(" + world.profile().name().toLowerCase(java.util.Locale.ROOT)
+                    + "): §d" + world.memoryEntries() + " §3chunks, §6"
+                    + toMb(world.memoryBytes()) + "§3/§6" + toMb(world.budgetBytes()) + " MB§3, hit rate §6"
+                    + String.format("%.1f%%", world.hitRate()));
+        }
         sender.sendMessage("§3===========================================");
     }
 
+    @Command("eh|extendedhorizons|horizons|viewdistance|vd benchmark")
+    @Permission("extendedhorizons.admin")
+    public void benchmark(Source source) {
+        CommandSender sender = source.source();
+        Plugin plugin = ExtendedHorizonsPlugin.getPlugin(ExtendedHorizonsPlugin.class);
+        sender.sendMessage("§3Benchmarking packet codecs on cached chunks...");
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<byte[]> samples = cacheManager.samplePackets(BENCHMARK_SAMPLES);
+            List<CodecBenchmark.Result> results = CodecBenchmark.run(samples, PacketCodecs.benchmarkCandidates(), BENCHMARK_ROUNDS);
+            int threshold = frameService.getCompressionThreshold();
+            FrameBenchmark.Result frames = FrameBenchmark.run(samples,
+                    threshold >= 0 ? threshold : BENCHMARK_DEFAULT_THRESHOLD, BENCHMARK_ROUNDS);
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (results.isEmpty()) {
+                    sender.sendMessage("§3No cached chunks to benchmark yet, explore a little and retry");
+                    return;
+                }
+                sender.sendMessage("§3========= §6Codec Benchmark §3(§d" + samples.size() + " §3chunks) =========");
+                for (CodecBenchmark.Result result : results) {
+                    sender.sendMessage("§6" + result.codec()
+                            + " §3ratio §d" + String.format("%.1f%%", result.ratio() * 100)
+                            + " §3compress §6" + String.format("%.0f", result.compressMBps()) + " MB/s"
+                            + " §3decompress §6" + String.format("%.0f", result.decompressMBps()) + " MB/s");
+                }
+                if (frames != null) {
+                    sender.sendMessage("§6Shared frames §3ratio §d"
+                            + String.format("%.1f%%", frames.frameBytes() * 100.0 / Math.max(1L, frames.rawBytes()))
+                            + " §3compress §6" + String.format("%.0f", frames.compressMicros()) + " µs"
+                            + " §3reuse §6" + String.format("%.1f", frames.reuseMicros()) + " µs §3per send");
+                    sender.sendMessage("§3CPU saved per 1000 sends of a cached frame: §6"
+                            + String.format("%.0f", frames.savedMillisPerThousand()) + " ms");
+                }
+                sender.sendMessage("§3===========================================");
+            });
+        });
+    }
+
+    private static String toMb(long bytes) {
+        return String.format("%.2f", bytes / (1024.0 * 1024.0));
+    }
+
+    private static String toKb(long bytes) {
+        return String.format("%.0f", bytes / 1024.0);
+    }
+
     @Command("eh|extendedhorizons|horizons|viewdistance|vd worldinfo <world>")
     @Permission("extendedhorizons.admin")
     public void worldInfo(Source source, @Argument("world") String worldName) {
@@ -3,10 +3,7 @@ package me.mapacheee.extendedhorizons.viewdistance.entity;
 import org.bukkit.Chunk;
 import org.bukkit.entity.Player;
 
-import java.util.Collections;
-import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 
 /*
@@ -18,12 +15,13 @@ public class PlayerView {
 
     private final UUID uuid;
     private int targetDistance;
-    private final Set<Long> sentChunks = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private int effectiveDistance;
 
 
     public PlayerView(Player player, int initialDistance) {
         this.uuid = player.getUniqueId();
         this.targetDistance = initialDistance;
+        this.effectiveDistance = initialDistance;
     }
 
     public UUID getUuid() {
@@ -38,8 +36,15 @@ public class PlayerView {
         this.targetDistance = targetDistance;
     }
 
-    public Set<Long> getSentChunks() {
-        return sentChunks;
+    /**
+     * The distance actually applied: the target after connection and server caps
+     */
+    public int getEffectiveDistance() {
+        return effectiveDistance;
+    }
+
+    public void setEffectiveDistance(int effectiveDistance) {
+        this.effectiveDistance = effectiveDistance;
     }
 
     public static long getChunkKey(Chunk chunk) {
@@ -0,0 +1,21 @@
+package me.mapacheee.extendedhorizons.viewdistance.entity;
+
+import java.util.UUID;
+
+/*
+ *   Immutable view state of one player as of their last view update.
+ *   Published by the main thread and read by packet-thread filters, which
+ *   never touch the Bukkit player; the version grows whenever the state changes.
+ */
+public record ViewSnapshot(UUID worldId, int chunkX, int chunkZ, int radius, long version) {
+
+    /**
+     * Whether the chunk lies within the circle of radius plus margin around the center chunk
+     */
+    public boolean covers(int x, int z, int margin) {
+        long dx = x - chunkX;
+        long dz = z - chunkZ;
+        double limit = radius + margin + 0.5;
+        return dx * dx + dz * dz <= limit * limit;
+    }
+}
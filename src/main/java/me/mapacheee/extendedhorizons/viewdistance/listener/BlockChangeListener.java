@@ -0,0 +1,174 @@
+package me.mapacheee.extendedhorizons.viewdistance.listener;
+
+import com.google.inject.Inject;
+import com.thewinterframework.paper.listener.ListenerComponent;
+import me.mapacheee.extendedhorizons.viewdistance.service.BlockChangeLog;
+import me.mapacheee.extendedhorizons.viewdistance.service.BlockUpdateForwarder;
+import me.mapacheee.extendedhorizons.viewdistance.service.ChunkCacheManager;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockGrowEvent;
+import org.bukkit.event.block.BlockMultiPlaceEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.FluidLevelChangeEvent;
+import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.StructureGrowEvent;
+
+import java.util.List;
+
+/*
+ *   Marks cached chunk sections dirty on block changes (placing, breaking, explosions,
+ *   pistons, fluids and natural growth or decay) so stale chunks are never served,
+ *   forwards them to players holding the chunk as a fake chunk and stamps them in the
+ *   change log used for delta refreshes
+ */
+@ListenerComponent
+public class BlockChangeListener implements Listener {
+
+    private final ChunkCacheManager cacheManager;
+    private final BlockUpdateForwarder blockUpdateForwarder;
+    private final BlockChangeLog blockChangeLog;
+
+    @Inject
+    public BlockChangeListener(ChunkCacheManager cacheManager, BlockUpdateForwarder blockUpdateForwarder,
+                               BlockChangeLog blockChangeLog) {
+        this.cacheManager = cacheManager;
+        this.blockUpdateForwarder = blockUpdateForwarder;
+        this.blockChangeLog = blockChangeLog;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlace(BlockPlaceEvent event) {
+        if (event instanceof BlockMultiPlaceEvent multiPlace) {
+            for (BlockState state : multiPlace.getReplacedBlockStates()) {
+                mark(state);
+            }
+            return;
+        }
+        mark(event.getBlockPlaced());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBreak(BlockBreakEvent event) {
+        mark(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        mark(event.getBlock());
+        markAll(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        markAll(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        markPiston(event.getBlock(), event.getBlocks(), event.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        markPiston(event.getBlock(), event.getBlocks(), event.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFlow(BlockFromToEvent event) {
+        mark(event.getToBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFluidLevelChange(FluidLevelChangeEvent event) {
+        mark(event.getBlock());
+    }
+
+    /**
+     * Also covers spreading (grass, fire) and entity-formed blocks, which are subclasses
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onForm(BlockFormEvent event) {
+        mark(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFade(BlockFadeEvent event) {
+        mark(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onGrow(BlockGrowEvent event) {
+        mark(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBurn(BlockBurnEvent event) {
+        mark(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onLeavesDecay(LeavesDecayEvent event) {
+        mark(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        mark(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStructureGrow(StructureGrowEvent event) {
+        for (BlockState state : event.getBlocks()) {
+            mark(state);
+        }
+    }
+
+    /**
+     * Moved blocks land one step away; both sides are marked since retraction reverses the move
+     */
+    private void markPiston(Block piston, List<Block> moved, BlockFace direction) {
+        mark(piston);
+        mark(piston.getRelative(direction));
+        for (Block block : moved) {
+            mark(block);
+            mark(block.getRelative(direction));
+            mark(block.getRelative(direction.getOppositeFace()));
+        }
+    }
+
+    private void markAll(List<Block> blocks) {
+        for (Block block : blocks) {
+            mark(block);
+        }
+    }
+
+    private void mark(Block block) {
+        mark(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+
+    private void mark(BlockState state) {
+        mark(state.getWorld(), state.getX(), state.getY(), state.getZ());
+    }
+
+    private void mark(World world, int x, int y, int z) {
+        cacheManager.markDirty(world, x, y, z);
+        blockUpdateForwarder.blockChanged(world, x, y, z);
+        blockChangeLog.blockChanged(world, x, y, z);
+    }
+}
@@ -0,0 +1,40 @@
+package me.mapacheee.extendedhorizons.viewdistance.listener;
+
+import com.destroystokyo.paper.event.player.PlayerClientOptionsChangeEvent;
+import com.google.inject.Inject;
+import com.thewinterframework.paper.listener.ListenerComponent;
+import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
+import me.mapacheee.extendedhorizons.viewdistance.service.ViewDistanceService;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+/*
+ * Re-applies the view when a client changes its render distance,
+ * which caps the fake ring (see ViewDistanceService)
+ */
+@ListenerComponent
+public class ClientOptionsListener implements Listener {
+
+    private final ViewDistanceService viewDistanceService;
+
+    @Inject
+    public ClientOptionsListener(ViewDistanceService viewDistanceService) {
+        this.viewDistanceService = viewDistanceService;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onClientOptionsChange(PlayerClientOptionsChangeEvent event) {
+        if (!event.hasViewDistanceChanged()) {
+            return;
+        }
+        Player player = event.getPlayer();
+        Bukkit.getScheduler().runTask(ExtendedHorizonsPlugin.getPlugin(ExtendedHorizonsPlugin.class), () -> {
+            if (player.isOnline()) {
+                viewDistanceService.updatePlayerView(player);
+            }
+        });
+    }
+}
@@ -6,10 +6,11 @@ import me.mapacheee.extendedhorizons.viewdistance.service.ViewDistanceService;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.event.player.PlayerTeleportEvent;
 
 /*
- * Handles teleports and world changes to resync cache center/radius and prefetch
+ * Handles teleports, respawns and world changes to resync cache center/radius and prefetch
  */
 @ListenerComponent
 public class PlayerTeleportWorldListener implements Listener {
@@ -48,6 +49,20 @@ public class PlayerTeleportWorldListener implements Listener {
         );
     }
 
+    @EventHandler
+    public void onRespawn(PlayerRespawnEvent event) {
+        org.bukkit.Bukkit.getScheduler().runTask(
+            me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin.getPlugin(
+                me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin.class
+            ),
+            () -> {
+                if (event.getPlayer().isOnline()) {
+                    viewDistanceService.updatePlayerView(event.getPlayer());
+                }
+            }
+        );
+    }
+
     @EventHandler
     public void onWorldChange(PlayerChangedWorldEvent event) {
         org.bukkit.Bukkit.getScheduler().runTask(
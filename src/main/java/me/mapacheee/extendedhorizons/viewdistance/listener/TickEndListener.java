@@ -0,0 +1,37 @@
+package me.mapacheee.extendedhorizons.viewdistance.listener;
+
+import com.destroystokyo.paper.event.server.ServerTickEndEvent;
+import com.google.inject.Inject;
+import com.thewinterframework.paper.listener.ListenerComponent;
+import me.mapacheee.extendedhorizons.viewdistance.service.ChunkFlowController;
+import me.mapacheee.extendedhorizons.viewdistance.service.EgressBudget;
+import me.mapacheee.extendedhorizons.viewdistance.service.PacketBatcher;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+/*
+ *   Closes the chunk batches opened during the tick, refills the egress
+ *   budget, then flushes the packets batched during the tick, once per player
+ */
+@ListenerComponent
+public class TickEndListener implements Listener {
+
+    private final ChunkFlowController flowController;
+    private final EgressBudget egressBudget;
+    private final PacketBatcher packetBatcher;
+
+    @Inject
+    public TickEndListener(ChunkFlowController flowController, EgressBudget egressBudget, PacketBatcher packetBatcher) {
+        this.flowController = flowController;
+        this.egressBudget = egressBudget;
+        this.packetBatcher = packetBatcher;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTickEnd(ServerTickEndEvent event) {
+        flowController.endTick();
+        egressBudget.endTick();
+        packetBatcher.flushAll();
+    }
+}
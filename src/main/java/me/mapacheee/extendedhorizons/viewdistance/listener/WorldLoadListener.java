@@ -0,0 +1,43 @@
+package me.mapacheee.extendedhorizons.viewdistance.listener;
+
+import com.google.inject.Inject;
+import com.thewinterframework.paper.listener.ListenerComponent;
+import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
+import me.mapacheee.extendedhorizons.viewdistance.service.ChunkCacheManager;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+
+import java.util.UUID;
+
+/*
+ * Creates the cache partition of a world once it has loaded
+ */
+@ListenerComponent
+public class WorldLoadListener implements Listener {
+
+    private final ChunkCacheManager cacheManager;
+
+    @Inject
+    public WorldLoadListener(ChunkCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        UUID worldId = event.getWorld().getUID();
+        // Queued behind the drop of a world unloaded in the same tick, like WorldUnloadListener's task
+        Bukkit.getScheduler().runTask(
+            ExtendedHorizonsPlugin.getPlugin(ExtendedHorizonsPlugin.class),
+            () -> {
+                World world = Bukkit.getWorld(worldId);
+                if (world != null) {
+                    cacheManager.loadWorld(world);
+                }
+            }
+        );
+    }
+}
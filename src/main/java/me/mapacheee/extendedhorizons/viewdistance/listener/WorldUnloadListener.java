@@ -0,0 +1,43 @@
+package me.mapacheee.extendedhorizons.viewdistance.listener;
+
+import com.google.inject.Inject;
+import com.thewinterframework.paper.listener.ListenerComponent;
+import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
+import me.mapacheee.extendedhorizons.viewdistance.service.ChunkCacheManager;
+import me.mapacheee.extendedhorizons.viewdistance.service.FakeChunkService;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.util.UUID;
+
+/*
+ * Drops the cache partition and in-flight loads of a world once it has unloaded
+ */
+@ListenerComponent
+public class WorldUnloadListener implements Listener {
+
+    private final ChunkCacheManager cacheManager;
+    private final FakeChunkService fakeChunkService;
+
+    @Inject
+    public WorldUnloadListener(ChunkCacheManager cacheManager, FakeChunkService fakeChunkService) {
+        this.cacheManager = cacheManager;
+        this.fakeChunkService = fakeChunkService;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        UUID worldId = event.getWorld().getUID();
+        // The event fires before the world is gone; once it is, no new partition can be created for it
+        Bukkit.getScheduler().runTask(
+            ExtendedHorizonsPlugin.getPlugin(ExtendedHorizonsPlugin.class),
+            () -> {
+                fakeChunkService.clearWorld(worldId);
+                cacheManager.dropWorld(worldId);
+            }
+        );
+    }
+}
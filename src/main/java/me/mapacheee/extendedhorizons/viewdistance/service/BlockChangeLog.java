@@ -0,0 +1,196 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.thewinterframework.service.annotation.Service;
+import com.thewinterframework.service.annotation.lifecycle.OnDisable;
+import com.thewinterframework.service.annotation.lifecycle.OnEnable;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.Short2LongMap;
+import it.unimi.dsi.fastutil.shorts.Short2LongOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import it.unimi.dsi.fastutil.shorts.ShortSets;
+import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
+import net.minecraft.core.SectionPos;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+ *   Version stamps of block changes, so a chunk refresh can ask what changed since
+ *   the client was last sent it instead of comparing contents
+ *   Every reported change takes the next sequence number; positions are kept per
+ *   section up to a cap, past which the whole section counts as changed
+ *   History is kept for one retention window: stamps older than the floor are pruned
+ *   and anything sent before the floor can no longer be answered
+ *   Only changes reported by events are seen, like the cache dirty marks
+ */
+@Service
+public class BlockChangeLog {
+
+    /**
+     * Past this many positions a section is cheaper to treat as changed whole
+     */
+    private static final int MAX_POSITIONS_PER_SECTION = 256;
+    private static final long RETENTION_TICKS = 20L * 60 * 5;
+
+    /**
+     * Every position of a section, stands for a section that changed whole
+     */
+    public static final ShortSet ALL_POSITIONS;
+
+    static {
+        ShortOpenHashSet all = new ShortOpenHashSet(4096);
+        for (int i = 0; i < 4096; i++) {
+            all.add((short) i);
+        }
+        ALL_POSITIONS = ShortSets.unmodifiable(all);
+    }
+
+    /**
+     * Changed positions per section Y; empty when nothing changed
+     */
+    public record ChunkDelta(Int2ObjectMap<ShortSet> sections) {
+        public boolean isEmpty() {
+            return sections.isEmpty();
+        }
+    }
+
+    private static final class SectionChanges {
+        final Short2LongMap positions = new Short2LongOpenHashMap();
+        long lastSequence;
+        long wholeSequence = -1L;
+    }
+
+    private final Map<UUID, Map<Long, SectionChanges>> sections = new HashMap<>();
+    private final Map<UUID, Map<Long, Long>> wholeChunks = new HashMap<>();
+    private long sequence;
+    private long floor;
+    private long pendingFloor;
+    private BukkitTask pruneTask;
+
+    @OnEnable
+    public void start() {
+        Plugin plugin = JavaPlugin.getPlugin(ExtendedHorizonsPlugin.class);
+        pruneTask = Bukkit.getScheduler().runTaskTimer(plugin, this::prune, RETENTION_TICKS, RETENTION_TICKS);
+    }
+
+    @OnDisable
+    public synchronized void stop() {
+        if (pruneTask != null) {
+            pruneTask.cancel();
+            pruneTask = null;
+        }
+        sections.clear();
+        wholeChunks.clear();
+    }
+
+    /**
+     * Stamp to record along with a send; changes after it are reported by changesSince
+     */
+    public synchronized long sequence() {
+        return sequence;
+    }
+
+    public synchronized void blockChanged(World world, int x, int y, int z) {
+        long stamp = ++sequence;
+        SectionChanges changes = sections.computeIfAbsent(world.getUID(), k -> new HashMap<>())
+                .computeIfAbsent(SectionPos.asLong(x >> 4, y >> 4, z >> 4), k -> new SectionChanges());
+        changes.lastSequence = stamp;
+        if (changes.wholeSequence >= 0) {
+            changes.wholeSequence = stamp;
+            return;
+        }
+        changes.positions.put((short) ((x & 15) << 8 | (z & 15) << 4 | (y & 15)), stamp);
+        if (changes.positions.size() > MAX_POSITIONS_PER_SECTION) {
+            changes.positions.clear();
+            changes.wholeSequence = stamp;
+        }
+    }
+
+    /**
+     * Records a bulk change touching any section of the chunk
+     */
+    public synchronized void chunkChanged(World world, int chunkX, int chunkZ) {
+        wholeChunks.computeIfAbsent(world.getUID(), k -> new HashMap<>())
+                .put(packChunkKey(chunkX, chunkZ), ++sequence);
+    }
+
+    /**
+     * Changes of the chunk after the given stamp, or null when the history no longer
+     * reaches back that far or the chunk changed in bulk
+     */
+    public synchronized ChunkDelta changesSince(World world, int chunkX, int chunkZ, long since) {
+        if (since < floor) {
+            return null;
+        }
+        UUID worldId = world.getUID();
+        Map<Long, Long> bulk = wholeChunks.get(worldId);
+        if (bulk != null) {
+            Long stamp = bulk.get(packChunkKey(chunkX, chunkZ));
+            if (stamp != null && stamp > since) {
+                return null;
+            }
+        }
+
+        Int2ObjectMap<ShortSet> changed = new Int2ObjectOpenHashMap<>();
+        Map<Long, SectionChanges> worldSections = sections.get(worldId);
+        if (worldSections == null) {
+            return new ChunkDelta(changed);
+        }
+        int bottom = world.getMinHeight() >> 4;
+        int top = (world.getMaxHeight() - 1) >> 4;
+        for (int sectionY = bottom; sectionY <= top; sectionY++) {
+            SectionChanges changes = worldSections.get(SectionPos.asLong(chunkX, sectionY, chunkZ));
+            if (changes == null || changes.lastSequence <= since) {
+                continue;
+            }
+            if (changes.wholeSequence > since) {
+                changed.put(sectionY, ALL_POSITIONS);
+                continue;
+            }
+            ShortSet positions = new ShortOpenHashSet();
+            for (Short2LongMap.Entry entry : changes.positions.short2LongEntrySet()) {
+                if (entry.getLongValue() > since) {
+                    positions.add(entry.getShortKey());
+                }
+            }
+            if (!positions.isEmpty()) {
+                changed.put(sectionY, positions);
+            }
+        }
+        return new ChunkDelta(changed);
+    }
+
+    public synchronized void clearWorld(UUID worldId) {
+        sections.remove(worldId);
+        wholeChunks.remove(worldId);
+    }
+
+    /**
+     * Raises the floor to the stamp of the previous run, so history spans one to two windows
+     */
+    synchronized void prune() {
+        floor = pendingFloor;
+        pendingFloor = sequence;
+        for (Map<Long, SectionChanges> worldSections : sections.values()) {
+            worldSections.values().removeIf(changes -> changes.lastSequence < floor);
+            for (SectionChanges changes : worldSections.values()) {
+                changes.positions.short2LongEntrySet().removeIf(entry -> entry.getLongValue() < floor);
+            }
+        }
+        for (Map<Long, Long> bulk : wholeChunks.values()) {
+            bulk.values().removeIf(stamp -> stamp < floor);
+        }
+    }
+
+    private static long packChunkKey(int x, int z) {
+        return ((long) z << 32) | (x & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,260 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.google.inject.Inject;
+import com.thewinterframework.service.annotation.Service;
+import com.thewinterframework.service.annotation.lifecycle.OnDisable;
+import com.thewinterframework.service.annotation.lifecycle.OnEnable;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
+import net.minecraft.core.SectionPos;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientboundLevelChunkWithLightPacket;
+import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.craftbukkit.CraftWorld;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+ *   Keeps fake chunks current by forwarding block changes to the players holding them
+ *   The server only updates players whose real view range tracks a chunk, so changes
+ *   are collected per section during a tick and flushed at the start of the next one,
+ *   after the events that reported them have been applied
+ *   Each section becomes one section-blocks-update packet read from the live chunk;
+ *   a section with too many changes, or a bulk edit, resends the whole chunk instead;
+ *   a flush writes everything through PacketBatcher and flushes each connection once
+ *   Every forwarded packet is charged to EgressBudget and moves the holder's stamp in
+ *   ClientChunkLedger, so a later refresh only sends what changed after it
+ *   Only chunks that some player holds as a fake chunk are recorded at all
+ */
+@Service
+public class BlockUpdateForwarder {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockUpdateForwarder.class);
+    private static final boolean DEBUG = false;
+
+    /**
+     * Past this many changed blocks in one section a full chunk packet is smaller than the update
+     */
+    private static final int FULL_RESEND_THRESHOLD = 1024;
+
+    private final FakeChunkTracker fakeChunkTracker;
+    private final SelfTrafficTracker selfTraffic;
+    private final PacketBatcher packetBatcher;
+    private final EgressBudget egressBudget;
+    private final ClientChunkLedger clientChunkLedger;
+    private final BlockChangeLog blockChangeLog;
+    private final Plugin plugin = JavaPlugin.getPlugin(ExtendedHorizonsPlugin.class);
+
+    private final Object lock = new Object();
+    private Map<UUID, Map<Long, ShortSet>> pendingSections = new HashMap<>();
+    private Map<UUID, Set<Long>> pendingChunks = new HashMap<>();
+    private BukkitTask flushTask;
+
+    @Inject
+    public BlockUpdateForwarder(FakeChunkTracker fakeChunkTracker, SelfTrafficTracker selfTraffic,
+                                PacketBatcher packetBatcher, EgressBudget egressBudget,
+                                ClientChunkLedger clientChunkLedger, BlockChangeLog blockChangeLog) {
+        this.fakeChunkTracker = fakeChunkTracker;
+        this.selfTraffic = selfTraffic;
+        this.packetBatcher = packetBatcher;
+        this.egressBudget = egressBudget;
+        this.clientChunkLedger = clientChunkLedger;
+        this.blockChangeLog = blockChangeLog;
+    }
+
+    @OnEnable
+    public void start() {
+        flushTask = Bukkit.getScheduler().runTaskTimer(plugin, this::flush, 1L, 1L);
+    }
+
+    @OnDisable
+    public void stop() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        synchronized (lock) {
+            pendingSections.clear();
+            pendingChunks.clear();
+        }
+    }
+
+    /**
+     * Records a single changed block
+     */
+    public void blockChanged(World world, int x, int y, int z) {
+        UUID worldId = world.getUID();
+        if (fakeChunkTracker.holders(worldId, packChunkKey(x >> 4, z >> 4)).isEmpty()) {
+            return;
+        }
+
+        long sectionKey = SectionPos.asLong(x >> 4, y >> 4, z >> 4);
+        short position = (short) ((x & 15) << 8 | (z & 15) << 4 | (y & 15));
+        synchronized (lock) {
+            pendingSections.computeIfAbsent(worldId, k -> new HashMap<>())
+                    .computeIfAbsent(sectionKey, k -> new ShortOpenHashSet())
+                    .add(position);
+        }
+    }
+
+    /**
+     * Records a bulk change of a chunk, resent whole on the next flush
+     */
+    public void chunkChanged(World world, int chunkX, int chunkZ) {
+        UUID worldId = world.getUID();
+        long key = packChunkKey(chunkX, chunkZ);
+        if (fakeChunkTracker.holders(worldId, key).isEmpty()) {
+            return;
+        }
+
+        synchronized (lock) {
+            pendingChunks.computeIfAbsent(worldId, k -> new HashSet<>()).add(key);
+        }
+    }
+
+    private void flush() {
+        Map<UUID, Map<Long, ShortSet>> sections;
+        Map<UUID, Set<Long>> chunks;
+        synchronized (lock) {
+            if (pendingSections.isEmpty() && pendingChunks.isEmpty()) {
+                return;
+            }
+            sections = pendingSections;
+            chunks = pendingChunks;
+            pendingSections = new HashMap<>();
+            pendingChunks = new HashMap<>();
+        }
+
+        for (Map.Entry<UUID, Map<Long, ShortSet>> entry : sections.entrySet()) {
+            Set<Long> resend = chunks.computeIfAbsent(entry.getKey(), k -> new HashSet<>());
+            for (Map.Entry<Long, ShortSet> section : entry.getValue().entrySet()) {
+                long sectionKey = section.getKey();
+                long chunkKey = packChunkKey(SectionPos.x(sectionKey), SectionPos.z(sectionKey));
+                if (section.getValue().size() > FULL_RESEND_THRESHOLD) {
+                    resend.add(chunkKey);
+                }
+            }
+        }
+
+        for (Map.Entry<UUID, Set<Long>> entry : chunks.entrySet()) {
+            World world = Bukkit.getWorld(entry.getKey());
+            if (world == null) {
+                continue;
+            }
+            for (long key : entry.getValue()) {
+                sendChunk(world, key);
+            }
+        }
+
+        for (Map.Entry<UUID, Map<Long, ShortSet>> entry : sections.entrySet()) {
+            World world = Bukkit.getWorld(entry.getKey());
+            if (world == null) {
+                continue;
+            }
+            Set<Long> resent = chunks.get(entry.getKey());
+            for (Map.Entry<Long, ShortSet> section : entry.getValue().entrySet()) {
+                long sectionKey = section.getKey();
+                long chunkKey = packChunkKey(SectionPos.x(sectionKey), SectionPos.z(sectionKey));
+                if (resent == null || !resent.contains(chunkKey)) {
+                    sendSection(world, sectionKey, section.getValue());
+                }
+            }
+        }
+        packetBatcher.flushAll();
+    }
+
+    private void sendSection(World world, long sectionKey, ShortSet positions) {
+        int chunkX = SectionPos.x(sectionKey);
+        int chunkZ = SectionPos.z(sectionKey);
+        long chunkKey = packChunkKey(chunkX, chunkZ);
+        Set<UUID> holders = fakeChunkTracker.holders(world.getUID(), chunkKey);
+        if (holders.isEmpty()) {
+            return;
+        }
+
+        ServerLevel level = ((CraftWorld) world).getHandle();
+        LevelChunk chunk = level.getChunkSource().getChunkNow(chunkX, chunkZ);
+        if (chunk == null) {
+            return;
+        }
+        int index = level.getSectionIndexFromSectionY(SectionPos.y(sectionKey));
+        LevelChunkSection[] sections = chunk.getSections();
+        if (index < 0 || index >= sections.length) {
+            return;
+        }
+
+        SectionPos pos = SectionPos.of(sectionKey);
+        send(world, chunkKey, holders, new ClientboundSectionBlocksUpdatePacket(pos, positions, sections[index]),
+                false, FakeChunkService.estimateSectionUpdateBytes(positions.size()));
+    }
+
+    private void sendChunk(World world, long key) {
+        int chunkX = (int) (key & 0xFFFFFFFFL);
+        int chunkZ = (int) (key >> 32);
+        Set<UUID> holders = fakeChunkTracker.holders(world.getUID(), key);
+        if (holders.isEmpty()) {
+            return;
+        }
+
+        LevelChunk chunk = ((CraftWorld) world).getHandle().getChunkSource().getChunkNow(chunkX, chunkZ);
+        if (chunk == null) {
+            return;
+        }
+
+        // Note: Constructor is deprecated but no alternative available in current Paper version
+        @SuppressWarnings("deprecation")
+        ClientboundLevelChunkWithLightPacket packet = new ClientboundLevelChunkWithLightPacket(
+                chunk, chunk.getLevel().getLightEngine(), null, null);
+        send(world, key, holders, packet, true, FakeChunkService.estimateChunkBytes(chunk.getSections()));
+    }
+
+    /**
+     * @param fullChunk whether the packet is a full chunk packet, announced as self-traffic
+     * @param bytes approximate packet size, charged once per holder it reaches
+     */
+    private void send(World world, long chunkKey, Set<UUID> holders, Packet<?> packet, boolean fullChunk, long bytes) {
+        // The packet is read from the live chunk, so it carries every change logged so far
+        long stamp = blockChangeLog.sequence();
+        for (UUID playerId : holders) {
+            Player player = Bukkit.getPlayer(playerId);
+            if (player == null || !player.isOnline() || !player.getWorld().equals(world)) {
+                continue;
+            }
+            try {
+                if (fullChunk) {
+                    selfTraffic.expect(playerId, chunkKey);
+                }
+                packetBatcher.send(player, packet);
+                egressBudget.charge(bytes);
+                clientChunkLedger.record(playerId, world.getUID(), chunkKey, stamp);
+            } catch (Exception e) {
+                if (fullChunk) {
+                    selfTraffic.cancel(playerId, chunkKey);
+                }
+                if (DEBUG) {
+                    logger.warn("[EH] Failed to forward block update to {}: {}", player.getName(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static long packChunkKey(int x, int z) {
+        return ((long) z << 32) | (x & 0xFFFFFFFFL);
+    }
+}
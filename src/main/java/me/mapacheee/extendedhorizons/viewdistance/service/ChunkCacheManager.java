@@ -0,0 +1,946 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.protocol.world.chunk.Column;
+import com.google.inject.Inject;
+import com.thewinterframework.service.annotation.Service;
+import com.thewinterframework.service.annotation.lifecycle.OnDisable;
+import com.thewinterframework.service.annotation.lifecycle.OnEnable;
+import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
+import me.mapacheee.extendedhorizons.integration.packetevents.ChunkPacketEncoder;
+import me.mapacheee.extendedhorizons.shared.config.MainConfig;
+import me.mapacheee.extendedhorizons.shared.service.ConfigService;
+import me.mapacheee.extendedhorizons.viewdistance.cache.CachedChunk;
+import me.mapacheee.extendedhorizons.viewdistance.cache.ChunkDiskCache;
+import me.mapacheee.extendedhorizons.viewdistance.cache.MemoryBudget;
+import me.mapacheee.extendedhorizons.viewdistance.cache.OffHeapSlabStore;
+import me.mapacheee.extendedhorizons.viewdistance.cache.PacketCodecs;
+import me.mapacheee.extendedhorizons.viewdistance.cache.TinyLfuCache;
+import me.mapacheee.extendedhorizons.viewdistance.cache.WorldCacheProfile;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+ *   Single entry point for every chunk cache used by fake chunks
+ *   L1: decoded Columns handed in through putDecoded
+ *   L2: encoded packet bodies in ChunkPacketCache (optionally compressed, optionally off-heap);
+ *   chunks captured from outgoing packets land here as copied off the wire
+ *   L3: packet bodies spilled to disk (optional)
+ *   Entries are demoted L1 -> L2 -> L3 on eviction and promoted L3 -> L2 on hit.
+ *   L2 hits are sent raw, the same bytes the server wrote, with no decode or encode.
+ *   Every tier is partitioned by world: chunk coordinates repeat across worlds, so each
+ *   world gets its own partition with its own budget and statistics, and an unloaded
+ *   world is dropped as a whole. Partitions are created on the main thread as worlds load,
+ *   packet threads only look them up. Partition budgets are children of one global MemoryBudget;
+ *   entries are weighed when inserted (measured Column footprint, stored packet bytes).
+ *   A world over its own ceiling evicts from itself, L2 first, then L1; exceeding the
+ *   global ceiling evicts from the largest worlds. hot-tier-percent caps how much of a
+ *   world's ceiling L1 may hold. One sweep expires every partition.
+ *   Each world follows a WorldCacheProfile: immutable worlds never expire or invalidate and
+ *   write their disk tier through so it survives restarts, volatile worlds expire quickly,
+ *   disabled worlds get no partition at all.
+ *   Block changes only mark the affected sections dirty. A dirty copy in any tier is reported
+ *   as a miss, so the chunk is sent from server memory and recaptured fresh with its light,
+ *   block entities and heightmaps; patching block states alone would leave those stale.
+ *   Edits that bypass block tracking (FastAsyncWorldEdit queues) are covered by recapturing
+ *   every server chunk packet of block-tracking worlds, see setRecaptureServerChunks.
+ */
+@Service
+public class ChunkCacheManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkCacheManager.class);
+    private static final boolean DEBUG = false;
+
+    private static final int DEFAULT_BUDGET_MB = 150;
+    private static final int DEFAULT_HOT_TIER_PERCENT = 40;
+    private static final int DEFAULT_TTL_SECONDS = 300;
+    private static final int DEFAULT_VOLATILE_TTL_SECONDS = 60;
+    private static final int DEFAULT_DISK_CACHE_MB = 1024;
+    private static final int DEFAULT_CLEANUP_INTERVAL_SECONDS = 20;
+    private static final int REGION_SIZE = 32;
+
+    private final ConfigService configService;
+    private final OffHeapSlabStore slabStore;
+    private final MemoryBudget memoryBudget;
+    private final Map<UUID, WorldCachePartition> partitions = new ConcurrentHashMap<>();
+    private final Plugin plugin = JavaPlugin.getPlugin(ExtendedHorizonsPlugin.class);
+    private volatile Path diskRoot;
+    private volatile boolean recaptureServerChunks;
+    private volatile boolean admissionsPaused;
+
+    /**
+     * Demotions encode or write to disk, so they never run on the thread that evicted
+     */
+    private final ExecutorService demotionExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "EH-CacheDemotion");
+        t.setDaemon(true);
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        return t;
+    });
+
+    public record Stats(
+            int decodedEntries, long decodedBytes,
+            int packetEntries, long packetBytes,
+            int diskEntries, long diskBytes,
+            long budgetBytes,
+            OffHeapSlabStore.Stats offHeap,
+            long decodedHits, long packetHits, long diskHits, long misses,
+            long promotions, long demotions
+    ) {
+        public long memoryBytes() {
+            return decodedBytes + packetBytes;
+        }
+
+        /**
+         * Measured bytes held on the Java heap, what -Xmx has to accommodate
+         */
+        public long heapBytes() {
+            return Math.max(0L, memoryBytes() - offHeap.allocatedBytes());
+        }
+
+        public int memoryEntries() {
+            return decodedEntries + packetEntries;
+        }
+
+        public double hitRate() {
+            long hits = decodedHits + packetHits + diskHits;
+            long total = hits + misses;
+            return total > 0 ? (hits * 100.0 / total) : 0.0;
+        }
+    }
+
+    /**
+     * Occupancy and effectiveness of one world partition
+     */
+    public record WorldStats(
+            String worldName,
+            WorldCacheProfile profile,
+            int memoryEntries, long memoryBytes,
+            int diskEntries, long diskBytes,
+            long budgetBytes,
+            long hits, long misses
+    ) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total > 0 ? (hits * 100.0 / total) : 0.0;
+        }
+    }
+
+    @Inject
+    public ChunkCacheManager(ConfigService configService) {
+        this.configService = configService;
+
+        long budget = getBudgetBytes();
+        this.memoryBudget = new MemoryBudget(budget);
+        this.slabStore = new OffHeapSlabStore(ChunkPacketCache.slabLimit(budget));
+    }
+
+    @OnEnable
+    public void start() {
+        var fakeChunks = configService.get().performance().fakeChunks();
+        if (fakeChunks.diskCache()) {
+            File directory = new File(plugin.getDataFolder(), "cache");
+            ChunkDiskCache.wipe(directory.toPath(), getPersistentWorldNames());
+            diskRoot = directory.toPath();
+        }
+
+        int interval = fakeChunks.cacheCleanupInterval() > 0
+                ? fakeChunks.cacheCleanupInterval()
+                : DEFAULT_CLEANUP_INTERVAL_SECONDS;
+        Bukkit.getWorlds().forEach(this::loadWorld);
+        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::performCleanup, interval * 20L, interval * 20L);
+    }
+
+    /**
+     * Stores every chunk packet of block-tracking worlds again, even over a clean copy.
+     * For edits the block trackers cannot see; the server resends what such an edit touched.
+     */
+    public void setRecaptureServerChunks(boolean recaptureServerChunks) {
+        this.recaptureServerChunks = recaptureServerChunks;
+    }
+
+    @OnDisable
+    public void shutdown() {
+        demotionExecutor.shutdownNow();
+        clear();
+        slabStore.clear();
+    }
+
+    /**
+     * Stores a freshly decoded column in the hot tier of its world, replacing older copies below it
+     */
+    public void putDecoded(UUID worldId, int x, int z, Column column) {
+        if (column == null || admissionsPaused || !configService.get().performance().fakeChunks().enabled()) {
+            return;
+        }
+        WorldCachePartition partition = partitions.get(worldId);
+        if (partition == null) {
+            return;
+        }
+
+        long key = packChunkKey(x, z);
+        // A column captured in the tick of a change may predate it, so that mark stays
+        int tick = Bukkit.getCurrentTick();
+        partition.dirtyChunks.computeIfPresent(key, (k, dirty) -> dirty.tick() < tick ? null : dirty);
+        if (configService.get().performance().fakeChunks().enableMemoryCache()) {
+            partition.decodedCache.put(key, column);
+            partition.packetCache.invalidate(x, z);
+            enforceBudget(partition);
+        } else {
+            demoteToPacketTier(partition, key, column);
+        }
+
+        ChunkDiskCache disk = partition.diskCache;
+        if (disk != null && !partition.profile.persistsToDisk() && disk.contains(key)) {
+            try {
+                demotionExecutor.execute(() -> disk.remove(key));
+            } catch (RejectedExecutionException ignored) {
+                // Shutting down, the directory is wiped on next start
+            }
+        }
+    }
+
+    /**
+     * Stores a chunk packet body captured from the wire in the packet tier of its world,
+     * replacing older copies. Compressed and stored on the demotion thread, never the caller's.
+     * @param sequence BlockChangeLog stamp taken when the body was captured
+     */
+    public void putEncoded(UUID worldId, int x, int z, byte[] packetBody, long sequence) {
+        if (packetBody == null || admissionsPaused || !configService.get().performance().fakeChunks().enabled()) {
+            return;
+        }
+        WorldCachePartition partition = partitions.get(worldId);
+        if (partition == null) {
+            return;
+        }
+
+        long key = packChunkKey(x, z);
+        // Until it is stored, block changes mark the chunk as if it were cached already
+        partition.beginCapture(key);
+        int tick = Bukkit.getCurrentTick();
+        try {
+            demotionExecutor.execute(() -> {
+                try {
+                    storeCapture(partition, key, x, z, packetBody, sequence, tick);
+                } finally {
+                    partition.endCapture(key);
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down, nothing left to store into
+            partition.endCapture(key);
+        }
+    }
+
+    private void storeCapture(WorldCachePartition partition, long key, int x, int z, byte[] packetBody,
+                              long sequence, int tick) {
+        if (partition.dropped) {
+            return;
+        }
+        byte[] stored = partition.packetCache.cachePacket(x, z, packetBody, sequence);
+        if (stored == null) {
+            return;
+        }
+        if (partition.dropped) {
+            partition.packetCache.invalidate(x, z);
+            return;
+        }
+        // A body captured in the tick of a change may predate it, so that mark stays
+        partition.dirtyChunks.computeIfPresent(key, (k, dirty) -> dirty.tick() < tick ? null : dirty);
+        partition.decodedCache.remove(key);
+        writeThrough(partition, key, stored);
+        enforceBudget(partition);
+
+        ChunkDiskCache disk = partition.diskCache;
+        if (disk != null && !partition.profile.persistsToDisk() && disk.contains(key)) {
+            disk.remove(key);
+        }
+    }
+
+    /**
+     * Whether a fresh capture of the chunk would be stored. False while a memory tier
+     * holds a clean copy, so packet listeners can skip copying chunks already cached,
+     * unless server chunk packets are recaptured for a block-tracking world.
+     */
+    public boolean wantsCapture(UUID worldId, int x, int z) {
+        if (admissionsPaused || !configService.get().performance().fakeChunks().enabled()) {
+            return false;
+        }
+        WorldCachePartition partition = partitions.get(worldId);
+        if (partition == null) {
+            return false;
+        }
+        if (recaptureServerChunks && partition.profile.tracksBlockChanges()) {
+            return true;
+        }
+        long key = packChunkKey(x, z);
+        return partition.dirtyChunks.containsKey(key)
+                || !(partition.decodedCache.contains(key) || partition.packetCache.isCached(x, z));
+    }
+
+    /**
+     * Returns the chunk from a memory tier of the world, or null. Never touches the disk.
+     */
+    public CachedChunk get(UUID worldId, int x, int z) {
+        WorldCachePartition partition = partitions.get(worldId);
+        if (partition == null) {
+            return null;
+        }
+        long key = packChunkKey(x, z);
+        WorldCachePartition.DirtySections dirty = partition.dirtyChunks.get(key);
+
+        if (dirty != null) {
+            // Stale, the caller resends it from the server and the capture refreshes it
+            partition.misses.increment();
+            return null;
+        }
+        Column column = partition.decodedCache.get(key);
+        if (column != null) {
+            partition.decodedHits.increment();
+            return CachedChunk.decoded(x, z, column);
+        }
+
+        CachedChunk encoded = partition.packetCache.getChunk(x, z);
+        if (encoded != null) {
+            partition.packetHits.increment();
+            return encoded;
+        }
+
+        partition.misses.increment();
+        return null;
+    }
+
+    /**
+     * Checks the memory tiers without affecting statistics or recency
+     */
+    public boolean contains(UUID worldId, int x, int z) {
+        WorldCachePartition partition = partitions.get(worldId);
+        if (partition == null) {
+            return false;
+        }
+        long key = packChunkKey(x, z);
+        return partition.decodedCache.contains(key) || partition.packetCache.isCached(x, z);
+    }
+
+    /**
+     * Returns which of the given chunk keys are held by a memory tier of the world.
+     * One region bitmap intersection per 32x32 region instead of a lookup per chunk.
+     */
+    public Set<Long> presentInMemory(UUID worldId, Collection<Long> chunkKeys) {
+        WorldCachePartition partition = partitions.get(worldId);
+        if (partition == null) {
+            return new HashSet<>();
+        }
+        Set<Long> present = partition.decodedCache.presentKeys(chunkKeys);
+        if (present.size() < chunkKeys.size()) {
+            present.addAll(partition.packetCache.presentKeys(chunkKeys));
+        }
+        return present;
+    }
+
+    public boolean isOnDisk(UUID worldId, int x, int z) {
+        WorldCachePartition partition = partitions.get(worldId);
+        ChunkDiskCache disk = partition != null ? partition.diskCache : null;
+        return disk != null && disk.contains(packChunkKey(x, z));
+    }
+
+    /**
+     * Reads a chunk from the disk tier of the world and promotes it to the packet tier.
+     * Blocking, call it from a worker thread only.
+     */
+    public CachedChunk loadFromDisk(UUID worldId, int x, int z) {
+        WorldCachePartition partition = partitions.get(worldId);
+        ChunkDiskCache disk = partition != null ? partition.diskCache : null;
+        if (disk == null) {
+            return null;
+        }
+
+        long key = packChunkKey(x, z);
+        if (partition.dirtyChunks.containsKey(key)) {
+            return null;
+        }
+        byte[] stored = disk.read(key);
+        if (stored == null) {
+            return null;
+        }
+
+        if (!partition.profile.persistsToDisk()) {
+            disk.remove(key);
+        }
+        partition.packetCache.restorePacket(x, z, stored);
+        partition.promotions.increment();
+        enforceBudget(partition);
+
+        CachedChunk encoded = partition.packetCache.getChunk(x, z);
+        if (encoded == null) {
+            return null;
+        }
+        partition.diskHits.increment();
+        return encoded;
+    }
+
+    /**
+     * Drops a chunk from every tier of the world. Ignored for immutable worlds.
+     */
+    public void invalidate(UUID worldId, int x, int z) {
+        WorldCachePartition partition = partitions.get(worldId);
+        if (partition == null || !partition.profile.tracksBlockChanges()) {
+            return;
+        }
+        long key = packChunkKey(x, z);
+        partition.decodedCache.remove(key);
+        partition.packetCache.invalidate(x, z);
+        partition.dirtyChunks.remove(key);
+        ChunkDiskCache disk = partition.diskCache;
+        if (disk != null && disk.contains(key)) {
+            try {
+                demotionExecutor.execute(() -> disk.remove(key));
+            } catch (RejectedExecutionException ignored) {
+                // Shutting down, the directory is wiped on next start
+            }
+        }
+    }
+
+    /**
+     * Drops a whole 32x32 chunk region from every tier of the world. Ignored for immutable worlds.
+     */
+    public void invalidateRegion(UUID worldId, int regionX, int regionZ) {
+        WorldCachePartition partition = partitions.get(worldId);
+        if (partition == null || !partition.profile.tracksBlockChanges()) {
+            return;
+        }
+        partition.decodedCache.removeRegion(regionX, regionZ);
+        partition.packetCache.invalidateRegion(regionX, regionZ);
+        partition.dirtyChunks.keySet().removeIf(key ->
+                ((int) key >> 5) == regionX && ((int) (key >> 32) >> 5) == regionZ);
+
+        ChunkDiskCache disk = partition.diskCache;
+        if (disk != null && disk.size() > 0) {
+            try {
+                demotionExecutor.execute(() -> {
+                    for (int dz = 0; dz < REGION_SIZE; dz++) {
+                        for (int dx = 0; dx < REGION_SIZE; dx++) {
+                            disk.remove(packChunkKey(regionX * REGION_SIZE + dx, regionZ * REGION_SIZE + dz));
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException ignored) {
+                // Shutting down, the directory is wiped on next start
+            }
+        }
+    }
+
+    /**
+     * Marks the block as changed in every cached copy of its chunk
+     */
+    public void markDirty(World world, int blockX, int blockY, int blockZ) {
+        markDirty(world, blockX, blockY, blockZ, blockX, blockY, blockZ);
+    }
+
+    /**
+     * Marks every section overlapping the block box as changed in the cached chunks.
+     * Nothing is re-read here: dirty chunks are refreshed from the server when next served.
+     * Cheap enough for the main thread; ignored for immutable worlds and chunks neither
+     * cached nor being captured.
+     */
+    public void markDirty(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        WorldCachePartition partition = partitions.get(world.getUID());
+        if (partition == null || !partition.profile.tracksBlockChanges()) {
+            return;
+        }
+
+        int bottomSection = world.getMinHeight() >> 4;
+        int topSection = (world.getMaxHeight() - 1) >> 4;
+        int fromSection = Math.max(minY >> 4, bottomSection) - bottomSection;
+        int toSection = Math.min(maxY >> 4, topSection) - bottomSection;
+        if (fromSection > toSection) {
+            return;
+        }
+        long mask = 0L;
+        for (int section = fromSection; section <= toSection; section++) {
+            mask |= 1L << Math.min(section, 63);
+        }
+
+        WorldCachePartition.DirtySections dirty = new WorldCachePartition.DirtySections(mask, Bukkit.getCurrentTick());
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                long key = packChunkKey(chunkX, chunkZ);
+                if (partition.holds(key, chunkX, chunkZ)) {
+                    partition.dirtyChunks.merge(key, dirty, WorldCachePartition.DirtySections::merge);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every tier of a world at once, releasing its share of the global budget.
+     * Called when the world unloads; a later load starts with an empty partition.
+     */
+    public void dropWorld(UUID worldId) {
+        WorldCachePartition partition = partitions.remove(worldId);
+        if (partition == null) {
+            return;
+        }
+        partition.dropped = true;
+        partition.clearMemory();
+
+        ChunkDiskCache disk = partition.diskCache;
+        if (disk != null) {
+            try {
+                demotionExecutor.execute(disk::delete);
+            } catch (RejectedExecutionException ignored) {
+                // Shutting down, the directory is wiped on next start
+            }
+        }
+        applyBudget();
+
+        if (DEBUG) {
+            logger.info("[EH] Dropped chunk cache partition of world {}", partition.worldName);
+        }
+    }
+
+    public void clear() {
+        for (WorldCachePartition partition : partitions.values()) {
+            partition.clearMemory();
+            ChunkDiskCache disk = partition.diskCache;
+            if (disk != null) {
+                disk.clear();
+            }
+        }
+    }
+
+    /**
+     * Trims the memory tiers of every world by the given share of their current weight.
+     * Meant for heap emergencies: trimmed entries are dropped, not demoted,
+     * as long as admissions are paused.
+     * @return bytes released
+     */
+    public long shed(double fraction) {
+        double keep = 1.0 - Math.max(0.0, Math.min(1.0, fraction));
+        long released = 0L;
+        for (WorldCachePartition partition : partitions.values()) {
+            released += partition.shrink(keep);
+        }
+        return released;
+    }
+
+    /**
+     * While paused, no new chunks enter the caches and evictions are not demoted
+     */
+    public void setAdmissionsPaused(boolean paused) {
+        this.admissionsPaused = paused;
+    }
+
+    public boolean isAdmissionsPaused() {
+        return admissionsPaused;
+    }
+
+    /**
+     * Collects up to limit uncompressed chunk packets from the memory tiers of all worlds,
+     * encoding decoded columns on the calling thread. Intended for benchmarks.
+     */
+    public List<byte[]> samplePackets(int limit) {
+        List<byte[]> samples = new ArrayList<>();
+        for (WorldCachePartition partition : partitions.values()) {
+            if (samples.size() >= limit) {
+                break;
+            }
+            samples.addAll(partition.packetCache.samplePackets(limit - samples.size()));
+            for (Column column : partition.decodedCache.sample(limit - samples.size())) {
+                try {
+                    samples.add(ChunkPacketEncoder.encode(column));
+                } catch (Exception e) {
+                    if (DEBUG) {
+                        logger.warn("[EH] Failed to encode sample column: {}", e.getMessage());
+                    }
+                }
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Totals over every world partition
+     */
+    public Stats getStats() {
+        int decodedEntries = 0;
+        int packetEntries = 0;
+        int diskEntries = 0;
+        long decodedBytes = 0L;
+        long packetBytes = 0L;
+        long diskBytes = 0L;
+        long decodedHits = 0L;
+        long packetHits = 0L;
+        long diskHits = 0L;
+        long misses = 0L;
+        long promotions = 0L;
+        long demotions = 0L;
+        for (WorldCachePartition partition : partitions.values()) {
+            decodedEntries += partition.decodedCache.size();
+            decodedBytes += partition.decodedCache.weightedSize();
+            packetEntries += partition.packetCache.getCacheSize();
+            packetBytes += partition.packetCache.getWeightedSizeBytes();
+            ChunkDiskCache disk = partition.diskCache;
+            if (disk != null) {
+                diskEntries += disk.size();
+                diskBytes += disk.sizeBytes();
+            }
+            decodedHits += partition.decodedHits.sum();
+            packetHits += partition.packetHits.sum();
+            diskHits += partition.diskHits.sum();
+            misses += partition.misses.sum();
+            promotions += partition.promotions.sum();
+            demotions += partition.demotions.sum();
+        }
+        return new Stats(
+                decodedEntries, decodedBytes,
+                packetEntries, packetBytes,
+                diskEntries, diskBytes,
+                memoryBudget.ceiling(),
+                slabStore.stats(),
+                decodedHits, packetHits, diskHits, misses,
+                promotions, demotions
+        );
+    }
+
+    /**
+     * Per-world statistics, largest partition first
+     */
+    public List<WorldStats> getWorldStats() {
+        List<WorldStats> stats = new ArrayList<>();
+        for (WorldCachePartition partition : partitions.values()) {
+            ChunkDiskCache disk = partition.diskCache;
+            stats.add(new WorldStats(
+                    partition.worldName,
+                    partition.profile,
+                    partition.memoryEntries(), partition.memoryBytes(),
+                    disk != null ? disk.size() : 0, disk != null ? disk.sizeBytes() : 0L,
+                    partition.budget.ceiling(),
+                    partition.decodedHits.sum() + partition.packetHits.sum() + partition.diskHits.sum(),
+                    partition.misses.sum()
+            ));
+        }
+        stats.sort(Comparator.comparingLong(WorldStats::memoryBytes).reversed());
+        return stats;
+    }
+
+    /**
+     * Cache profile configured for the world, STANDARD when it is not listed
+     */
+    public WorldCacheProfile getProfile(World world) {
+        return getProfile(world.getName());
+    }
+
+    public WorldCacheProfile getProfile(String worldName) {
+        MainConfig.PerformanceConfig.WorldCacheConfig world = configService.get().performance().fakeChunks().world(worldName);
+        return world != null ? WorldCacheProfile.fromName(world.profile()) : WorldCacheProfile.STANDARD;
+    }
+
+    /**
+     * Creates the partition of a loaded world unless it has one or its profile disables caching.
+     * Main thread only: packet threads just look partitions up, so a late packet cannot
+     * resurrect the partition of an unloaded world.
+     */
+    public void loadWorld(World world) {
+        if (partitions.containsKey(world.getUID()) || !getProfile(world).caches()) {
+            return;
+        }
+        boolean[] created = new boolean[1];
+        partitions.computeIfAbsent(world.getUID(), id -> {
+            created[0] = true;
+            return createPartition(id, world.getName());
+        });
+        if (created[0]) {
+            // Disk shares are split by partition count, so every world is resized
+            applyBudget();
+        }
+    }
+
+    private WorldCachePartition createPartition(UUID worldId, String worldName) {
+        WorldCacheProfile profile = getProfile(worldName);
+        WorldCachePartition partition = new WorldCachePartition(worldId, worldName, profile, configService,
+                slabStore, memoryBudget, getWorldBudgetBytes(worldName));
+        partition.decodedCache.setRemovalListener((key, column, cause) -> {
+            if (cause == TinyLfuCache.RemovalCause.EVICTED) {
+                demoteToPacketTier(partition, key, column);
+            }
+        });
+        partition.packetCache.setEvictionListener((key, stored, cause) -> demoteToDisk(partition, key, stored));
+
+        Path root = diskRoot;
+        if (root != null) {
+            Path directory = root.resolve(worldName);
+            try {
+                partition.diskCache = new ChunkDiskCache(directory, getDiskBudgetBytes(), profile.persistsToDisk(), getDiskFormat());
+            } catch (IOException e) {
+                logger.warn("[EH] Disk chunk cache disabled for world {}, could not prepare {}: {}",
+                        worldName, directory, e.getMessage());
+            }
+        }
+        configure(partition);
+        return partition;
+    }
+
+    private void demoteToPacketTier(WorldCachePartition partition, long key, Column column) {
+        if (admissionsPaused || partition.dropped) {
+            return;
+        }
+        int x = (int) (key & 0xFFFFFFFFL);
+        int z = (int) (key >> 32);
+        try {
+            demotionExecutor.execute(() -> {
+                if (partition.dropped) {
+                    return;
+                }
+                try {
+                    byte[] stored = partition.packetCache.cachePacket(x, z, ChunkPacketEncoder.encode(column),
+                            CachedChunk.UNKNOWN_SEQUENCE);
+                    partition.demotions.increment();
+                    if (partition.dropped) {
+                        // Raced with dropWorld, do not leave the entry charged to the global budget
+                        partition.packetCache.invalidate(x, z);
+                        return;
+                    }
+                    writeThrough(partition, key, stored);
+                    enforceBudget(partition);
+                } catch (Exception e) {
+                    if (DEBUG) {
+                        logger.warn("[EH] Failed to encode chunk {},{} for the packet tier: {}", x, z, e.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down, nothing left to demote into
+        }
+    }
+
+    /**
+     * Immutable worlds keep a disk copy of every encoded chunk, so the next start begins warm
+     */
+    private void writeThrough(WorldCachePartition partition, long key, byte[] stored) {
+        ChunkDiskCache disk = partition.diskCache;
+        if (stored == null || disk == null || !partition.profile.persistsToDisk() || disk.contains(key)) {
+            return;
+        }
+        try {
+            disk.write(key, stored);
+        } catch (IOException e) {
+            if (DEBUG) {
+                logger.warn("[EH] Failed to persist chunk to disk: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void demoteToDisk(WorldCachePartition partition, long key, byte[] stored) {
+        ChunkDiskCache disk = partition.diskCache;
+        if (disk == null || admissionsPaused || partition.dropped) {
+            return;
+        }
+        if (partition.profile.persistsToDisk() && disk.contains(key)) {
+            // Written through already
+            return;
+        }
+        try {
+            demotionExecutor.execute(() -> {
+                if (partition.dropped) {
+                    return;
+                }
+                try {
+                    disk.write(key, stored);
+                    partition.demotions.increment();
+                } catch (IOException e) {
+                    if (DEBUG) {
+                        logger.warn("[EH] Failed to spill chunk to disk: {}", e.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down, nothing left to demote into
+        }
+    }
+
+    /**
+     * Brings the world back under its own ceiling, then the global total under the
+     * global ceiling by evicting from the largest worlds first. Within a world, encoded
+     * packets go first since they are the cheaper tier to lose (they can spill to disk).
+     */
+    private void enforceBudget(WorldCachePartition partition) {
+        long overage = partition.budget.overage();
+        if (overage > 0) {
+            partition.release(overage);
+        }
+
+        long globalOverage = memoryBudget.overage();
+        if (globalOverage <= 0) {
+            return;
+        }
+        List<WorldCachePartition> bySize = new ArrayList<>(partitions.values());
+        bySize.sort(Comparator.comparingLong(WorldCachePartition::memoryBytes).reversed());
+        for (WorldCachePartition candidate : bySize) {
+            candidate.release(globalOverage);
+            globalOverage = memoryBudget.overage();
+            if (globalOverage <= 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Re-reads the budgets, then expires idle entries from the memory tiers of every world
+     */
+    private void performCleanup() {
+        applyBudget();
+        // A reload may have enabled caching for a loaded world; partitions are only created on the main thread
+        Bukkit.getScheduler().runTask(plugin, () -> Bukkit.getWorlds().forEach(this::loadWorld));
+
+        int removed = 0;
+        for (WorldCachePartition partition : partitions.values()) {
+            if (!partition.profile.expires()) {
+                continue;
+            }
+            long ttlMillis = getTtlSeconds(partition) * 1000L;
+            removed += partition.decodedCache.expire(ttlMillis) + partition.packetCache.expire(ttlMillis);
+        }
+        for (WorldCachePartition partition : partitions.values()) {
+            // Marks outlive their chunk when it is evicted
+            partition.dirtyChunks.keySet().removeIf(key ->
+                    !partition.holds(key, (int) (key & 0xFFFFFFFFL), (int) (key >> 32)));
+        }
+
+        if (removed > 0 && DEBUG) {
+            logger.info("[EH] Cache cleanup: removed {} expired chunks", removed);
+        }
+    }
+
+    /**
+     * Applies the global ceiling and re-sizes every world partition against it
+     */
+    private void applyBudget() {
+        long budget = getBudgetBytes();
+        memoryBudget.setCeiling(budget);
+        slabStore.setMaximumBytes(ChunkPacketCache.slabLimit(budget));
+        for (WorldCachePartition partition : partitions.values()) {
+            configure(partition);
+        }
+    }
+
+    /**
+     * Sizes one world: L1 is capped at its share of the world ceiling, L2 may use whatever
+     * L1 leaves free, and the disk budget is split evenly between loaded worlds
+     */
+    private void configure(WorldCachePartition partition) {
+        WorldCacheProfile profile = getProfile(partition.worldName);
+        if (!profile.caches()) {
+            dropWorld(partition.worldId);
+            return;
+        }
+        partition.profile = profile;
+
+        var fakeChunks = configService.get().performance().fakeChunks();
+        int hotPercent = fakeChunks.hotTierPercent() > 0 ? Math.min(90, fakeChunks.hotTierPercent()) : DEFAULT_HOT_TIER_PERCENT;
+        if (!fakeChunks.enableMemoryCache()) {
+            hotPercent = 0;
+        }
+
+        long budget = getWorldBudgetBytes(partition.worldName);
+        partition.budget.setCeiling(budget);
+        partition.decodedCache.setMaximumWeight(Math.max(1L, budget * hotPercent / 100));
+        partition.packetCache.setMaximumBytes(Math.max(1L, budget));
+        enforceBudget(partition);
+
+        ChunkDiskCache disk = partition.diskCache;
+        if (disk != null) {
+            disk.setMaximumBytes(getDiskBudgetBytes() / Math.max(1, partitions.size()));
+        }
+    }
+
+    /**
+     * Stamp of the disk tier's body format: stored bodies are the server's packet bytes,
+     * framed by the configured codec, so either changing invalidates persisted files
+     */
+    private String getDiskFormat() {
+        var fakeChunks = configService.get().performance().fakeChunks();
+        int protocol = PacketEvents.getAPI().getServerManager().getVersion().getProtocolVersion();
+        int codec = PacketCodecs.forName(fakeChunks.compressionCodec(), fakeChunks.compressionLevel()).id();
+        return "protocol=" + protocol + " codec=" + codec;
+    }
+
+    private long getBudgetBytes() {
+        MainConfig.PerformanceConfig.FakeChunksConfig fakeChunks = configService.get().performance().fakeChunks();
+        int megabytes = fakeChunks.maxCacheSizeMb() > 0 ? fakeChunks.maxCacheSizeMb() : DEFAULT_BUDGET_MB;
+        return megabytes * 1024L * 1024L;
+    }
+
+    /**
+     * The world's own ceiling, never above the global one
+     */
+    private long getWorldBudgetBytes(String worldName) {
+        long global = getBudgetBytes();
+        MainConfig.PerformanceConfig.WorldCacheConfig world = configService.get().performance().fakeChunks().world(worldName);
+        if (world == null || world.maxCacheSizeMb() <= 0) {
+            return global;
+        }
+        return Math.min(global, world.maxCacheSizeMb() * 1024L * 1024L);
+    }
+
+    /**
+     * Idle time before a world's entries expire: its own setting, else the profile
+     * default for volatile worlds, else the global one
+     */
+    private int getTtlSeconds(WorldCachePartition partition) {
+        var fakeChunks = configService.get().performance().fakeChunks();
+        MainConfig.PerformanceConfig.WorldCacheConfig world = fakeChunks.world(partition.worldName);
+        if (world != null && world.cacheTtlSeconds() > 0) {
+            return world.cacheTtlSeconds();
+        }
+        if (partition.profile == WorldCacheProfile.VOLATILE) {
+            return DEFAULT_VOLATILE_TTL_SECONDS;
+        }
+        return fakeChunks.cacheTtlSeconds() > 0 ? fakeChunks.cacheTtlSeconds() : DEFAULT_TTL_SECONDS;
+    }
+
+    /**
+     * Names of the worlds whose disk tier is kept across restarts
+     */
+    private Set<String> getPersistentWorldNames() {
+        Set<String> names = new HashSet<>();
+        var worlds = configService.get().performance().fakeChunks().worlds();
+        if (worlds != null) {
+            worlds.forEach((name, world) -> {
+                if (WorldCacheProfile.fromName(world.profile()).persistsToDisk()) {
+                    names.add(name);
+                }
+            });
+        }
+        return names;
+    }
+
+    private long getDiskBudgetBytes() {
+        int megabytes = configService.get().performance().fakeChunks().diskCacheSizeMb();
+        return (megabytes > 0 ? megabytes : DEFAULT_DISK_CACHE_MB) * 1024L * 1024L;
+    }
+
+    private static long packChunkKey(int x, int z) {
+        return ((long) z << 32) | ((long) x & 0xFFFFFFFFL);
+    }
+}
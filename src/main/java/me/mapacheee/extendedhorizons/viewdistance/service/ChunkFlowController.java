@@ -0,0 +1,286 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.google.inject.Inject;
+import com.thewinterframework.service.annotation.Service;
+import me.mapacheee.extendedhorizons.shared.service.ConfigService;
+import net.minecraft.network.protocol.game.ClientboundChunkBatchFinishedPacket;
+import net.minecraft.network.protocol.game.ClientboundChunkBatchStartPacket;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ *   Paces fake chunks to the rate the client says it can take
+ *   Fake chunks sent during a tick are wrapped in one chunk batch (start ... finished), like
+ *   vanilla's own; the client acknowledges each batch with the chunks per tick it wants.
+ *   Our acknowledgements are swallowed (ChunkBatchListener) so the server's own accounting
+ *   only ever sees its own batches
+ *   The per-player rate follows AIMD: +1 chunk/tick for every batch acknowledged on time,
+ *   halved once per round trip when acknowledgements come back slower than twice the best
+ *   round trip seen; never above what the client asked for nor max-chunks-per-tick
+ *   Like vanilla, one batch may be unacknowledged at first and ten after the first reply
+ *   Grants are also held to the server-wide EgressBudget
+ */
+@Service
+public class ChunkFlowController {
+
+    private static final float INITIAL_RATE = 9.0F;
+    private static final float MIN_RATE = 0.5F;
+    private static final float MIN_CLIENT_RATE = 0.01F;
+    private static final float MAX_CLIENT_RATE = 64.0F;
+    private static final float RATE_STEP = 1.0F;
+    private static final int MAX_UNACKNOWLEDGED = 10;
+    private static final long RTT_SLACK_NANOS = 50_000_000L;
+    private static final long STALL_NANOS = 10_000_000_000L;
+    private static final long SERVER_BATCH = Long.MIN_VALUE;
+
+    private final ConfigService configService;
+    private final PacketBatcher packetBatcher;
+    private final EgressBudget egressBudget;
+    private final Map<UUID, Flow> flows = new ConcurrentHashMap<>();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder cuts = new LongAdder();
+
+    @Inject
+    public ChunkFlowController(ConfigService configService, PacketBatcher packetBatcher, EgressBudget egressBudget) {
+        this.configService = configService;
+        this.packetBatcher = packetBatcher;
+        this.egressBudget = egressBudget;
+    }
+
+    /**
+     * Reserves up to the given number of chunk sends for this tick. Main thread only
+     * @return how many may be sent now
+     */
+    public int take(Player player, int wanted) {
+        if (wanted <= 0 || !isEnabled()) {
+            return egressBudget.take(player.getUniqueId(), wanted);
+        }
+        Flow flow = flow(player.getUniqueId());
+        synchronized (flow) {
+            if (flow.outstanding >= flow.maxUnacknowledged) {
+                if (System.nanoTime() - flow.lastProgressNanos < STALL_NANOS) {
+                    return 0;
+                }
+                // The client stopped answering; do not wait for it forever
+                flow.outstanding = 0;
+                flow.rate = Math.max(MIN_RATE, flow.rate / 2);
+                cuts.increment();
+            }
+            int granted = (int) Math.min(wanted, Math.floor(flow.quota));
+            if (granted <= 0) {
+                return 0;
+            }
+            granted = egressBudget.take(player.getUniqueId(), granted);
+            flow.quota -= granted;
+            return granted;
+        }
+    }
+
+    /**
+     * Opens the player's batch for this tick if needed and counts one chunk into it;
+     * call right before writing each fake chunk. Main thread only
+     * @param bytes the chunk's packet size, or 0 when unknown
+     */
+    public void sending(Player player, long bytes) {
+        egressBudget.sentChunk(bytes);
+        sending(player);
+    }
+
+    /**
+     * Like sending(player, bytes) for a chunk whose size is only known once it is written;
+     * the caller settles it with EgressBudget.sentChunk afterwards. Main thread only
+     */
+    public void sending(Player player) {
+        if (!isEnabled()) {
+            return;
+        }
+        Flow flow = flow(player.getUniqueId());
+        synchronized (flow) {
+            if (flow.open == 0) {
+                packetBatcher.send(player, ClientboundChunkBatchStartPacket.INSTANCE);
+            }
+            flow.open++;
+        }
+    }
+
+    /**
+     * Closes every batch opened this tick and refills the players' quotas; called at tick end,
+     * before the batched writes are flushed
+     */
+    public void endTick() {
+        for (Map.Entry<UUID, Flow> entry : flows.entrySet()) {
+            Player player = Bukkit.getPlayer(entry.getKey());
+            if (player == null) {
+                flows.remove(entry.getKey());
+                continue;
+            }
+            Flow flow = entry.getValue();
+            synchronized (flow) {
+                if (flow.open > 0) {
+                    flow.ownEndsExpected++;
+                    flow.outstanding++;
+                    packetBatcher.send(player, new ClientboundChunkBatchFinishedPacket(flow.open));
+                    batches.increment();
+                    flow.open = 0;
+                }
+                flow.quota = Math.min(flow.quota + flow.rate, Math.max(1.0F, flow.rate));
+            }
+        }
+    }
+
+    /**
+     * A batch finished packet, ours or the server's, is leaving on the wire. Netty thread
+     */
+    public void onBatchEnd(UUID playerId) {
+        if (!isEnabled()) {
+            return;
+        }
+        // Tracked from the first batch on, so the order of acknowledgements is never lost
+        Flow flow = flow(playerId);
+        synchronized (flow) {
+            if (flow.ownEndsExpected > 0) {
+                flow.ownEndsExpected--;
+                flow.wire.add(System.nanoTime());
+            } else {
+                flow.wire.add(SERVER_BATCH);
+            }
+        }
+    }
+
+    /**
+     * The client acknowledged the oldest batch it had not yet. Netty thread
+     * @return true when the batch was ours and the acknowledgement must not reach the server
+     */
+    public boolean onAck(UUID playerId, float desiredChunksPerTick) {
+        Flow flow = flows.get(playerId);
+        if (flow == null) {
+            return false;
+        }
+        synchronized (flow) {
+            flow.clientRate = Float.isNaN(desiredChunksPerTick)
+                    ? MIN_CLIENT_RATE
+                    : Math.max(MIN_CLIENT_RATE, Math.min(MAX_CLIENT_RATE, desiredChunksPerTick));
+            Long sentAt = flow.wire.poll();
+            if (sentAt == null || sentAt == SERVER_BATCH) {
+                flow.rate = Math.min(flow.rate, ceiling(flow));
+                return false;
+            }
+
+            if (flow.acknowledged(sentAt, System.nanoTime(), ceiling(flow))) {
+                cuts.increment();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Current rate for the player in chunks per tick, or -1 until their client
+     * has acknowledged one of our batches
+     */
+    public float getRate(UUID playerId) {
+        Flow flow = flows.get(playerId);
+        if (flow == null) {
+            return -1;
+        }
+        synchronized (flow) {
+            return flow.maxUnacknowledged == MAX_UNACKNOWLEDGED ? flow.rate : -1;
+        }
+    }
+
+    /**
+     * Whether the player's rate reflects current traffic: batches are in flight
+     * or one was acknowledged within the given time
+     */
+    public boolean isBusy(UUID playerId, long withinNanos) {
+        Flow flow = flows.get(playerId);
+        if (flow == null) {
+            return false;
+        }
+        synchronized (flow) {
+            return flow.outstanding > 0 || System.nanoTime() - flow.lastProgressNanos < withinNanos;
+        }
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getCuts() {
+        return cuts.sum();
+    }
+
+    public boolean isEnabled() {
+        return configService.get().performance().clientFlowControl();
+    }
+
+    public void clear(UUID playerId) {
+        flows.remove(playerId);
+    }
+
+    private Flow flow(UUID playerId) {
+        return flows.computeIfAbsent(playerId, id -> new Flow(maxChunksPerTick()));
+    }
+
+    private float ceiling(Flow flow) {
+        return Math.max(MIN_RATE, Math.min(flow.clientRate, maxChunksPerTick()));
+    }
+
+    private int maxChunksPerTick() {
+        return Math.max(1, configService.get().performance().maxChunksPerTick());
+    }
+
+    static final class Flow {
+        /** Chunks per tick the client last asked for */
+        float clientRate = INITIAL_RATE;
+        /** Chunks per tick we currently allow */
+        float rate;
+        float quota;
+        /** Chunks in the batch opened this tick, 0 when none is open */
+        int open;
+        int outstanding;
+        int maxUnacknowledged = 1;
+        int ownEndsExpected;
+        /** Batches on the wire in order: the time ours left, SERVER_BATCH for the server's */
+        final ArrayDeque<Long> wire = new ArrayDeque<>();
+        long minRttNanos = Long.MAX_VALUE;
+        long lastCutNanos = Long.MIN_VALUE;
+        long lastProgressNanos = System.nanoTime();
+
+        Flow(int maxChunksPerTick) {
+            this.rate = Math.min(INITIAL_RATE, maxChunksPerTick);
+            this.quota = rate;
+        }
+
+        /**
+         * Applies the acknowledgement of our batch that left at sentAt
+         * @return true when it cut the rate
+         */
+        boolean acknowledged(long sentAt, long now, float ceiling) {
+            long rtt = now - sentAt;
+            outstanding = Math.max(0, outstanding - 1);
+            maxUnacknowledged = MAX_UNACKNOWLEDGED;
+            lastProgressNanos = now;
+            minRttNanos = Math.min(minRttNanos, rtt);
+
+            boolean cut = false;
+            if (rtt > minRttNanos * 2 + RTT_SLACK_NANOS) {
+                // One cut per round trip: later batches of the same backlog were sent before it
+                if (sentAt > lastCutNanos) {
+                    rate = Math.max(MIN_RATE, rate / 2);
+                    lastCutNanos = now;
+                    cut = true;
+                }
+            } else {
+                rate += RATE_STEP;
+            }
+            rate = Math.min(rate, ceiling);
+            return cut;
+        }
+    }
+}
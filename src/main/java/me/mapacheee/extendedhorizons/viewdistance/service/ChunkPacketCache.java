@@ -1,109 +1,121 @@
 package me.mapacheee.extendedhorizons.viewdistance.service;
 
-import com.google.inject.Inject;
-import com.thewinterframework.service.annotation.Service;
-import com.thewinterframework.service.annotation.lifecycle.OnDisable;
 import me.mapacheee.extendedhorizons.shared.service.ConfigService;
-import org.bukkit.Bukkit;
+import me.mapacheee.extendedhorizons.viewdistance.cache.CachedChunk;
+import me.mapacheee.extendedhorizons.viewdistance.cache.FrameCompressor;
+import me.mapacheee.extendedhorizons.viewdistance.cache.MemoryBudget;
+import me.mapacheee.extendedhorizons.viewdistance.cache.OffHeapSlabStore;
+import me.mapacheee.extendedhorizons.viewdistance.cache.PacketCodec;
+import me.mapacheee.extendedhorizons.viewdistance.cache.PacketCodecs;
+import me.mapacheee.extendedhorizons.viewdistance.cache.TinyLfuCache;
 import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 /*
- *   LRU Cache for chunk packets (serialized data)
+ *   Window TinyLFU cache for chunk packets (serialized data)
  *   Stores raw packet bytes instead of full chunks
+ *   Capacity is weighted by payload bytes, eviction is O(1)
+ *   Acts as the L2 tier of ChunkCacheManager, which owns its budget and cleanup
+ *   Packets are stored in PacketCodecs framing with the configured codec
+ *   Payloads live off-heap in an OffHeapSlabStore when enabled, the heap keeps only handles;
+ *   packets too large for a slot or arriving while the slabs are full stay on the heap
+ *   One instance per world partition; all of them share the manager's slab store
  */
-@Service
 public class ChunkPacketCache {
 
-    private Logger logger;
-    private final ConfigService configService;
-
-    private final Map<Long, byte[]> packetCache = new ConcurrentHashMap<>();
-
-    private final Map<Long, Long> accessTimes = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(ChunkPacketCache.class);
+    private static final int AVERAGE_PACKET_BYTES = 30 * 1024;
+    private static final long INITIAL_MAX_BYTES = 64L * 1024L * 1024L;
 
-    private long cacheHits = 0;
-    private long cacheMisses = 0;
-    private long totalPacketsSaved = 0;
+    /**
+     * Slack on top of the cache budget for partially filled slabs
+     */
+    static final double SLAB_HEADROOM = 0.125;
 
-    @Inject
-    public ChunkPacketCache(ConfigService configService) {
-        this.configService = configService;
-        startCleanupTask();
+    /**
+     * A cached packet, either a heap array or a handle into the slab store,
+     * with the block change stamp it was captured at and the fingerprint of its body
+     */
+    private record StoredPacket(byte[] heapData, long handle, long sequence, long fingerprint) {
+        int weight() {
+            int payload = heapData != null ? heapData.length : OffHeapSlabStore.slotSize(handle);
+            return payload + TinyLfuCache.ENTRY_OVERHEAD_BYTES;
+        }
     }
 
-    @OnDisable
-    public void cleanup() {
-        packetCache.clear();
-        accessTimes.clear();
+    private final ConfigService configService;
+    private final TinyLfuCache<StoredPacket> packetCache;
+    private final OffHeapSlabStore slabStore;
+    private final LongAdder totalPacketsSaved = new LongAdder();
+    private final LongAdder heapFallbacks = new LongAdder();
+    private volatile TinyLfuCache.RemovalListener<byte[]> evictionListener;
+    private volatile PacketCodec codec = PacketCodecs.NONE;
+    private volatile String codecSetting = "";
+
+    public ChunkPacketCache(ConfigService configService, OffHeapSlabStore slabStore) {
+        this.configService = configService;
+        this.slabStore = slabStore;
+        this.packetCache = new TinyLfuCache<>(INITIAL_MAX_BYTES, INITIAL_MAX_BYTES / AVERAGE_PACKET_BYTES, StoredPacket::weight);
+        this.packetCache.setRemovalListener(this::onRemoval);
     }
 
     /**
      * Caches a chunk packet for later reuse
+     * @param sequence BlockChangeLog stamp the packet was captured at
+     * @return the packet in its stored form, or null if it was not cached
      */
-    public void cachePacket(int chunkX, int chunkZ, byte[] packetData) {
+    public byte[] cachePacket(int chunkX, int chunkZ, byte[] packetData, long sequence) {
         if (!configService.get().performance().fakeChunks().enabled()) {
-            return;
+            return null;
         }
 
         long key = toKey(chunkX, chunkZ);
 
         try {
-            byte[] dataToStore = packetData;
+            byte[] dataToStore = PacketCodecs.encode(currentCodec(), packetData);
 
-            if (configService.get().performance().fakeChunks().useCompression()) {
-                dataToStore = compress(packetData);
+            if (store(key, dataToStore, sequence, FrameCompressor.fingerprint(packetData))) {
+                totalPacketsSaved.increment();
+                return dataToStore;
             }
 
-            int maxCached = configService.get().performance().fakeChunks().maxCachedPackets();
-            if (packetCache.size() >= maxCached) {
-                evictOldest();
-            }
-
-            packetCache.put(key, dataToStore);
-            accessTimes.put(key, System.currentTimeMillis());
-            totalPacketsSaved++;
-
         } catch (Exception e) {
             logger.warn("[EH] Failed to cache packet for chunk {},{}: {}", chunkX, chunkZ, e.getMessage());
         }
+        return null;
     }
 
     /**
-     * Retrieves a cached packet
+     * Retrieves a cached packet along with the stamp it was captured at
      */
-    public byte[] getPacket(int chunkX, int chunkZ) {
+    public CachedChunk getChunk(int chunkX, int chunkZ) {
         if (!configService.get().performance().fakeChunks().enabled()) {
             return null;
         }
 
         long key = toKey(chunkX, chunkZ);
-        byte[] cachedData = packetCache.get(key);
+        StoredPacket stored = packetCache.get(key);
+        if (stored == null) {
+            return null;
+        }
 
+        byte[] cachedData = load(stored);
         if (cachedData == null) {
-            cacheMisses++;
+            // Freed by a concurrent eviction between lookup and read
             return null;
         }
 
-        accessTimes.put(key, System.currentTimeMillis());
-        cacheHits++;
-
         try {
-            if (configService.get().performance().fakeChunks().useCompression()) {
-                return decompress(cachedData);
-            }
-            return cachedData;
-
+            return CachedChunk.encoded(chunkX, chunkZ, PacketCodecs.decode(cachedData), stored.sequence(), stored.fingerprint());
         } catch (Exception e) {
             logger.warn("[EH] Failed to decompress packet for chunk {},{}: {}", chunkX, chunkZ, e.getMessage());
             packetCache.remove(key);
-            accessTimes.remove(key);
             return null;
         }
     }
@@ -112,102 +124,163 @@ public class ChunkPacketCache {
      * Checks if a chunk packet is cached
      */
     public boolean isCached(int chunkX, int chunkZ) {
-        return packetCache.containsKey(toKey(chunkX, chunkZ));
+        return packetCache.contains(toKey(chunkX, chunkZ));
+    }
+
+    /**
+     * Returns which of the given chunk keys have a cached packet, using region bitmaps
+     */
+    public Set<Long> presentKeys(Collection<Long> chunkKeys) {
+        return packetCache.presentKeys(chunkKeys);
     }
 
     /**
      * Removes a packet from cache
      */
     public void invalidate(int chunkX, int chunkZ) {
-        long key = toKey(chunkX, chunkZ);
-        packetCache.remove(key);
-        accessTimes.remove(key);
+        packetCache.remove(toKey(chunkX, chunkZ));
     }
 
     /**
-     * Clears old entries based on LRU
+     * Removes every packet of a 32x32 chunk region
      */
-    private void evictOldest() {
-        if (accessTimes.isEmpty()) return;
-
-        Long oldestKey = accessTimes.entrySet().stream()
-                .min(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(null);
+    public int invalidateRegion(int regionX, int regionZ) {
+        return packetCache.removeRegion(regionX, regionZ);
+    }
 
-        if (oldestKey != null) {
-            packetCache.remove(oldestKey);
-            accessTimes.remove(oldestKey);
+    /**
+     * Re-inserts a packet in its stored form (as handed to the eviction listener),
+     * used when promoting entries back from the disk tier; its capture stamp is lost there.
+     * Decodes once to fingerprint the body, so call it off the main thread.
+     */
+    public void restorePacket(int chunkX, int chunkZ, byte[] storedData) {
+        long fingerprint;
+        try {
+            fingerprint = FrameCompressor.fingerprint(PacketCodecs.decode(storedData));
+        } catch (Exception e) {
+            logger.warn("[EH] Failed to decompress packet for chunk {},{}: {}", chunkX, chunkZ, e.getMessage());
+            return;
         }
+        store(toKey(chunkX, chunkZ), storedData, CachedChunk.UNKNOWN_SEQUENCE, fingerprint);
+    }
+
+    /**
+     * Receives packets pushed out by the byte budget, in their stored form.
+     * Only evictions are reported, never explicit removals or expirations.
+     */
+    public void setEvictionListener(TinyLfuCache.RemovalListener<byte[]> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * Charges every stored packet to the budget of its world partition
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        packetCache.setMemoryBudget(memoryBudget);
     }
 
     /**
-     * Periodic cleanup task to remove very old entries
+     * Evicts the coldest packets until the tier weighs at most the given bytes
+     * @return bytes released
      */
-    private void startCleanupTask() {
-        int intervalSeconds = configService.get().performance().fakeChunks().cacheCleanupInterval();
+    public long trimTo(long bytes) {
+        return packetCache.trimTo(bytes);
+    }
 
-        Bukkit.getScheduler().runTaskTimerAsynchronously(
-            me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin.getPlugin(me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin.class),
-            this::performCleanup,
-            intervalSeconds * 20L,
-            intervalSeconds * 20L
-        );
+    public void setMaximumBytes(long maxBytes) {
+        if (packetCache.maximumWeight() != maxBytes) {
+            packetCache.setMaximumWeight(maxBytes);
+        }
     }
 
     /**
-     * Removes entries older than cleanup interval
+     * Removes entries not accessed within the given idle time
+     * @return number of entries removed
      */
-    private void performCleanup() {
-        int maxAgeSeconds = configService.get().performance().fakeChunks().cacheCleanupInterval();
-        long now = System.currentTimeMillis();
-        long maxAgeMillis = maxAgeSeconds * 1000L;
+    public int expire(long maxIdleMillis) {
+        return packetCache.expire(maxIdleMillis);
+    }
 
-        List<Long> toRemove = new ArrayList<>();
+    public void clear() {
+        packetCache.clear();
+    }
 
-        for (Map.Entry<Long, Long> entry : accessTimes.entrySet()) {
-            if (now - entry.getValue() > maxAgeMillis) {
-                toRemove.add(entry.getKey());
+    /**
+     * Places the payload off-heap when enabled and possible, otherwise on the heap
+     */
+    private boolean store(long key, byte[] data, long sequence, long fingerprint) {
+        if (configService.get().performance().fakeChunks().offHeapCache()) {
+            long handle = slabStore.allocate(data);
+            if (handle != OffHeapSlabStore.NO_HANDLE) {
+                if (packetCache.put(key, new StoredPacket(null, handle, sequence, fingerprint))) {
+                    return true;
+                }
+                slabStore.free(handle);
+                return false;
             }
+            heapFallbacks.increment();
         }
+        return packetCache.put(key, new StoredPacket(data, OffHeapSlabStore.NO_HANDLE, sequence, fingerprint));
+    }
 
-        for (long key : toRemove) {
-            packetCache.remove(key);
-            accessTimes.remove(key);
-        }
+    private byte[] load(StoredPacket stored) {
+        return stored.heapData() != null ? stored.heapData() : slabStore.read(stored.handle());
+    }
 
-        if (!toRemove.isEmpty()) {
-            logger.info("[EH] Cache cleanup: removed {} old packets", toRemove.size());
+    /**
+     * Frees slab memory for every entry leaving the cache and forwards evictions
+     */
+    private void onRemoval(long key, StoredPacket stored, TinyLfuCache.RemovalCause cause) {
+        TinyLfuCache.RemovalListener<byte[]> listener = evictionListener;
+        if (cause == TinyLfuCache.RemovalCause.EVICTED && listener != null) {
+            byte[] data = load(stored);
+            if (data != null) {
+                listener.onRemoval(key, data, cause);
+            }
+        }
+        if (stored.heapData() == null) {
+            slabStore.free(stored.handle());
         }
     }
 
     /**
-     * Compresses packet data using GZIP
+     * Direct memory to reserve for a packet budget of the given size
      */
-    private byte[] compress(byte[] data) throws Exception {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
-            gzip.write(data);
-        }
-        return baos.toByteArray();
+    static long slabLimit(long maxBytes) {
+        return maxBytes + (long) (maxBytes * SLAB_HEADROOM);
     }
 
     /**
-     * Decompresses GZIP packet data
+     * Resolves the configured codec, reusing the instance (and its per-thread
+     * Deflater/Inflater) until the setting changes on reload
      */
-    private byte[] decompress(byte[] compressed) throws Exception {
-        ByteArrayInputStream bais = new ByteArrayInputStream(compressed);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    private PacketCodec currentCodec() {
+        var fakeChunks = configService.get().performance().fakeChunks();
+        String setting = fakeChunks.compressionCodec() + ":" + fakeChunks.compressionLevel();
+        if (!setting.equals(codecSetting)) {
+            codec = PacketCodecs.forName(fakeChunks.compressionCodec(), fakeChunks.compressionLevel());
+            codecSetting = setting;
+        }
+        return codec;
+    }
 
-        try (GZIPInputStream gzip = new GZIPInputStream(bais)) {
-            byte[] buffer = new byte[1024];
-            int len;
-            while ((len = gzip.read(buffer)) > 0) {
-                baos.write(buffer, 0, len);
+    /**
+     * Returns up to limit cached packets decompressed, without touching statistics
+     */
+    public List<byte[]> samplePackets(int limit) {
+        List<byte[]> samples = new ArrayList<>();
+        for (StoredPacket stored : packetCache.sample(limit)) {
+            byte[] data = load(stored);
+            if (data == null) {
+                continue;
+            }
+            try {
+                samples.add(PacketCodecs.decode(data));
+            } catch (RuntimeException ignored) {
+                // Skip entries that fail to decode, getPacket drops them on access
             }
         }
-
-        return baos.toByteArray();
+        return samples;
     }
 
     /**
@@ -222,30 +295,40 @@ public class ChunkPacketCache {
     }
 
     public long getCacheHits() {
-        return cacheHits;
+        return packetCache.hitCount();
     }
 
     public long getCacheMisses() {
-        return cacheMisses;
+        return packetCache.missCount();
+    }
+
+    public long getEvictions() {
+        return packetCache.evictionCount();
     }
 
     public double getHitRate() {
-        long total = cacheHits + cacheMisses;
-        return total > 0 ? (cacheHits * 100.0 / total) : 0.0;
+        return packetCache.hitRate();
     }
 
     public long getTotalPacketsSaved() {
-        return totalPacketsSaved;
+        return totalPacketsSaved.sum();
     }
 
     /**
-     * Estimates cache memory usage in MB
+     * Cache memory usage in MB (heap and off-heap), summed from measured entry weights
      */
     public double getEstimatedMemoryUsageMB() {
-        long totalBytes = 0;
-        for (byte[] data : packetCache.values()) {
-            totalBytes += data.length;
-        }
-        return totalBytes / (1024.0 * 1024.0);
+        return packetCache.weightedSize() / (1024.0 * 1024.0);
+    }
+
+    public long getWeightedSizeBytes() {
+        return packetCache.weightedSize();
+    }
+
+    /**
+     * Packets kept on the heap because off-heap storage was enabled but unavailable
+     */
+    public long getHeapFallbacks() {
+        return heapFallbacks.sum();
     }
 }
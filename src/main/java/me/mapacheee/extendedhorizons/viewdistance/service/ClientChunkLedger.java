@@ -0,0 +1,194 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.google.inject.Inject;
+import com.thewinterframework.service.annotation.Service;
+import me.mapacheee.extendedhorizons.viewdistance.entity.ViewSnapshot;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+
+/*
+ *   The chunks each client holds, real or fake, with the BlockChangeLog stamp of the
+ *   content it was sent; a refresh then only has to send what changed since
+ *   After a full send the FrameCompressor fingerprint and length of the body are kept too,
+ *   so a resend of the very same bytes can be recognised; any partial update forgets them
+ *   Also the single authority on whether a client keeps a chunk: the ring is the
+ *   circle the player's chunks are planned by, read from their ViewSnapshot, and a
+ *   chunk stays until it is UNLOAD_HYSTERESIS chunks past it, so nothing thrashes at the edge
+ *   Server unloads inside that distance are cancelled; chunks beyond it the server no
+ *   longer tracks are released and unloaded explicitly
+ *   Entries are dropped whenever the client discards the chunk: an unload that reached
+ *   it, a respawn or world change
+ */
+@Service
+public class ClientChunkLedger {
+
+    /**
+     * Chunks beyond the ring radius a chunk may drift before it is unloaded
+     */
+    public static final int UNLOAD_HYSTERESIS = 2;
+
+    /**
+     * One held chunk; length is -1 while the body the client holds is not known
+     */
+    private record Held(long stamp, long fingerprint, int length) {
+        boolean hasBody(long fingerprint, int length) {
+            return this.length >= 0 && this.length == length && this.fingerprint == fingerprint;
+        }
+    }
+
+    private static final class PlayerLedger {
+        final UUID worldId;
+        final Map<Long, Held> chunks = new ConcurrentHashMap<>();
+        /**
+         * Snapshot version of the last release scan; the ring has not moved while it matches
+         */
+        volatile long releasedVersion = -1L;
+
+        PlayerLedger(UUID worldId) {
+            this.worldId = worldId;
+        }
+    }
+
+    private final ViewSnapshotTracker snapshots;
+    private final Map<UUID, PlayerLedger> ledgers = new ConcurrentHashMap<>();
+
+    @Inject
+    public ClientChunkLedger(ViewSnapshotTracker snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Records that the client now holds the chunk as of the given stamp, with a body
+     * not known byte for byte, e.g. after section or block updates
+     */
+    public void record(UUID playerId, UUID worldId, long key, long stamp) {
+        ledger(playerId, worldId).chunks.put(key, new Held(stamp, 0L, -1));
+    }
+
+    /**
+     * Records a full send of the chunk as of the given stamp, along with the body it carried
+     */
+    public void record(UUID playerId, UUID worldId, long key, long stamp, long fingerprint, int length) {
+        ledger(playerId, worldId).chunks.put(key, new Held(stamp, fingerprint, length));
+    }
+
+    /**
+     * Adds the body of a full send recorded without one, keeping its stamp.
+     * Nothing happens if the chunk is not recorded for that world.
+     */
+    public void attachBody(UUID playerId, UUID worldId, long key, long fingerprint, int length) {
+        PlayerLedger ledger = ledgers.get(playerId);
+        if (ledger != null && ledger.worldId.equals(worldId)) {
+            ledger.chunks.computeIfPresent(key, (k, held) -> new Held(held.stamp(), fingerprint, length));
+        }
+    }
+
+    /**
+     * Whether the client holds exactly this body of the chunk, as last sent in full
+     */
+    public boolean holdsBody(UUID playerId, UUID worldId, long key, long fingerprint, int length) {
+        PlayerLedger ledger = ledgers.get(playerId);
+        if (ledger == null || !ledger.worldId.equals(worldId)) {
+            return false;
+        }
+        Held held = ledger.chunks.get(key);
+        return held != null && held.hasBody(fingerprint, length);
+    }
+
+    /**
+     * Stamp of the copy the client holds, or -1 if it holds none we know of or its age is unknown
+     */
+    public long stampOf(UUID playerId, World world, long key) {
+        PlayerLedger ledger = ledgers.get(playerId);
+        if (ledger == null || !ledger.worldId.equals(world.getUID())) {
+            return -1L;
+        }
+        Held held = ledger.chunks.get(key);
+        return held != null ? held.stamp() : -1L;
+    }
+
+    public boolean holds(UUID playerId, long key) {
+        PlayerLedger ledger = ledgers.get(playerId);
+        return ledger != null && ledger.chunks.containsKey(key);
+    }
+
+    public void forget(UUID playerId, long key) {
+        PlayerLedger ledger = ledgers.get(playerId);
+        if (ledger != null) {
+            ledger.chunks.remove(key);
+        }
+    }
+
+    /**
+     * Decides an UNLOAD_CHUNK the server is sending
+     * @return true to cancel it; otherwise the chunk is forgotten
+     */
+    public boolean onServerUnload(UUID playerId, int chunkX, int chunkZ) {
+        PlayerLedger ledger = ledgers.get(playerId);
+        if (ledger == null) {
+            return false;
+        }
+        if (keeps(ledger, snapshots.get(playerId), chunkX, chunkZ)) {
+            return true;
+        }
+        ledger.chunks.remove(packChunkKey(chunkX, chunkZ));
+        return false;
+    }
+
+    /**
+     * Removes and returns the held chunks past the ring and its hysteresis.
+     * Scans only when the ring moved since the last call; chunks held past a ring that stood
+     * still are the server's, and come back through onServerUnload.
+     * @param serverTracked chunks the server still tracks for the player; left to the server to unload
+     */
+    public List<Long> releaseOutsideRing(UUID playerId, LongPredicate serverTracked) {
+        PlayerLedger ledger = ledgers.get(playerId);
+        ViewSnapshot ring = snapshots.get(playerId);
+        if (ledger == null || ring == null || !ring.worldId().equals(ledger.worldId)
+                || ring.version() == ledger.releasedVersion) {
+            return List.of();
+        }
+        ledger.releasedVersion = ring.version();
+
+        List<Long> released = new ArrayList<>();
+        for (long key : ledger.chunks.keySet()) {
+            int chunkX = (int) (key & 0xFFFFFFFFL);
+            int chunkZ = (int) (key >> 32);
+            if (!keeps(ledger, ring, chunkX, chunkZ) && !serverTracked.test(key)) {
+                ledger.chunks.remove(key);
+                released.add(key);
+            }
+        }
+        return released;
+    }
+
+    public void clear(UUID playerId) {
+        ledgers.remove(playerId);
+    }
+
+    public void clearWorld(UUID worldId) {
+        ledgers.values().removeIf(ledger -> ledger.worldId.equals(worldId));
+    }
+
+    private PlayerLedger ledger(UUID playerId, UUID worldId) {
+        return ledgers.compute(playerId, (k, current) ->
+                current != null && current.worldId.equals(worldId) ? current : new PlayerLedger(worldId));
+    }
+
+    /**
+     * A snapshot of another world, say mid-teleport, keeps nothing
+     */
+    private static boolean keeps(PlayerLedger ledger, ViewSnapshot ring, int chunkX, int chunkZ) {
+        return ring != null && ring.worldId().equals(ledger.worldId) && ring.covers(chunkX, chunkZ, UNLOAD_HYSTERESIS);
+    }
+
+    private static long packChunkKey(int x, int z) {
+        return ((long) z << 32) | (x & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,174 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.google.inject.Inject;
+import com.thewinterframework.service.annotation.Service;
+import com.thewinterframework.service.annotation.lifecycle.OnEnable;
+import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
+import me.mapacheee.extendedhorizons.shared.service.ConfigService;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/*
+ *   Caps each player's view distance to what their connection can fill
+ *   Every two seconds it reads the player's ping and the chunks per second their client
+ *   currently absorbs (the ChunkFlowController rate), and works out the radius whose fake
+ *   chunks would arrive within adaptive-fill-seconds; high ping shortens that time
+ *   A client keeping up with max-chunks-per-tick at a normal ping is not capped at all
+ *   The cap drops quickly (half the gap per sample) and climbs back slowly (STEP_UP per
+ *   sample), never below the server's own send distance. Without recent chunk traffic the
+ *   rate is stale and taken as max-chunks-per-tick, so a capped player probes upward again
+ *   The player's chosen distance is left alone; listeners are told when a cap moves so
+ *   the view can be updated
+ */
+@Service
+public class ConnectionQualityMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionQualityMonitor.class);
+    private static final boolean DEBUG = false;
+
+    private static final long SAMPLE_INTERVAL_TICKS = 40L;
+    private static final int TICKS_PER_SECOND = 20;
+    private static final int PING_REFERENCE_MS = 150;
+    private static final float UNCONSTRAINED_SHARE = 0.9F;
+    private static final int STEP_UP = 2;
+    private static final int STEP_DOWN = 4;
+    private static final int DEFAULT_FILL_SECONDS = 30;
+    private static final long SAMPLE_INTERVAL_NANOS = SAMPLE_INTERVAL_TICKS * 50_000_000L;
+
+    private final ConfigService configService;
+    private final ChunkFlowController flowController;
+    private final FakeChunkService fakeChunkService;
+    private final Plugin plugin = JavaPlugin.getPlugin(ExtendedHorizonsPlugin.class);
+    private final Map<UUID, Integer> caps = new ConcurrentHashMap<>();
+    private final List<Consumer<Player>> listeners = new CopyOnWriteArrayList<>();
+
+    @Inject
+    public ConnectionQualityMonitor(ConfigService configService, ChunkFlowController flowController,
+                                    FakeChunkService fakeChunkService) {
+        this.configService = configService;
+        this.flowController = flowController;
+        this.fakeChunkService = fakeChunkService;
+    }
+
+    @OnEnable
+    public void start() {
+        Bukkit.getScheduler().runTaskTimer(plugin, this::sample, SAMPLE_INTERVAL_TICKS, SAMPLE_INTERVAL_TICKS);
+    }
+
+    /**
+     * Called with the player whenever their cap changes
+     */
+    public void addListener(Consumer<Player> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * The distance the player gets out of the one they chose
+     */
+    public int cap(Player player, int distance) {
+        Integer cap = caps.get(player.getUniqueId());
+        return cap != null ? Math.min(distance, cap) : distance;
+    }
+
+    /**
+     * Current cap, or -1 when the player's connection does not limit them
+     */
+    public int getCap(UUID playerId) {
+        return caps.getOrDefault(playerId, -1);
+    }
+
+    public boolean isEnabled() {
+        return configService.get().viewDistance().adaptive();
+    }
+
+    public void clear(UUID playerId) {
+        caps.remove(playerId);
+    }
+
+    private void sample() {
+        if (!isEnabled()) {
+            if (!caps.isEmpty()) {
+                List<UUID> capped = List.copyOf(caps.keySet());
+                caps.clear();
+                capped.forEach(this::notifyChanged);
+            }
+            return;
+        }
+
+        int maxDistance = configService.get().viewDistance().maxDistance();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            UUID playerId = player.getUniqueId();
+            int current = caps.getOrDefault(playerId, maxDistance);
+            int target = targetRadius(player, maxDistance);
+
+            int next;
+            if (target < current) {
+                next = Math.max(target, current - Math.max(STEP_DOWN, (current - target) / 2));
+            } else {
+                next = Math.min(target, current + STEP_UP);
+            }
+            if (next == current) {
+                continue;
+            }
+
+            if (next >= maxDistance) {
+                caps.remove(playerId);
+            } else {
+                caps.put(playerId, next);
+            }
+            if (DEBUG) {
+                logger.info("[EH] Connection cap for {} moved {} -> {} (ping {} ms)", player.getName(), current, next, player.getPing());
+            }
+            notifyChanged(playerId);
+        }
+    }
+
+    /**
+     * Radius whose fake ring the connection fills within the fill time, given the chunks per
+     * second it absorbs now: pi * (r^2 - s^2) = chunks per second * seconds
+     */
+    private int targetRadius(Player player, int maxDistance) {
+        int maxChunksPerTick = Math.max(1, configService.get().performance().maxChunksPerTick());
+        float rate = flowController.getRate(player.getUniqueId());
+        if (rate < 0 || !flowController.isBusy(player.getUniqueId(), SAMPLE_INTERVAL_NANOS)) {
+            rate = maxChunksPerTick;
+        }
+        int ping = player.getPing();
+        if (rate >= maxChunksPerTick * UNCONSTRAINED_SHARE && ping <= PING_REFERENCE_MS) {
+            return maxDistance;
+        }
+
+        int fillSeconds = configService.get().viewDistance().adaptiveFillSeconds();
+        double seconds = fillSeconds > 0 ? fillSeconds : DEFAULT_FILL_SECONDS;
+        if (ping > PING_REFERENCE_MS) {
+            seconds = seconds * PING_REFERENCE_MS / ping;
+        }
+
+        int floor = Math.max(configService.get().viewDistance().minDistance(), fakeChunkService.getSendViewDistance(player));
+        double chunks = rate * TICKS_PER_SECOND * seconds;
+        int radius = (int) Math.sqrt(chunks / Math.PI + (double) floor * floor);
+        return Math.max(floor, Math.min(maxDistance, radius));
+    }
+
+    private void notifyChanged(UUID playerId) {
+        Player player = Bukkit.getPlayer(playerId);
+        if (player == null) {
+            caps.remove(playerId);
+            return;
+        }
+        for (Consumer<Player> listener : listeners) {
+            listener.accept(player);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.google.inject.Inject;
+import com.thewinterframework.service.annotation.Service;
+import me.mapacheee.extendedhorizons.shared.service.ConfigService;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/*
+ *   Server-wide bytes per second budget for fake chunk traffic, as a token bucket
+ *   The bucket refills every tick and holds at most one second of budget, but a tick hands out
+ *   at most one tick's worth, so an idle spell never turns into a one tick burst. Chunk sends reserve
+ *   the average fake chunk size when they are granted and settle the difference once their
+ *   real size is known, so chunks still loading count against the budget too
+ *   Each tick the tokens are split evenly between the players that asked for chunks the tick
+ *   before; whatever a player leaves unused stays in the bucket for the next tick
+ *   Real chunk traffic comes first: its measured rate is taken off the budget, down to
+ *   MIN_SHARE of it, so horizon traffic backs off when players load real chunks
+ *   Sizes are packet bytes before network compression. Main thread, except recordRealChunk
+ */
+@Service
+public class EgressBudget {
+
+    private static final int TICKS_PER_SECOND = 20;
+    private static final double MIN_SHARE = 0.1;
+    private static final double RATE_SMOOTHING = 0.1;
+    private static final long INITIAL_CHUNK_BYTES = 16 * 1024;
+
+    private final LongSupplier configuredLimit;
+    private final Map<UUID, Long> usedThisTick = new HashMap<>();
+    private final LongAdder realBytes = new LongAdder();
+    private long tokens;
+    private long tickTokens;
+    private int demanders = 1;
+    private long averageChunkBytes = INITIAL_CHUNK_BYTES;
+    private long horizonBytesThisTick;
+    private double horizonRate;
+    private double realRate;
+
+    @Inject
+    public EgressBudget(ConfigService configService) {
+        this(() -> Math.max(0, configService.get().performance().egressBudgetKbPerSecond()) * 1024L);
+    }
+
+    /**
+     * @param configuredLimit budget in bytes per second, 0 when unlimited
+     */
+    EgressBudget(LongSupplier configuredLimit) {
+        this.configuredLimit = configuredLimit;
+    }
+
+    /**
+     * Reserves room for up to the given number of chunks for the player this tick
+     * @return how many chunks fit, all of them when no budget is configured
+     */
+    public int take(UUID playerId, int wanted) {
+        long limit = getLimit();
+        if (limit <= 0 || wanted <= 0) {
+            return wanted;
+        }
+        long used = usedThisTick.getOrDefault(playerId, 0L);
+        long share = Math.max(tickTokens / demanders, averageChunkBytes);
+        long room = Math.min(tokens, share - used);
+        int granted = (int) Math.min(wanted, Math.max(0, room / averageChunkBytes));
+        // Asked but got nothing: still counts for the split of the next tick
+        usedThisTick.put(playerId, used + granted * averageChunkBytes);
+        tokens -= granted * averageChunkBytes;
+        return granted;
+    }
+
+    /**
+     * A reserved chunk went out; settles its real size against the reservation
+     * @param bytes packet size, or 0 when unknown
+     */
+    public void sentChunk(long bytes) {
+        long reserved = averageChunkBytes;
+        if (bytes <= 0) {
+            bytes = reserved;
+        } else {
+            averageChunkBytes = Math.max(1, reserved + (bytes - reserved) / 16);
+        }
+        horizonBytesThisTick += bytes;
+        if (getLimit() > 0) {
+            tokens -= bytes - reserved;
+        }
+    }
+
+    /**
+     * Fake chunk traffic sent without a reservation, such as section updates
+     */
+    public void charge(long bytes) {
+        horizonBytesThisTick += bytes;
+        if (getLimit() > 0) {
+            tokens -= bytes;
+        }
+    }
+
+    /**
+     * A real chunk packet from the server; any thread
+     */
+    public void recordRealChunk(int bytes) {
+        realBytes.add(bytes);
+    }
+
+    /**
+     * Updates the measured rates and refills the bucket; called once per tick
+     */
+    public void endTick() {
+        horizonRate += (horizonBytesThisTick * TICKS_PER_SECOND - horizonRate) * RATE_SMOOTHING;
+        realRate += (realBytes.sumThenReset() * TICKS_PER_SECOND - realRate) * RATE_SMOOTHING;
+        horizonBytesThisTick = 0;
+
+        long limit = getEffectiveLimit();
+        if (limit <= 0) {
+            tokens = 0;
+            tickTokens = 0;
+        } else {
+            tokens = Math.min(tokens + limit / TICKS_PER_SECOND, limit);
+            // A deficit carried from overdrawn ticks still shrinks the allowance
+            tickTokens = Math.max(0, Math.min(tokens, limit / TICKS_PER_SECOND));
+        }
+        demanders = Math.max(1, usedThisTick.size());
+        usedThisTick.clear();
+    }
+
+    /**
+     * Configured budget in bytes per second, 0 when unlimited
+     */
+    public long getLimit() {
+        return configuredLimit.getAsLong();
+    }
+
+    /**
+     * Budget left for fake chunks after real chunk traffic, in bytes per second
+     */
+    public long getEffectiveLimit() {
+        long limit = getLimit();
+        if (limit <= 0) {
+            return 0;
+        }
+        return Math.max((long) (limit * MIN_SHARE), limit - (long) realRate);
+    }
+
+    /**
+     * Fake chunk traffic over the last second or so, in bytes per second
+     */
+    public long getHorizonRate() {
+        return (long) horizonRate;
+    }
+
+    /**
+     * Real chunk traffic over the last second or so, in bytes per second
+     */
+    public long getRealRate() {
+        return (long) realRate;
+    }
+}
@@ -1,13 +1,15 @@
 package me.mapacheee.extendedhorizons.viewdistance.service;
 
-import com.github.retrooper.packetevents.PacketEvents;
 import com.github.retrooper.packetevents.protocol.world.chunk.Column;
-import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerChunkData;
 import com.google.inject.Inject;
 import com.thewinterframework.service.annotation.Service;
 import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
-import me.mapacheee.extendedhorizons.integration.packetevents.PacketChunkCacheService;
+import me.mapacheee.extendedhorizons.integration.packetevents.RawChunkDataWrapper;
+import me.mapacheee.extendedhorizons.integration.packetevents.SizedChunkDataWrapper;
 import me.mapacheee.extendedhorizons.shared.service.ConfigService;
+import me.mapacheee.extendedhorizons.viewdistance.cache.CachedChunk;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.bukkit.Bukkit;
@@ -18,11 +20,14 @@ import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.core.SectionPos;
+import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
 import net.minecraft.server.level.ChunkHolder;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.chunk.EmptyLevelChunk;
 import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
 import net.minecraft.world.level.chunk.status.ChunkStatus;
 
 import java.util.*;
@@ -37,19 +42,34 @@ import java.util.concurrent.Executors;
 /*
  *   Manages fake chunks (chunks beyond server view-distance)
  *   Optimized loading strategy:
+ *   0. Tiered packet cache (ChunkCacheManager) - memory tiers inline, disk tier here
  *   1. Memory cache (fastest) - chunks already loaded in server memory
  *   2. Disk NBT (fast) - loads existing chunks from disk without generation
  *   3. Generation (slowest) - generates new chunks only as last resort
+ *   A chunk the client still holds is refreshed with only the sections changed since
+ *   it was sent (ClientChunkLedger + BlockChangeLog), or not at all if nothing changed
  */
 @Service
 public class FakeChunkService {
 
     private static final Logger logger = LoggerFactory.getLogger(FakeChunkService.class);
     private final ConfigService configService;
-    private final PacketChunkCacheService columnCache;
+    private final ChunkCacheManager cacheManager;
     private final Plugin plugin = JavaPlugin.getPlugin(ExtendedHorizonsPlugin.class);
-    private final Map<UUID, Set<Long>> playerFakeChunks = new ConcurrentHashMap<>();
-    private final Set<Long> generatingChunks = ConcurrentHashMap.newKeySet();
+    private final FakeChunkTracker fakeChunkTracker;
+    private final ClientChunkLedger clientChunkLedger;
+    private final BlockChangeLog blockChangeLog;
+    private final SelfTrafficTracker selfTraffic;
+    private final PrecompressedFrameService frameService;
+    private final PacketBatcher packetBatcher;
+    private final ChunkFlowController flowController;
+    private final EgressBudget egressBudget;
+
+    /**
+     * Chunks currently being loaded, per world, so the same coordinates in
+     * different worlds never block each other
+     */
+    private final Map<UUID, Set<Long>> generatingChunks = new ConcurrentHashMap<>();
     
     /**
      * Queue of chunks pending to be loaded per player
@@ -62,6 +82,14 @@ public class FakeChunkService {
      * Used for throttling
      */
     private final Map<UUID, Integer> playerChunksProcessedThisTick = new ConcurrentHashMap<>();
+
+    /**
+     * Cached chunks the client's rate did not allow yet, closest first,
+     * sent ahead of the load queue on the following ticks
+     */
+    private final Map<UUID, CachedBacklog> playerCachedBacklog = new ConcurrentHashMap<>();
+
+    private record CachedBacklog(UUID worldId, Queue<Long> keys) {}
     
     /**
      * Tracks last chunk position per player to detect teleports
@@ -76,20 +104,27 @@ public class FakeChunkService {
     private static final int QUEUE_CLEAR_FAR_DISTANCE = 15; // chunks
     private static final int MAX_SCHEDULED_PROCESSING_DELAY = 10; // ticks
 
+    // Rough wire sizes used to pick between a section delta and a full chunk
+    private static final int DELTA_SECTION_HEADER_BYTES = 12;
+    private static final int DELTA_ENTRY_BYTES = 4;
+    private static final int LIGHT_BYTES_PER_SECTION = 2048;
+
     @Inject
-    public FakeChunkService(ConfigService configService, PacketChunkCacheService columnCache) {
+    public FakeChunkService(ConfigService configService, ChunkCacheManager cacheManager,
+                            FakeChunkTracker fakeChunkTracker, ClientChunkLedger clientChunkLedger,
+                            BlockChangeLog blockChangeLog, SelfTrafficTracker selfTraffic,
+                            PrecompressedFrameService frameService, PacketBatcher packetBatcher,
+                            ChunkFlowController flowController, EgressBudget egressBudget) {
         this.configService = configService;
-        this.columnCache = columnCache;
-        
-        int maxCacheSize = configService.get().performance().fakeChunks().maxMemoryCacheSize();
-        this.chunkMemoryCache = Collections.synchronizedMap(
-                new LinkedHashMap<Long, LevelChunk>(16, 0.75f, true) {
-                    @Override
-                    protected boolean removeEldestEntry(Map.Entry<Long, LevelChunk> eldest) {
-                        return size() > maxCacheSize;
-                    }
-                }
-        );
+        this.cacheManager = cacheManager;
+        this.fakeChunkTracker = fakeChunkTracker;
+        this.clientChunkLedger = clientChunkLedger;
+        this.blockChangeLog = blockChangeLog;
+        this.selfTraffic = selfTraffic;
+        this.frameService = frameService;
+        this.packetBatcher = packetBatcher;
+        this.flowController = flowController;
+        this.egressBudget = egressBudget;
         
         int configuredThreads = configService.get().performance().chunkProcessorThreads();
         int threadCount = configuredThreads > 0 
@@ -115,6 +150,15 @@ public class FakeChunkService {
     private void startProgressiveLoadingTask() {
         Bukkit.getScheduler().runTaskTimer(plugin, () -> {
             playerChunksProcessedThisTick.clear();
+
+            for (Map.Entry<UUID, CachedBacklog> entry : new ArrayList<>(playerCachedBacklog.entrySet())) {
+                Player player = Bukkit.getPlayer(entry.getKey());
+                if (player == null || !player.isOnline() || !player.getWorld().getUID().equals(entry.getValue().worldId())) {
+                    playerCachedBacklog.remove(entry.getKey());
+                    continue;
+                }
+                drainCachedBacklog(player, entry.getValue());
+            }
             
             List<Map.Entry<UUID, Queue<Long>>> entries = new ArrayList<>(playerChunkQueues.entrySet());
             
@@ -153,24 +197,33 @@ public class FakeChunkService {
             return;
         }
         
+        // Heap pressure: keep the queue, but load nothing new until memory recovers
+        if (cacheManager.isAdmissionsPaused()) {
+            return;
+        }
+
         UUID uuid = player.getUniqueId();
+        Set<Long> inFlight = inFlight(player.getWorld());
         int maxChunksPerTick = configService.get().performance().maxChunksPerTick();
         int processed = playerChunksProcessedThisTick.getOrDefault(uuid, 0);
         int remaining = maxChunksPerTick - processed;
         
         if (remaining <= 0) { return; }
+
+        // Reserved now, counted when the loaded chunks go out a few ticks later
+        remaining = flowController.take(player, Math.min(remaining, queue.size()));
+        if (remaining <= 0) { return; }
         
         List<Long> batch = new ArrayList<>();
         while (!queue.isEmpty() && batch.size() < remaining) {
             Long key = queue.poll();
-            if (key != null && !generatingChunks.contains(key)) {
+            if (key != null && !inFlight.contains(key)) {
                 batch.add(key);
             }
         }
         
         if (!batch.isEmpty()) {
-            Set<Long> sentTracker = playerFakeChunks.computeIfAbsent(uuid, k -> ConcurrentHashMap.newKeySet());
-            processChunkBatch(player, batch, sentTracker);
+            processChunkBatch(player, batch);
             
             playerChunksProcessedThisTick.put(uuid, processed + batch.size());
             
@@ -183,22 +236,24 @@ public class FakeChunkService {
     }
     
     /**
-     * Processes a batch of chunks using a three-tiered loading strategy:
+     * Processes a batch of chunks using a tiered loading strategy:
+     * 0. Disk tier of the packet cache - previously sent packets spilled to disk
      * 1. Memory cache (fastest) - checks servers internal chunk cache
      * 2. Disk NBT (fast) - loads chunk data directly from disk
      * 3. Generation (slowest) - generates new chunk if not found
      * 
      * @param player The player to send chunks to
      * @param batch The list of chunk keys to process
-     * @param sentTracker Set tracking which chunks have already been sent to this player
      */
-    private void processChunkBatch(Player player, List<Long> batch, Set<Long> sentTracker) {
+    private void processChunkBatch(Player player, List<Long> batch) {
         World world = player.getWorld();
+        UUID worldId = world.getUID();
+        Set<Long> inFlight = inFlight(world);
         
         for (long key : batch) {
             if (!player.isOnline()) break;
             
-            generatingChunks.add(key);
+            inFlight.add(key);
             
             int chunkX = (int) (key & 0xFFFFFFFFL);
             int chunkZ = (int) (key >> 32);
@@ -206,13 +261,25 @@ public class FakeChunkService {
             // Process asynchronously with optimized loading strategy
             chunkProcessor.execute(() -> {
                 try {
+                    // Strategy 0: Packet spilled to the disk tier of our cache
+                    if (cacheManager.isOnDisk(worldId, chunkX, chunkZ)) {
+                        CachedChunk cached = cacheManager.loadFromDisk(worldId, chunkX, chunkZ);
+                        if (cached != null) {
+                            if (DEBUG) {
+                                logger.info("[EH] Loaded chunk {},{} from disk cache tier", chunkX, chunkZ);
+                            }
+                            sendCachedChunkPacket(player, world, cached, key);
+                            return;
+                        }
+                    }
+
                     // Strategy 1: Try to get chunk from servers memory cache
                     LevelChunk memoryChunk = getChunkFromMemoryCache(world, chunkX, chunkZ);
                     if (memoryChunk != null) {
                         if (DEBUG) {
                             logger.info("[EH] Loaded chunk {},{} from memory cache", chunkX, chunkZ);
                         }
-                        sendChunkPacket(player, memoryChunk, key, sentTracker);
+                        sendChunkPacket(player, world, memoryChunk, key);
                         return;
                     }
                     
@@ -225,7 +292,7 @@ public class FakeChunkService {
                             if (DEBUG) {
                                 logger.info("[EH] Loaded chunk {},{} from disk NBT", chunkX, chunkZ);
                             }
-                            loadChunkFromNBTAndSend(player, world, chunkX, chunkZ, chunkNBT, key, sentTracker);
+                            loadChunkFromNBTAndSend(player, world, chunkX, chunkZ, chunkNBT, key);
                             return;
                         }
                     }
@@ -234,10 +301,10 @@ public class FakeChunkService {
                     if (DEBUG) {
                         logger.info("[EH] Generating chunk {},{} (not in cache or disk)", chunkX, chunkZ);
                     }
-                    generateChunkAndSend(player, world, chunkX, chunkZ, key, sentTracker);
+                    generateChunkAndSend(player, world, chunkX, chunkZ, key);
                     
                 } catch (Exception e) {
-                    generatingChunks.remove(key);
+                    inFlight.remove(key);
                     logger.warn("[EH] Error loading chunk {},{}: {}", chunkX, chunkZ, e.getMessage());
                     if (DEBUG) {
                         e.printStackTrace();
@@ -247,6 +314,20 @@ public class FakeChunkService {
         }
     }
 
+    /**
+     * Fake chunks waiting to load or to be sent, across all players
+     */
+    public int getQueuedChunks() {
+        int queued = 0;
+        for (Queue<Long> queue : playerChunkQueues.values()) {
+            queued += queue.size();
+        }
+        for (CachedBacklog backlog : playerCachedBacklog.values()) {
+            queued += backlog.keys().size();
+        }
+        return queued;
+    }
+
     /**
      * Gets the servers actual view distance from server.properties
      */
@@ -254,6 +335,18 @@ public class FakeChunkService {
         return Bukkit.getViewDistance();
     }
 
+    /**
+     * Distance the server itself sends chunks to this player at, with per-world
+     * and per-player overrides applied
+     */
+    public int getSendViewDistance(Player player) {
+        try {
+            return player.getSendViewDistance();
+        } catch (NoSuchMethodError e) {
+            return player.getWorld().getViewDistance();
+        }
+    }
+
     /**
      * Sends fake chunks to a player
      * Chunks are prioritized by distance (closer chunks first)
@@ -277,11 +370,13 @@ public class FakeChunkService {
 
         CompletableFuture<Integer> result = new CompletableFuture<>();
         UUID uuid = player.getUniqueId();
-        Set<Long> playerSentChunks = playerFakeChunks.computeIfAbsent(uuid, k -> ConcurrentHashMap.newKeySet());
+        World world = player.getWorld();
+        Set<Long> inFlight = inFlight(world);
+        Set<Long> playerSentChunks = fakeChunkTracker.chunksOf(uuid);
 
         Set<Long> toRemove = new HashSet<>(playerSentChunks);
         toRemove.removeAll(chunkKeys);
-        playerSentChunks.removeAll(toRemove);
+        fakeChunkTracker.removeAll(uuid, toRemove);
 
         List<Long> toSend = new ArrayList<>();
         List<Long> toGenerate = new ArrayList<>();
@@ -289,39 +384,40 @@ public class FakeChunkService {
         int playerChunkX = player.getLocation().getBlockX() >> 4;
         int playerChunkZ = player.getLocation().getBlockZ() >> 4;
 
+        List<Long> candidates = new ArrayList<>(chunkKeys.size());
         for (long key : chunkKeys) {
             if (playerSentChunks.contains(key)) {
                 continue;
             }
+            if (refreshHeldChunk(player, world, key)) {
+                fakeChunkTracker.add(player, world, key);
+            } else {
+                candidates.add(key);
+            }
+        }
+        Set<Long> cachedKeys = cacheManager.presentInMemory(world.getUID(), candidates);
 
-            int chunkX = (int) (key & 0xFFFFFFFFL);
-            int chunkZ = (int) (key >> 32);
-
-            if (columnCache.get(chunkX, chunkZ) != null) {
+        for (long key : candidates) {
+            if (cachedKeys.contains(key)) {
                 toSend.add(key);
-            } else if (!generatingChunks.contains(key)) {
+            } else if (!inFlight.contains(key)) {
                 toGenerate.add(key);
             }
         }
 
-        int sent = sendCachedChunks(player, toSend, playerSentChunks);
+        toSend.sort(byDistance(playerChunkX, playerChunkZ));
+        int allowed = flowController.take(player, toSend.size());
+        int sent = sendCachedChunks(player, world, toSend.subList(0, allowed));
+        if (allowed < toSend.size()) {
+            // Replaced on every call: the keys left out are candidates again next time
+            playerCachedBacklog.put(uuid, new CachedBacklog(world.getUID(),
+                    new java.util.concurrent.ConcurrentLinkedQueue<>(toSend.subList(allowed, toSend.size()))));
+        } else {
+            playerCachedBacklog.remove(uuid);
+        }
 
         if (!toGenerate.isEmpty()) {
-            toGenerate.sort((key1, key2) -> {
-                int x1 = (int) (key1 & 0xFFFFFFFFL);
-                int z1 = (int) (key1 >> 32);
-                int x2 = (int) (key2 & 0xFFFFFFFFL);
-                int z2 = (int) (key2 >> 32);
-                
-                int dx1 = x1 - playerChunkX;
-                int dz1 = z1 - playerChunkZ;
-                int dx2 = x2 - playerChunkX;
-                int dz2 = z2 - playerChunkZ;
-                long dist1Squared = (long) dx1 * dx1 + (long) dz1 * dz1;
-                long dist2Squared = (long) dx2 * dx2 + (long) dz2 * dz2;
-                
-                return Long.compare(dist1Squared, dist2Squared);
-            });
+            toGenerate.sort(byDistance(playerChunkX, playerChunkZ));
             
             Queue<Long> queue = playerChunkQueues.computeIfAbsent(uuid, k -> new java.util.concurrent.ConcurrentLinkedQueue<>());
             
@@ -336,7 +432,7 @@ public class FakeChunkService {
                     }
                     queue.clear();
 
-                    generatingChunks.removeIf(key -> {
+                    inFlight.removeIf(key -> {
                         int chunkX = (int) (key & 0xFFFFFFFFL);
                         int chunkZ = (int) (key >> 32);
                         double dist = Math.sqrt((chunkX - currentChunkX) * (chunkX - currentChunkX) + 
@@ -392,6 +488,46 @@ public class FakeChunkService {
         return result;
     }
     
+    /**
+     * Orders chunk keys closest to the given chunk first
+     */
+    private static Comparator<Long> byDistance(int playerChunkX, int playerChunkZ) {
+        return (key1, key2) -> {
+            int x1 = (int) (key1 & 0xFFFFFFFFL);
+            int z1 = (int) (key1 >> 32);
+            int x2 = (int) (key2 & 0xFFFFFFFFL);
+            int z2 = (int) (key2 >> 32);
+
+            int dx1 = x1 - playerChunkX;
+            int dz1 = z1 - playerChunkZ;
+            int dx2 = x2 - playerChunkX;
+            int dz2 = z2 - playerChunkZ;
+            long dist1Squared = (long) dx1 * dx1 + (long) dz1 * dz1;
+            long dist2Squared = (long) dx2 * dx2 + (long) dz2 * dz2;
+
+            return Long.compare(dist1Squared, dist2Squared);
+        };
+    }
+
+    /**
+     * Sends as much of the cached backlog as the client's rate allows this tick
+     */
+    private void drainCachedBacklog(Player player, CachedBacklog cachedBacklog) {
+        Queue<Long> backlog = cachedBacklog.keys();
+        int allowed = flowController.take(player, backlog.size());
+        if (allowed <= 0) {
+            return;
+        }
+        List<Long> keys = new ArrayList<>(allowed);
+        while (keys.size() < allowed && !backlog.isEmpty()) {
+            keys.add(backlog.poll());
+        }
+        if (backlog.isEmpty()) {
+            playerCachedBacklog.remove(player.getUniqueId(), cachedBacklog);
+        }
+        sendCachedChunks(player, player.getWorld(), keys);
+    }
+
     /**
      * Checks if the queue should be cleared due to significant player movement.
      * Only clears if all sampled chunks are far away (like teleporting).
@@ -431,30 +567,31 @@ public class FakeChunkService {
     /**
      * Sends chunks that are already in cache
      */
-    private int sendCachedChunks(Player player, List<Long> keys, Set<Long> sentTracker) {
+    private int sendCachedChunks(Player player, World world, List<Long> keys) {
         int sent = 0;
 
         for (long key : keys) {
             int chunkX = (int) (key & 0xFFFFFFFFL);
             int chunkZ = (int) (key >> 32);
 
-            Column column = columnCache.get(chunkX, chunkZ);
-            if (column != null) {
-                if (sendColumnToPlayer(player, column)) {
-                    sentTracker.add(key);
-                    sent++;
-                } else {
-                    if (DEBUG) {
-                        logger.warn("[EH] Column null or invalid for {},{}, will add to queue", chunkX, chunkZ);
-                    }
-
-                    UUID uuid = player.getUniqueId();
-                    Queue<Long> queue = playerChunkQueues.computeIfAbsent(uuid, k -> new java.util.concurrent.ConcurrentLinkedQueue<>());
-                    queue.add(key);
+            CachedChunk cached = cacheManager.get(world.getUID(), chunkX, chunkZ);
+            if (cached != null && sendCachedChunkToPlayer(player, world, cached)) {
+                fakeChunkTracker.add(player, world, key);
+                recordCachedSend(player, world, key, cached);
+                sent++;
+            } else {
+                // Evicted meanwhile, stale after a block change, or invalid: load it like any other chunk
+                if (DEBUG) {
+                    logger.warn("[EH] Cached chunk {},{} unavailable, will add to queue", chunkX, chunkZ);
                 }
+
+                UUID uuid = player.getUniqueId();
+                Queue<Long> queue = playerChunkQueues.computeIfAbsent(uuid, k -> new java.util.concurrent.ConcurrentLinkedQueue<>());
+                queue.add(key);
             }
         }
 
+        packetBatcher.flush(player);
         if (DEBUG) {
             logger.info("[EH] Sent {} cached fake chunks to {}", sent, player.getName());
         }
@@ -464,23 +601,94 @@ public class FakeChunkService {
 
 
     /**
-     * Attempts to get a chunk from the servers memory cache or our own cache
+     * Brings a chunk the client still holds up to date without resending it whole.
+     * Sends nothing if no change was logged since the client's copy, otherwise the
+     * changed sections as section updates, as long as that is smaller than the chunk.
+     * Main thread only.
+     * @return false when the chunk has to be sent in full
      */
-    private LevelChunk getChunkFromMemoryCache(World world, int chunkX, int chunkZ) {
-        if (!configService.get().performance().fakeChunks().enableMemoryCache()) {
-            return null;
+    private boolean refreshHeldChunk(Player player, World world, long key) {
+        long stamp = clientChunkLedger.stampOf(player.getUniqueId(), world, key);
+        if (stamp < 0) {
+            return false;
         }
-        
-        long chunkKey = packChunkKey(chunkX, chunkZ);
-        
-        synchronized (chunkMemoryCache) {
-            LevelChunk cached = chunkMemoryCache.get(chunkKey);
-            if (cached != null) {
-                return cached;
+
+        int chunkX = (int) (key & 0xFFFFFFFFL);
+        int chunkZ = (int) (key >> 32);
+        BlockChangeLog.ChunkDelta delta = blockChangeLog.changesSince(world, chunkX, chunkZ, stamp);
+        if (delta == null) {
+            return false;
+        }
+        if (delta.isEmpty()) {
+            return true;
+        }
+
+        ServerLevel level = ((CraftWorld) world).getHandle();
+        LevelChunk chunk = level.getChunkSource().getChunkNow(chunkX, chunkZ);
+        if (chunk == null) {
+            return false;
+        }
+
+        LevelChunkSection[] sections = chunk.getSections();
+        long fullBytes = estimateChunkBytes(sections);
+        long deltaBytes = 0;
+        for (ShortSet positions : delta.sections().values()) {
+            deltaBytes += estimateSectionUpdateBytes(positions.size());
+        }
+        if (deltaBytes >= fullBytes) {
+            return false;
+        }
+
+        try {
+            for (Int2ObjectMap.Entry<ShortSet> entry : delta.sections().int2ObjectEntrySet()) {
+                int index = level.getSectionIndexFromSectionY(entry.getIntKey());
+                if (index < 0 || index >= sections.length) {
+                    continue;
+                }
+                packetBatcher.send(player, new ClientboundSectionBlocksUpdatePacket(
+                        SectionPos.of(chunkX, entry.getIntKey(), chunkZ), entry.getValue(), sections[index]));
+            }
+        } catch (Exception e) {
+            if (DEBUG) {
+                logger.warn("[EH] Failed to send section delta to {}: {}", player.getName(), e.getMessage());
             }
+            return false;
+        }
+
+        egressBudget.charge(deltaBytes);
+        clientChunkLedger.record(player.getUniqueId(), world.getUID(), key, blockChangeLog.sequence());
+        if (DEBUG) {
+            logger.info("[EH] Refreshed {} sections of {},{} for {}", delta.sections().size(), chunkX, chunkZ, player.getName());
+        }
+        return true;
+    }
+
+    /**
+     * Approximate packet size of a chunk: its sections plus their light
+     */
+    static long estimateChunkBytes(LevelChunkSection[] sections) {
+        long bytes = 0;
+        for (LevelChunkSection section : sections) {
+            bytes += section.getSerializedSize() + LIGHT_BYTES_PER_SECTION;
         }
+        return bytes;
+    }
+
+    /**
+     * Approximate packet size of a section update changing the given number of blocks
+     */
+    static long estimateSectionUpdateBytes(int positions) {
+        return DELTA_SECTION_HEADER_BYTES + (long) positions * DELTA_ENTRY_BYTES;
+    }
+
+    /**
+     * Attempts to get a chunk from the servers memory cache
+     * Packets built from it are captured into ChunkCacheManager on the way out,
+     * by PacketChunkCacheService through ChunkPacketDispatcher
+     */
+    private LevelChunk getChunkFromMemoryCache(World world, int chunkX, int chunkZ) {
+        long chunkKey = packChunkKey(chunkX, chunkZ);
         
-        // Then check servers memory cache
         try {
             ServerLevel serverLevel = ((CraftWorld) world).getHandle();
             
@@ -490,7 +698,6 @@ public class FakeChunkService {
             if (chunkHolder != null) {
                 LevelChunk chunk = chunkHolder.getFullChunkNow();
                 if (chunk != null && !(chunk instanceof EmptyLevelChunk)) {
-                    cacheChunkInMemory(chunkKey, chunk);
                     return chunk;
                 }
             }
@@ -502,19 +709,6 @@ public class FakeChunkService {
         return null;
     }
     
-    /**
-     * Caches a chunk in memory for reuse
-     */
-    private void cacheChunkInMemory(long chunkKey, LevelChunk chunk) {
-        if (!configService.get().performance().fakeChunks().enableMemoryCache()) {
-            return;
-        }
-        
-        synchronized (chunkMemoryCache) {
-            chunkMemoryCache.put(chunkKey, chunk);
-        }
-    }
-    
     /**
      * Packs chunk coordinates into a long key
      */
@@ -555,13 +749,13 @@ public class FakeChunkService {
      * This is faster than generating but requires the chunk to exist on disk
      */
     private void loadChunkFromNBTAndSend(Player player, World world, int chunkX, int chunkZ, 
-                                         CompoundTag chunkNBT, long key, Set<Long> sentTracker) {
+                                         CompoundTag chunkNBT, long key) {
         try {
             // Use Paper's async chunk loading - it will use the NBT data from disk
             // Passing false means don't generate if it doesn't exist (it should exist from NBT)
             world.getChunkAtAsync(chunkX, chunkZ, false).thenAcceptAsync(chunk -> {
                 if (!player.isOnline()) {
-                    generatingChunks.remove(key);
+                    inFlight(world).remove(key);
                     return;
                 }
 
@@ -570,27 +764,24 @@ public class FakeChunkService {
                     LevelChunk nmsChunk = (LevelChunk) craftChunk.getHandle(ChunkStatus.FULL);
                     
                     if (nmsChunk != null) {
-                        // Cache the loaded chunk for future use
-                        long chunkKey = packChunkKey(chunkX, chunkZ);
-                        cacheChunkInMemory(chunkKey, nmsChunk);
-                        sendChunkPacket(player, nmsChunk, key, sentTracker);
+                        sendChunkPacket(player, world, nmsChunk, key);
                     } else {
                         // Fallback to generation if loading failed
-                        generateChunkAndSend(player, world, chunkX, chunkZ, key, sentTracker);
+                        generateChunkAndSend(player, world, chunkX, chunkZ, key);
                     }
                 } catch (Exception e) {
                     if (DEBUG) {
                         logger.warn("[EH] Failed to process NBT chunk {},{}, falling back to generation: {}", 
                                 chunkX, chunkZ, e.getMessage());
                     }
-                    generateChunkAndSend(player, world, chunkX, chunkZ, key, sentTracker);
+                    generateChunkAndSend(player, world, chunkX, chunkZ, key);
                 }
             }, chunkProcessor).exceptionally(throwable -> {
                 if (DEBUG) {
                     logger.warn("[EH] Failed to load chunk from NBT {},{}, falling back to generation: {}", 
                             chunkX, chunkZ, throwable.getMessage());
                 }
-                generateChunkAndSend(player, world, chunkX, chunkZ, key, sentTracker);
+                generateChunkAndSend(player, world, chunkX, chunkZ, key);
                 return null;
             });
             
@@ -599,7 +790,7 @@ public class FakeChunkService {
                 logger.warn("[EH] Error loading chunk from NBT {},{}, falling back to generation: {}", 
                         chunkX, chunkZ, e.getMessage());
             }
-            generateChunkAndSend(player, world, chunkX, chunkZ, key, sentTracker);
+            generateChunkAndSend(player, world, chunkX, chunkZ, key);
         }
     }
 
@@ -608,10 +799,10 @@ public class FakeChunkService {
      * This is the slowest method and should be the last resort
      */
     private void generateChunkAndSend(Player player, World world, int chunkX, int chunkZ, 
-                                      long key, Set<Long> sentTracker) {
+                                      long key) {
         world.getChunkAtAsync(chunkX, chunkZ, true).thenAcceptAsync(chunk -> {
             if (!player.isOnline()) {
-                generatingChunks.remove(key);
+                inFlight(world).remove(key);
                 return;
             }
 
@@ -620,24 +811,21 @@ public class FakeChunkService {
                 LevelChunk nmsChunk = (LevelChunk) craftChunk.getHandle(ChunkStatus.FULL);
 
                 if (nmsChunk != null) {
-                    // Cache the generated chunk for future use
-                    long chunkKey = packChunkKey(chunkX, chunkZ);
-                    cacheChunkInMemory(chunkKey, nmsChunk);
-                    sendChunkPacket(player, nmsChunk, key, sentTracker);
+                    sendChunkPacket(player, world, nmsChunk, key);
                 } else {
-                    generatingChunks.remove(key);
+                    inFlight(world).remove(key);
                     if (DEBUG) {
                         logger.warn("[EH] Generated chunk {},{} is null", chunkX, chunkZ);
                     }
                 }
             } catch (Exception e) {
-                generatingChunks.remove(key);
+                inFlight(world).remove(key);
                 if (DEBUG) {
                     logger.warn("[EH] Failed to process generated chunk {},{}: {}", chunkX, chunkZ, e.getMessage());
                 }
             }
         }, chunkProcessor).exceptionally(throwable -> {
-            generatingChunks.remove(key);
+            inFlight(world).remove(key);
             logger.warn("[EH] Failed to generate chunk {},{}: {}", chunkX, chunkZ, throwable.getMessage());
             return null;
         });
@@ -647,18 +835,15 @@ public class FakeChunkService {
      * Sends a chunk packet to the player
      * This is the common method used by all loading strategies
      */
-    private void sendChunkPacket(Player player, LevelChunk nmsChunk, long key, Set<Long> sentTracker) {
+    private void sendChunkPacket(Player player, World world, LevelChunk nmsChunk, long key) {
         Bukkit.getScheduler().runTask(plugin, () -> {
             if (!player.isOnline()) {
-                generatingChunks.remove(key);
+                inFlight(world).remove(key);
                 return;
             }
 
             try {
-                org.bukkit.craftbukkit.entity.CraftPlayer craftPlayer = 
-                        (org.bukkit.craftbukkit.entity.CraftPlayer) player;
-                net.minecraft.server.level.ServerPlayer nmsPlayer = craftPlayer.getHandle();
-
+                long stamp = blockChangeLog.sequence();
                 // Note: Constructor is deprecated but no alternative available in current Paper version
                 @SuppressWarnings("deprecation")
                 net.minecraft.network.protocol.game.ClientboundLevelChunkWithLightPacket packet =
@@ -669,10 +854,13 @@ public class FakeChunkService {
                                 null
                         );
 
-                nmsPlayer.connection.send(packet);
+                selfTraffic.expect(player.getUniqueId(), key);
+                flowController.sending(player, estimateChunkBytes(nmsChunk.getSections()));
+                packetBatcher.send(player, packet);
 
-                sentTracker.add(key);
-                generatingChunks.remove(key);
+                fakeChunkTracker.add(player, world, key);
+                clientChunkLedger.record(player.getUniqueId(), world.getUID(), key, stamp);
+                inFlight(world).remove(key);
 
                 if (DEBUG) {
                     int chunkX = (int) (key & 0xFFFFFFFFL);
@@ -680,7 +868,8 @@ public class FakeChunkService {
                     logger.info("[EH] Sent fake chunk {},{} to {}", chunkX, chunkZ, player.getName());
                 }
             } catch (Exception e) {
-                generatingChunks.remove(key);
+                selfTraffic.cancel(player.getUniqueId(), key);
+                inFlight(world).remove(key);
                 if (DEBUG) {
                     logger.warn("[EH] Failed to send chunk packet: {}", e.getMessage());
                 }
@@ -689,26 +878,90 @@ public class FakeChunkService {
     }
 
     /**
-     * Sends a Column directly to the player using PacketEvents
-     * Returns true if successful, false if Column is null or invalid
+     * Sends a chunk loaded from the disk tier on the main thread
+     * and updates tracking like sendChunkPacket does
+     */
+    private void sendCachedChunkPacket(Player player, World world, CachedChunk cached, long key) {
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            if (player.isOnline() && sendCachedChunkToPlayer(player, world, cached)) {
+                fakeChunkTracker.add(player, world, key);
+                recordCachedSend(player, world, key, cached);
+            }
+            inFlight(world).remove(key);
+        });
+    }
+
+    /**
+     * Records a cached chunk in the client ledger as old as its capture, not this send.
+     * An encoded copy also leaves its body fingerprint, so a server resend of the same bytes is dropped.
+     */
+    private void recordCachedSend(Player player, World world, long key, CachedChunk cached) {
+        if (cached.isDecoded()) {
+            clientChunkLedger.record(player.getUniqueId(), world.getUID(), key, cached.sequence());
+        } else {
+            clientChunkLedger.record(player.getUniqueId(), world.getUID(), key, cached.sequence(),
+                    cached.fingerprint(), cached.packetBody().length);
+        }
+    }
+
+    /**
+     * Sends a cached chunk in whichever form its tier holds it
      */
-    private boolean sendColumnToPlayer(Player player, Column column) {
+    private boolean sendCachedChunkToPlayer(Player player, World world, CachedChunk cached) {
+        if (cached.isDecoded()) {
+            // Its size is only known once encoded; settled at the reservation if the send fails
+            flowController.sending(player);
+            int bytes = sendColumnToPlayer(player, cached.column());
+            egressBudget.sentChunk(bytes);
+            return bytes > 0;
+        }
+        flowController.sending(player, cached.packetBody().length);
+        return sendRawChunkToPlayer(player, world, packChunkKey(cached.x(), cached.z()), cached.packetBody());
+    }
+
+    /**
+     * Sends an already encoded chunk packet body without decoding it again, as a shared
+     * compressed frame where possible
+     * Silent: our own packet listeners never see it
+     */
+    private boolean sendRawChunkToPlayer(Player player, World world, long key, byte[] packetBody) {
+        if (frameService.send(player, world.getUID(), key, packetBody)) {
+            packetBatcher.written(player);
+            return true;
+        }
+        try {
+            packetBatcher.sendSilently(player, new RawChunkDataWrapper(packetBody));
+            return true;
+        } catch (Exception e) {
+            if (DEBUG) {
+                logger.warn("[EH] Failed to send raw chunk to " + player.getName() + ": " + e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Sends a Column directly to the player using PacketEvents, silently so our
+     * packet listeners do not decode and cache it again; flushed with the player's batch
+     * Returns the encoded packet size, 0 if Column is null or invalid
+     */
+    private int sendColumnToPlayer(Player player, Column column) {
         if (column == null) {
             if (DEBUG) {
                 logger.warn("[EH] Attempted to send null column to " + player.getName());
             }
-            return false;
+            return 0;
         }
 
         try {
-            WrapperPlayServerChunkData packet = new WrapperPlayServerChunkData(column);
-            PacketEvents.getAPI().getPlayerManager().sendPacket(player, packet);
-            return true;
+            SizedChunkDataWrapper packet = new SizedChunkDataWrapper(column);
+            packetBatcher.sendSilently(player, packet);
+            return packet.getEncodedSize();
         } catch (Exception e) {
             if (DEBUG) {
                 logger.warn("[EH] Failed to send column to " + player.getName() + ": " + e.getMessage());
             }
-            return false;
+            return 0;
         }
     }
 
@@ -717,57 +970,40 @@ public class FakeChunkService {
      */
     public void clearPlayerFakeChunks(Player player) {
         UUID playerId = player.getUniqueId();
-        playerFakeChunks.remove(playerId);
+        fakeChunkTracker.clear(playerId);
+        clientChunkLedger.clear(playerId);
+        selfTraffic.clear(playerId);
+        packetBatcher.clear(playerId);
+        flowController.clear(playerId);
+        playerCachedBacklog.remove(playerId);
         playerChunkQueues.remove(playerId);
         playerChunksProcessedThisTick.remove(playerId);
         lastChunkPosition.remove(playerId);
     }
 
     /**
-     * Shutdown the async executor
+     * Forgets in-flight loads of an unloaded world
      */
-    public void shutdown() {
-        chunkProcessor.shutdown();
-        chunkMemoryCache.clear();
+    public void clearWorld(UUID worldId) {
+        generatingChunks.remove(worldId);
+        fakeChunkTracker.clearWorld(worldId);
+        clientChunkLedger.clearWorld(worldId);
+        blockChangeLog.clearWorld(worldId);
+        frameService.clearWorld(worldId);
     }
-    
+
     /**
-     * Clears the memory cache (useful for memory management)
+     * In-flight chunk keys of a world
      */
-    public void clearMemoryCache() {
-        chunkMemoryCache.clear();
+    private Set<Long> inFlight(World world) {
+        return generatingChunks.computeIfAbsent(world.getUID(), k -> ConcurrentHashMap.newKeySet());
     }
-    
+
     /**
-     * Gets the current size of the memory cache
+     * Shutdown the async executor
      */
-    public int getMemoryCacheSize() {
-        return chunkMemoryCache.size();
-    }
-
-
-    public int getCacheSize() {
-        return columnCache.size();
-    }
-
-    public double getCacheHitRate() {
-        long hits = 0;
-        long total = 0;
-        for (Set<Long> chunks : playerFakeChunks.values()) {
-            total += chunks.size();
-            for (long key : chunks) {
-                int chunkX = (int) (key & 0xFFFFFFFFL);
-                int chunkZ = (int) (key >> 32);
-                if (columnCache.get(chunkX, chunkZ) != null) {
-                    hits++;
-                }
-            }
-        }
-        return total > 0 ? (hits * 100.0 / total) : 0.0;
-    }
-
-    public double getEstimatedMemoryUsageMB() {
-        return columnCache.size() * 0.04;
+    public void shutdown() {
+        chunkProcessor.shutdown();
     }
 
     /**
@@ -777,10 +1013,4 @@ public class FakeChunkService {
      * Similar to FartherViewDistance's asyncThreadAmount approach
      */
     private final ExecutorService chunkProcessor;
-    
-    /**
-     * Cache for NMS chunks already loaded in memory
-     * Reuses chunks without regenerating them
-     */
-    private final Map<Long, LevelChunk> chunkMemoryCache;
 }
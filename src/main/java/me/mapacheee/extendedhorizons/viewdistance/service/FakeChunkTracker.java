@@ -0,0 +1,122 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.thewinterframework.service.annotation.Service;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ *   Which players hold which chunks as fake chunks, indexed both ways
+ *   Per player: the chunk keys sent to them in their current world
+ *   Per world and chunk: the players holding it, so a block change finds its
+ *   audience without scanning every player
+ *   A player's chunks belong to one world; adding a chunk of another world
+ *   forgets the old ones, as the client does on a world change
+ *   Cleared along with ClientChunkLedger whenever the client recreates its level
+ *   (respawn, join), even within the same world
+ */
+@Service
+public class FakeChunkTracker {
+
+    private final Map<UUID, Set<Long>> chunksByPlayer = new ConcurrentHashMap<>();
+    private final Map<UUID, UUID> worldByPlayer = new ConcurrentHashMap<>();
+    private final Map<UUID, Map<Long, Set<UUID>>> playersByChunk = new ConcurrentHashMap<>();
+
+    /**
+     * Records that the player now holds the chunk as a fake chunk
+     */
+    public void add(Player player, World world, long key) {
+        UUID playerId = player.getUniqueId();
+        UUID worldId = world.getUID();
+        UUID previousWorld = worldByPlayer.put(playerId, worldId);
+        if (previousWorld != null && !previousWorld.equals(worldId)) {
+            forget(playerId, previousWorld, chunksByPlayer.remove(playerId));
+        }
+
+        chunksByPlayer.computeIfAbsent(playerId, k -> ConcurrentHashMap.newKeySet()).add(key);
+        playersByChunk.computeIfAbsent(worldId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet())
+                .add(playerId);
+    }
+
+    public boolean holds(UUID playerId, long key) {
+        Set<Long> chunks = chunksByPlayer.get(playerId);
+        return chunks != null && chunks.contains(key);
+    }
+
+    /**
+     * Chunks the player holds as fake chunks, read-only view
+     */
+    public Set<Long> chunksOf(UUID playerId) {
+        Set<Long> chunks = chunksByPlayer.get(playerId);
+        return chunks != null ? Collections.unmodifiableSet(chunks) : Set.of();
+    }
+
+    /**
+     * Players holding the chunk of that world as a fake chunk
+     */
+    public Set<UUID> holders(UUID worldId, long key) {
+        Map<Long, Set<UUID>> chunks = playersByChunk.get(worldId);
+        if (chunks == null) {
+            return Set.of();
+        }
+        Set<UUID> players = chunks.get(key);
+        return players != null ? players : Set.of();
+    }
+
+    /**
+     * Forgets the given chunks for the player
+     */
+    public void removeAll(UUID playerId, Collection<Long> keys) {
+        Set<Long> chunks = chunksByPlayer.get(playerId);
+        UUID worldId = worldByPlayer.get(playerId);
+        if (chunks == null || worldId == null) {
+            return;
+        }
+        chunks.removeAll(keys);
+        forget(playerId, worldId, keys);
+    }
+
+    public void clear(UUID playerId) {
+        UUID worldId = worldByPlayer.remove(playerId);
+        Set<Long> chunks = chunksByPlayer.remove(playerId);
+        if (worldId != null) {
+            forget(playerId, worldId, chunks);
+        }
+    }
+
+    /**
+     * Drops every holder of an unloaded world
+     */
+    public void clearWorld(UUID worldId) {
+        Map<Long, Set<UUID>> chunks = playersByChunk.remove(worldId);
+        if (chunks == null) {
+            return;
+        }
+        worldByPlayer.forEach((playerId, playerWorld) -> {
+            if (playerWorld.equals(worldId)) {
+                chunksByPlayer.remove(playerId);
+                worldByPlayer.remove(playerId, worldId);
+            }
+        });
+    }
+
+    private void forget(UUID playerId, UUID worldId, Collection<Long> keys) {
+        Map<Long, Set<UUID>> chunks = playersByChunk.get(worldId);
+        if (chunks == null || keys == null) {
+            return;
+        }
+        for (long key : keys) {
+            chunks.computeIfPresent(key, (k, players) -> {
+                players.remove(playerId);
+                return players.isEmpty() ? null : players;
+            });
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.google.inject.Inject;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.thewinterframework.service.annotation.Service;
+import com.thewinterframework.service.annotation.lifecycle.OnDisable;
+import com.thewinterframework.service.annotation.lifecycle.OnEnable;
+import me.mapacheee.extendedhorizons.shared.service.ConfigService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ *   Watches old-generation occupancy through JMX and sheds chunk caches under pressure
+ *   Listens to usage-threshold notifications of the tenured heap pool and to every GC,
+ *   reading the pool's occupancy right after collection (what is actually live)
+ *   Pressure is how far that occupancy sits between the threshold and a full pool;
+ *   the caches are trimmed by that share and admissions pause until it falls back
+ *   below the threshold minus a hysteresis margin
+ */
+@Service
+public class MemoryPressureMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryPressureMonitor.class);
+    private static final boolean DEBUG = false;
+
+    private static final int DEFAULT_THRESHOLD_PERCENT = 85;
+    private static final double RECOVERY_MARGIN = 0.10;
+
+    private final ConfigService configService;
+    private final ChunkCacheManager cacheManager;
+    private final List<Runnable> unregisterActions = new ArrayList<>();
+
+    private volatile MemoryPoolMXBean tenuredPool;
+    private volatile double lastOccupancy;
+    private volatile double pressure;
+
+    @Inject
+    public MemoryPressureMonitor(ConfigService configService, ChunkCacheManager cacheManager) {
+        this.configService = configService;
+        this.cacheManager = cacheManager;
+    }
+
+    @OnEnable
+    public void start() {
+        if (getThreshold() <= 0) {
+            return;
+        }
+
+        tenuredPool = findTenuredPool();
+        if (tenuredPool == null) {
+            logger.warn("[EH] No heap pool supports usage thresholds, memory pressure shedding disabled");
+            return;
+        }
+
+        long max = tenuredPool.getUsage().getMax();
+        if (max > 0) {
+            long thresholdBytes = (long) (max * getThreshold());
+            if (tenuredPool.isUsageThresholdSupported()) {
+                tenuredPool.setUsageThreshold(thresholdBytes);
+            }
+            tenuredPool.setCollectionUsageThreshold(thresholdBytes);
+        }
+
+        NotificationListener thresholdListener = this::onThresholdNotification;
+        register((NotificationEmitter) ManagementFactory.getMemoryMXBean(), thresholdListener);
+
+        NotificationListener gcListener = this::onGcNotification;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                register(emitter, gcListener);
+            }
+        }
+
+        if (DEBUG) {
+            logger.info("[EH] Memory pressure monitor watching {} at {}%", tenuredPool.getName(), (int) (getThreshold() * 100));
+        }
+    }
+
+    @OnDisable
+    public void stop() {
+        for (Runnable action : unregisterActions) {
+            action.run();
+        }
+        unregisterActions.clear();
+        cacheManager.setAdmissionsPaused(false);
+    }
+
+    /**
+     * Current pressure from 0 (below threshold) to 1 (pool full after GC)
+     */
+    public double getPressure() {
+        return pressure;
+    }
+
+    /**
+     * Tenured pool occupancy after the last observed collection, 0 to 1
+     */
+    public double getOccupancy() {
+        return lastOccupancy;
+    }
+
+    private void onThresholdNotification(Notification notification, Object handback) {
+        String type = notification.getType();
+        if (!MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)
+                && !MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+            return;
+        }
+        MemoryPoolMXBean pool = tenuredPool;
+        if (pool == null) {
+            return;
+        }
+        // Plain usage also counts garbage, so only a collection-threshold hit is trusted fully
+        MemoryUsage usage = MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)
+                ? pool.getCollectionUsage()
+                : pool.getUsage();
+        evaluate(usage);
+    }
+
+    private void onGcNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        MemoryPoolMXBean pool = tenuredPool;
+        if (pool == null) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        MemoryUsage afterGc = info.getGcInfo().getMemoryUsageAfterGc().get(pool.getName());
+        if (afterGc != null) {
+            evaluate(afterGc);
+        }
+    }
+
+    /**
+     * Turns an occupancy reading into a pressure level and acts on transitions
+     */
+    private void evaluate(MemoryUsage usage) {
+        long max = usage.getMax() > 0 ? usage.getMax() : usage.getCommitted();
+        if (max <= 0) {
+            return;
+        }
+
+        double threshold = getThreshold();
+        double occupancy = (double) usage.getUsed() / max;
+        lastOccupancy = occupancy;
+
+        if (occupancy >= threshold) {
+            double level = Math.min(1.0, (occupancy - threshold) / Math.max(0.01, 1.0 - threshold));
+            // At the threshold itself still shed a little, otherwise nothing would change
+            level = Math.max(level, 0.10);
+            pressure = level;
+
+            boolean wasPaused = cacheManager.isAdmissionsPaused();
+            cacheManager.setAdmissionsPaused(true);
+            long released = cacheManager.shed(level);
+            if (!wasPaused || DEBUG) {
+                logger.warn("[EH] Heap pressure: {} at {}%, shed {} MB of chunk caches and paused fake chunk loading",
+                        tenuredPool.getName(), String.format(Locale.ROOT, "%.0f", occupancy * 100), released / (1024 * 1024));
+            }
+        } else if (occupancy < threshold - RECOVERY_MARGIN && cacheManager.isAdmissionsPaused()) {
+            pressure = 0.0;
+            cacheManager.setAdmissionsPaused(false);
+            logger.info("[EH] Heap pressure recovered ({}%), resuming fake chunk loading",
+                    String.format(Locale.ROOT, "%.0f", occupancy * 100));
+        } else if (!cacheManager.isAdmissionsPaused()) {
+            pressure = 0.0;
+        }
+    }
+
+    private void register(NotificationEmitter emitter, NotificationListener listener) {
+        emitter.addNotificationListener(listener, null, null);
+        unregisterActions.add(() -> {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException ignored) {
+                // Already gone
+            }
+        });
+    }
+
+    /**
+     * Picks the old-generation heap pool, or the largest heap pool for single-generation collectors
+     */
+    private static MemoryPoolMXBean findTenuredPool() {
+        MemoryPoolMXBean best = null;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) {
+                continue;
+            }
+            String name = pool.getName().toLowerCase(Locale.ROOT);
+            if (name.contains("old") || name.contains("tenured")) {
+                return pool;
+            }
+            if (best == null || pool.getUsage().getMax() > best.getUsage().getMax()) {
+                best = pool;
+            }
+        }
+        return best;
+    }
+
+    private double getThreshold() {
+        int percent = configService.get().performance().fakeChunks().memoryPressureThreshold();
+        if (percent < 0) {
+            return 0.0;
+        }
+        return (percent > 0 ? Math.min(99, percent) : DEFAULT_THRESHOLD_PERCENT) / 100.0;
+    }
+}
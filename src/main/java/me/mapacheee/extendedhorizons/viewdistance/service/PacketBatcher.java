@@ -0,0 +1,115 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.wrapper.PacketWrapper;
+import com.google.inject.Inject;
+import com.thewinterframework.service.annotation.Service;
+import io.netty.channel.Channel;
+import net.minecraft.network.protocol.Packet;
+import org.bukkit.Bukkit;
+import org.bukkit.craftbukkit.entity.CraftPlayer;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ *   Writes our packets to a player's connection without flushing each one
+ *   A plain send flushes the channel every time, one syscall per packet, so a burst of
+ *   200 fake chunks cost 200 of them. Writes made here are flushed once per player at
+ *   the end of a burst (flush) or of the tick (flushAll, from TickEndListener)
+ *   A channel that stops being writable is flushed right away, so a full outbound
+ *   buffer drains instead of growing
+ */
+@Service
+public class PacketBatcher {
+
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    @Inject
+    public PacketBatcher() {}
+
+    /**
+     * Writes a server packet through the player's connection, unflushed
+     */
+    public void send(Player player, Packet<?> packet) {
+        ((CraftPlayer) player).getHandle().connection.connection.send(packet, null, false);
+        written(player);
+    }
+
+    /**
+     * Writes a PacketEvents packet silently, our packet listeners never see it; unflushed
+     */
+    public void sendSilently(Player player, PacketWrapper<?> packet) {
+        PacketEvents.getAPI().getPlayerManager().writePacketSilently(player, packet);
+        written(player);
+    }
+
+    /**
+     * Registers a write made straight into the player's channel, to be flushed with the rest
+     */
+    public void written(Player player) {
+        writes.increment();
+        Channel channel = channel(player);
+        if (channel != null && !channel.isWritable()) {
+            pending.remove(player.getUniqueId());
+            flush(channel);
+        } else {
+            pending.add(player.getUniqueId());
+        }
+    }
+
+    /**
+     * Flushes the player's unflushed writes, if any
+     */
+    public void flush(Player player) {
+        if (pending.remove(player.getUniqueId())) {
+            flush(channel(player));
+        }
+    }
+
+    /**
+     * Flushes every player with unflushed writes
+     */
+    public void flushAll() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (UUID playerId : new ArrayList<>(pending)) {
+            Player player = Bukkit.getPlayer(playerId);
+            if (player == null) {
+                pending.remove(playerId);
+            } else {
+                flush(player);
+            }
+        }
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    public void clear(UUID playerId) {
+        pending.remove(playerId);
+    }
+
+    private void flush(Channel channel) {
+        if (channel != null && channel.isActive()) {
+            channel.flush();
+            flushes.increment();
+        }
+    }
+
+    private static Channel channel(Player player) {
+        return (Channel) PacketEvents.getAPI().getPlayerManager().getChannel(player);
+    }
+}
@@ -16,12 +16,14 @@ import net.minecraft.network.protocol.game.*;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.chunk.LevelChunk;
 
+import java.util.Collection;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 /*
  *   Manages client chunk radius and sends chunks manually using NMS
  *   Sends chunks beyond server view-distance directly to client
+ *   Everything goes through PacketBatcher, flushed at the end of the burst or tick
 */
 @Service
 public class PacketService {
@@ -31,8 +33,12 @@ public class PacketService {
 
     private static final boolean DEBUG = false;
 
+    private final PacketBatcher packetBatcher;
+
     @Inject
-    public PacketService() {}
+    public PacketService(PacketBatcher packetBatcher) {
+        this.packetBatcher = packetBatcher;
+    }
 
     /**
      * Ensures client has correct chunk cache radius
@@ -40,18 +46,39 @@ public class PacketService {
     public void ensureClientRadius(Player player, int radius) {
         if (radius < 2) return;
 
-        ServerPlayer nmsPlayer = ((CraftPlayer) player).getHandle();
-        nmsPlayer.connection.send(new ClientboundSetChunkCacheRadiusPacket(radius));
+        packetBatcher.send(player, new ClientboundSetChunkCacheRadiusPacket(radius));
     }
 
     /**
      * Updates client chunk cache center to player's current position
      */
     public void ensureClientCenter(Player player) {
-        ServerPlayer nmsPlayer = ((CraftPlayer) player).getHandle();
         int cx = player.getLocation().getBlockX() >> 4;
         int cz = player.getLocation().getBlockZ() >> 4;
-        nmsPlayer.connection.send(new ClientboundSetChunkCacheCenterPacket(cx, cz));
+        packetBatcher.send(player, new ClientboundSetChunkCacheCenterPacket(cx, cz));
+    }
+
+    /**
+     * Tells the client to drop the given chunks
+     */
+    public void unloadChunks(Player player, Collection<Long> keys) {
+        for (long key : keys) {
+            int chunkX = (int) (key & 0xFFFFFFFFL);
+            int chunkZ = (int) (key >> 32);
+            packetBatcher.send(player, new ClientboundForgetLevelChunkPacket(new net.minecraft.world.level.ChunkPos(chunkX, chunkZ)));
+        }
+
+        if (DEBUG && !keys.isEmpty()) {
+            logger.info("[EH] Unloaded {} chunks for {}", keys.size(), player.getName());
+        }
+    }
+
+    /**
+     * Whether the server itself tracks the chunk for the player and will unload it on its own
+     */
+    public boolean isTrackedByServer(Player player, long key) {
+        ServerPlayer nmsPlayer = ((CraftPlayer) player).getHandle();
+        return nmsPlayer.getChunkTrackingView().contains((int) (key & 0xFFFFFFFFL), (int) (key >> 32));
     }
 
     /**
@@ -67,7 +94,6 @@ public class PacketService {
 
         Bukkit.getScheduler().runTask(plugin, () -> {
             try {
-                ServerPlayer nmsPlayer = ((CraftPlayer) player).getHandle();
                 net.minecraft.world.level.chunk.ChunkAccess chunkAccess = ((CraftChunk) chunk).getHandle(net.minecraft.world.level.chunk.status.ChunkStatus.FULL);
 
                 if (!(chunkAccess instanceof LevelChunk)) {
@@ -85,7 +111,7 @@ public class PacketService {
                     null
                 );
 
-                nmsPlayer.connection.send(packet);
+                packetBatcher.send(player, packet);
 
                 if (DEBUG) {
                     logger.info("[EH] Sent chunk {},{} to {}", chunk.getX(), chunk.getZ(), player.getName());
@@ -120,7 +146,6 @@ public class PacketService {
                 if (!player.isOnline()) break;
 
                 try {
-                    ServerPlayer nmsPlayer = ((CraftPlayer) player).getHandle();
                     net.minecraft.world.level.chunk.ChunkAccess chunkAccess = ((CraftChunk) chunk).getHandle(net.minecraft.world.level.chunk.status.ChunkStatus.FULL);
 
                     if (!(chunkAccess instanceof LevelChunk)) continue;
@@ -136,7 +161,7 @@ public class PacketService {
                         null
                     );
 
-                    nmsPlayer.connection.send(packet);
+                    packetBatcher.send(player, packet);
                     sent++;
 
                 } catch (Exception e) {
@@ -146,6 +171,7 @@ public class PacketService {
                 }
             }
 
+            packetBatcher.flush(player);
             if (DEBUG) {
                 logger.info("[EH] Sent {} chunks to {}", sent, player.getName());
             }
@@ -166,8 +192,6 @@ public class PacketService {
         }
 
         try {
-            ServerPlayer nmsPlayer = ((CraftPlayer) player).getHandle();
-
             org.bukkit.World world = player.getWorld();
             Chunk chunk = world.getChunkAt(chunkX, chunkZ);
 
@@ -186,7 +210,7 @@ public class PacketService {
                         null
                     );
 
-                    nmsPlayer.connection.send(packet);
+                    packetBatcher.send(player, packet);
                 }
             }
 
@@ -0,0 +1,194 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.protocol.packettype.PacketType;
+import com.github.retrooper.packetevents.protocol.player.ClientVersion;
+import com.google.inject.Inject;
+import com.thewinterframework.service.annotation.Service;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import me.mapacheee.extendedhorizons.shared.service.ConfigService;
+import me.mapacheee.extendedhorizons.viewdistance.cache.FrameCompressor;
+import me.mapacheee.extendedhorizons.viewdistance.cache.TinyLfuCache;
+import net.minecraft.server.MinecraftServer;
+import org.bukkit.entity.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ *   Compresses each cached chunk packet once for all its viewers
+ *   Normally every connection deflates a chunk packet itself, so a popular chunk is
+ *   compressed once per viewer. Here the finished compressed frame is built once, kept
+ *   in a small TinyLFU cache per world, and written into the pipeline right past the
+ *   compression handler; only the length prefix and encryption still run per connection
+ *   A miss is sent through the normal pipeline while the frame is built on the viewer's
+ *   channel event loop, where that compression would have run anyway; the main thread
+ *   never deflates. Later viewers of the chunk get the shared frame
+ *   Frames are matched by a fingerprint of the packet body, so a changed chunk is never
+ *   answered with an old frame; the memory is split evenly between the worlds holding frames
+ *   Skipped, and left to the normal send path, for clients on another protocol version
+ *   (their packets need translating first) and when network compression is off
+ */
+@Service
+public class PrecompressedFrameService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrecompressedFrameService.class);
+    private static final boolean DEBUG = false;
+
+    private static final String COMPRESS_HANDLER = "compress";
+    private static final int DEFAULT_CACHE_MB = 32;
+    private static final int AVERAGE_FRAME_BYTES = 16 * 1024;
+
+    private record Frame(long fingerprint, int bodyLength, int threshold, byte[] bytes) {
+        int weight() {
+            return bytes.length + TinyLfuCache.ENTRY_OVERHEAD_BYTES;
+        }
+
+        boolean matches(long fingerprint, int bodyLength, int threshold) {
+            return this.fingerprint == fingerprint && this.bodyLength == bodyLength && this.threshold == threshold;
+        }
+    }
+
+    private record FrameKey(UUID worldId, long key) {
+    }
+
+    private final ConfigService configService;
+    private final Map<UUID, TinyLfuCache<Frame>> frames = new ConcurrentHashMap<>();
+    private final Set<FrameKey> building = ConcurrentHashMap.newKeySet();
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+
+    @Inject
+    public PrecompressedFrameService(ConfigService configService) {
+        this.configService = configService;
+    }
+
+    /**
+     * Writes the chunk packet as a shared compressed frame, unflushed, when one is ready;
+     * the caller registers the write with PacketBatcher. Otherwise starts building the frame
+     * @return false when no frame was written; the caller then sends the packet normally
+     */
+    public boolean send(Player player, UUID worldId, long key, byte[] packetBody) {
+        if (!configService.get().performance().fakeChunks().precompressedFrames()) {
+            return false;
+        }
+        int threshold = getCompressionThreshold();
+        ClientVersion serverVersion = PacketEvents.getAPI().getServerManager().getVersion().toClientVersion();
+        if (threshold < 0 || PacketEvents.getAPI().getPlayerManager().getClientVersion(player) != serverVersion) {
+            return false;
+        }
+        Channel channel = (Channel) PacketEvents.getAPI().getPlayerManager().getChannel(player);
+        ChannelHandlerContext compressor = channel != null ? channel.pipeline().context(COMPRESS_HANDLER) : null;
+        if (compressor == null) {
+            return false;
+        }
+
+        TinyLfuCache<Frame> cache = frames(worldId);
+        long fingerprint = FrameCompressor.fingerprint(packetBody);
+        Frame frame = cache.get(key);
+        if (frame == null || !frame.matches(fingerprint, packetBody.length, threshold)) {
+            build(channel, cache, new FrameKey(worldId, key), packetBody, fingerprint, threshold,
+                    PacketType.Play.Server.CHUNK_DATA.getId(serverVersion));
+            return false;
+        }
+
+        try {
+            compressor.write(Unpooled.wrappedBuffer(frame.bytes()));
+            reused.increment();
+            return true;
+        } catch (Exception e) {
+            if (DEBUG) {
+                logger.warn("[EH] Failed to send shared frame to {}: {}", player.getName(), e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The server's network compression threshold, negative when compression is off
+     */
+    public int getCompressionThreshold() {
+        return MinecraftServer.getServer().getCompressionThreshold();
+    }
+
+    public long getCompressed() {
+        return compressed.sum();
+    }
+
+    public long getReused() {
+        return reused.sum();
+    }
+
+    public void clear() {
+        frames.values().forEach(TinyLfuCache::clear);
+        frames.clear();
+    }
+
+    /**
+     * Drops the frames of an unloaded world
+     */
+    public void clearWorld(UUID worldId) {
+        TinyLfuCache<Frame> cache = frames.remove(worldId);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Compresses the frame on the channel's event loop; at most one build per chunk at a time
+     */
+    private void build(Channel channel, TinyLfuCache<Frame> cache, FrameKey frameKey, byte[] packetBody,
+                       long fingerprint, int threshold, int packetId) {
+        if (!building.add(frameKey)) {
+            return;
+        }
+        try {
+            channel.eventLoop().execute(() -> {
+                try {
+                    byte[] bytes = FrameCompressor.compress(packetId, packetBody, threshold);
+                    if (frames.get(frameKey.worldId()) == cache) {
+                        cache.put(frameKey.key(), new Frame(fingerprint, packetBody.length, threshold, bytes));
+                        compressed.increment();
+                    }
+                } catch (Exception e) {
+                    if (DEBUG) {
+                        logger.warn("[EH] Failed to build shared frame: {}", e.getMessage());
+                    }
+                } finally {
+                    building.remove(frameKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Channel closing, the next viewer builds it
+            building.remove(frameKey);
+        }
+    }
+
+    /**
+     * The world's frame cache; every world holding frames gets an equal share of the memory
+     */
+    private TinyLfuCache<Frame> frames(UUID worldId) {
+        TinyLfuCache<Frame> cache = frames.computeIfAbsent(worldId, id -> {
+            long share = getMaxBytes() / (frames.size() + 1);
+            return new TinyLfuCache<>(share, Math.max(1, share / AVERAGE_FRAME_BYTES), Frame::weight);
+        });
+        long share = getMaxBytes() / Math.max(1, frames.size());
+        if (cache.maximumWeight() != share) {
+            cache.setMaximumWeight(share);
+        }
+        return cache;
+    }
+
+    private long getMaxBytes() {
+        int megabytes = configService.get().performance().fakeChunks().precompressedFramesMb();
+        return (megabytes > 0 ? megabytes : DEFAULT_CACHE_MB) * 1024L * 1024L;
+    }
+}
@@ -0,0 +1,73 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.thewinterframework.service.annotation.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ *   Chunk packets of our own that pass through the packet listeners
+ *   PacketEvents sends go out silently and never reach the listeners; NMS sends cannot,
+ *   so they are announced here right before sending and ChunkPacketDispatcher, which
+ *   only peeks at the chunk coordinates, consumes the announcement and hands them only
+ *   to the consumers that want our own traffic, such as the cache capture
+ *   Counters show how many were skipped and how many still got decoded
+ */
+@Service
+public class SelfTrafficTracker {
+
+    private final Map<UUID, Set<Long>> pendingSends = new ConcurrentHashMap<>();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder decoded = new LongAdder();
+
+    /**
+     * Announces a chunk packet of ours, to be called right before it is sent
+     */
+    public void expect(UUID playerId, long key) {
+        pendingSends.computeIfAbsent(playerId, k -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    /**
+     * Withdraws an announced packet that was not sent after all
+     */
+    public void cancel(UUID playerId, long key) {
+        Set<Long> pending = pendingSends.get(playerId);
+        if (pending != null) {
+            pending.remove(key);
+        }
+    }
+
+    /**
+     * Whether an outgoing chunk packet is one of ours; removes the announcement
+     */
+    public boolean consume(UUID playerId, long key) {
+        Set<Long> pending = pendingSends.get(playerId);
+        return pending != null && pending.remove(key);
+    }
+
+    public void countSkipped() {
+        skipped.increment();
+    }
+
+    /**
+     * Counts one of our packets that was decoded anyway, e.g. when its coordinates could not be peeked
+     */
+    public void countDecoded() {
+        decoded.increment();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public long getDecoded() {
+        return decoded.sum();
+    }
+
+    public void clear(UUID playerId) {
+        pendingSends.remove(playerId);
+    }
+}
@@ -0,0 +1,137 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.google.inject.Inject;
+import com.thewinterframework.service.annotation.Service;
+import com.thewinterframework.service.annotation.lifecycle.OnEnable;
+import me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin;
+import me.mapacheee.extendedhorizons.shared.config.MainConfig;
+import me.mapacheee.extendedhorizons.shared.service.ConfigService;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/*
+ *   Shrinks fake chunk rings while the server is overloaded
+ *   Every two seconds it reads the average MSPT and the fake chunks waiting to load.
+ *   Above mspt-high, or with more than backlog-high chunks waiting, every player's ring
+ *   loses another step of chunks; once MSPT is back under mspt-low and the backlog under
+ *   half its limit for RECOVERY_SAMPLES samples in a row, a step is given back
+ *   Rings never shrink below the send distance, real chunks are the server's business.
+ *   Players with BYPASS_PERMISSION keep their full ring. Every change is logged
+ */
+@Service
+public class ServerLoadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServerLoadController.class);
+
+    public static final String BYPASS_PERMISSION = "extendedhorizons.bypass.loadscaling";
+
+    private static final long SAMPLE_INTERVAL_TICKS = 40L;
+    private static final int RECOVERY_SAMPLES = 3;
+    private static final int DEFAULT_STEP = 4;
+
+    private final ConfigService configService;
+    private final FakeChunkService fakeChunkService;
+    private final Plugin plugin = JavaPlugin.getPlugin(ExtendedHorizonsPlugin.class);
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile int reduction;
+    private int calmSamples;
+    private double lastMspt;
+    private int lastBacklog;
+
+    @Inject
+    public ServerLoadController(ConfigService configService, FakeChunkService fakeChunkService) {
+        this.configService = configService;
+        this.fakeChunkService = fakeChunkService;
+    }
+
+    @OnEnable
+    public void start() {
+        Bukkit.getScheduler().runTaskTimer(plugin, this::sample, SAMPLE_INTERVAL_TICKS, SAMPLE_INTERVAL_TICKS);
+    }
+
+    /**
+     * Called whenever the reduction changes
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * The distance the player gets out of the given one under the current load
+     */
+    public int cap(Player player, int distance) {
+        int current = reduction;
+        if (current == 0 || player.hasPermission(BYPASS_PERMISSION)) {
+            return distance;
+        }
+        int floor = Math.min(distance, fakeChunkService.getSendViewDistance(player));
+        return Math.max(floor, distance - current);
+    }
+
+    /**
+     * Chunks currently taken off every ring
+     */
+    public int getReduction() {
+        return reduction;
+    }
+
+    public double getLastMspt() {
+        return lastMspt;
+    }
+
+    public int getLastBacklog() {
+        return lastBacklog;
+    }
+
+    private void sample() {
+        MainConfig.PerformanceConfig.LoadScalingConfig config = configService.get().performance().loadScaling();
+        lastMspt = Bukkit.getAverageTickTime();
+        lastBacklog = fakeChunkService.getQueuedChunks();
+
+        if (config == null || !config.enabled()) {
+            if (reduction > 0) {
+                change(0, "load scaling disabled");
+            }
+            return;
+        }
+
+        int step = config.step() > 0 ? config.step() : DEFAULT_STEP;
+        int backlogHigh = config.backlogHigh();
+        boolean backlogged = backlogHigh > 0 && lastBacklog > backlogHigh;
+        boolean overloaded = lastMspt > config.msptHigh() || backlogged;
+        boolean calm = lastMspt < config.msptLow() && (backlogHigh <= 0 || lastBacklog < backlogHigh / 2);
+
+        if (overloaded) {
+            calmSamples = 0;
+            int maxReduction = configService.get().viewDistance().maxDistance();
+            if (reduction < maxReduction) {
+                change(Math.min(maxReduction, reduction + step), backlogged && lastMspt <= config.msptHigh() ? "fake chunk backlog" : "high MSPT");
+            }
+        } else if (calm && reduction > 0) {
+            if (++calmSamples >= RECOVERY_SAMPLES) {
+                calmSamples = 0;
+                change(Math.max(0, reduction - step), "load recovered");
+            }
+        } else {
+            calmSamples = 0;
+        }
+    }
+
+    private void change(int next, String reason) {
+        logger.info("[EH] Horizon reduction {} -> {} chunks ({}: {} MSPT, {} chunks queued)",
+                reduction, next, reason, String.format("%.1f", lastMspt), lastBacklog);
+        reduction = next;
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+}
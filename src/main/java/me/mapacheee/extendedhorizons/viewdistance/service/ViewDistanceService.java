@@ -18,6 +18,9 @@ import java.util.concurrent.ConcurrentHashMap;
  *   Manages extended view distance with dual system:
  *   - Real chunks (0 to server view-distance): Handled by server naturally
  *   - Fake chunks (beyond server view-distance): Sent from packet cache
+ *   The applied distance is the player's target capped by ConnectionQualityMonitor
+ *   and by the render distance the client reports, never below the send distance,
+ *   then shrunk by ServerLoadController while the server is overloaded
  */
 @Service
 public class ViewDistanceService {
@@ -30,6 +33,11 @@ public class ViewDistanceService {
     private final PacketService packetService;
     private final LuckPermsService luckPermsService;
     private final MessageService messageService;
+    private final ClientChunkLedger clientChunkLedger;
+    private final FakeChunkTracker fakeChunkTracker;
+    private final ViewSnapshotTracker viewSnapshots;
+    private final ConnectionQualityMonitor connectionQuality;
+    private final ServerLoadController loadController;
 
     @Inject
     public ViewDistanceService(ConfigService configService,
@@ -38,7 +46,12 @@ public class ViewDistanceService {
                                FakeChunkService fakeChunkService,
                                PacketService packetService,
                                LuckPermsService luckPermsService,
-                               MessageService messageService) {
+                               MessageService messageService,
+                               ClientChunkLedger clientChunkLedger,
+                               FakeChunkTracker fakeChunkTracker,
+                               ViewSnapshotTracker viewSnapshots,
+                               ConnectionQualityMonitor connectionQuality,
+                               ServerLoadController loadController) {
         this.configService = configService;
         this.storageService = storageService;
         this.chunkService = chunkService;
@@ -46,6 +59,13 @@ public class ViewDistanceService {
         this.packetService = packetService;
         this.luckPermsService = luckPermsService;
         this.messageService = messageService;
+        this.clientChunkLedger = clientChunkLedger;
+        this.fakeChunkTracker = fakeChunkTracker;
+        this.viewSnapshots = viewSnapshots;
+        this.connectionQuality = connectionQuality;
+        this.loadController = loadController;
+        connectionQuality.addListener(this::updatePlayerView);
+        loadController.addListener(() -> Bukkit.getOnlinePlayers().forEach(this::updatePlayerView));
     }
 
     /**
@@ -59,11 +79,11 @@ public class ViewDistanceService {
             PlayerView playerView = new PlayerView(player, clamped);
             playerViews.put(player.getUniqueId(), playerView);
 
-            packetService.ensureClientRadius(player, clamped);
+            packetService.ensureClientRadius(player, effectiveDistance(player, playerView));
 
             Bukkit.getScheduler().runTaskLater(me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin.getPlugin(me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin.class), () -> {
                 if (!player.isOnline()) return;
-                packetService.ensureClientRadius(player, clamped);
+                packetService.ensureClientRadius(player, effectiveDistance(player, playerView));
             }, 5L);
 
             var msgCfg = configService.get().messages();
@@ -75,7 +95,6 @@ public class ViewDistanceService {
 
             Bukkit.getScheduler().runTaskLater(me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin.getPlugin(me.mapacheee.extendedhorizons.ExtendedHorizonsPlugin.class), () -> {
                 if (!player.isOnline()) return;
-                packetService.ensureClientRadius(player, clamped);
                 updatePlayerView(player);
             }, 20L);
         });
@@ -91,6 +110,8 @@ public class ViewDistanceService {
         }
 
         fakeChunkService.clearPlayerFakeChunks(player);
+        viewSnapshots.clear(player.getUniqueId());
+        connectionQuality.clear(player.getUniqueId());
     }
 
     /**
@@ -110,7 +131,6 @@ public class ViewDistanceService {
         view.setTargetDistance(clamped);
 
         storageService.savePlayerData(new me.mapacheee.extendedhorizons.shared.storage.PlayerData(player.getUniqueId(), clamped));
-        packetService.ensureClientRadius(player, clamped);
 
         updatePlayerView(player);
     }
@@ -186,10 +206,12 @@ public class ViewDistanceService {
             playerView.setTargetDistance(clampedTarget);
         }
 
+        int distance = effectiveDistance(player, playerView);
+        releaseDistantChunks(player, distance);
         packetService.ensureClientCenter(player);
-        packetService.ensureClientRadius(player, playerView.getTargetDistance());
+        packetService.ensureClientRadius(player, distance);
 
-        Set<Long> allNeededChunks = chunkService.computeCircularKeys(player, playerView.getTargetDistance());
+        Set<Long> allNeededChunks = chunkService.computeCircularKeys(player, distance);
         ChunkClassification classification = classifyChunks(player, allNeededChunks);
 
         if (configService.get().performance().fakeChunks().enabled() && !classification.fakeChunks.isEmpty()) {
@@ -204,7 +226,9 @@ public class ViewDistanceService {
         PlayerView playerView = playerViews.get(player.getUniqueId());
         if (playerView == null || !player.isOnline()) return;
 
-        int baseTarget = clampDistance(player, playerView.getTargetDistance());
+        int baseTarget = capDistance(player, clampDistance(player, playerView.getTargetDistance()));
+        playerView.setEffectiveDistance(baseTarget);
+        releaseDistantChunks(player, baseTarget);
         packetService.ensureClientCenter(player);
         packetService.ensureClientRadius(player, baseTarget);
 
@@ -216,6 +240,46 @@ public class ViewDistanceService {
         }
     }
 
+    /**
+     * The player's target with their connection's and client's caps applied; stored on the view
+     */
+    private int effectiveDistance(Player player, PlayerView playerView) {
+        int distance = capDistance(player, playerView.getTargetDistance());
+        playerView.setEffectiveDistance(distance);
+        return distance;
+    }
+
+    /**
+     * Caps a distance to the player's connection and, when cap-to-client is on, to their
+     * client's render distance; chunks past it would be thrown away. The client cap only
+     * trims the fake ring, real chunks up to the send distance are left to the server;
+     * last the server load reduction
+     */
+    private int capDistance(Player player, int distance) {
+        int capped = connectionQuality.cap(player, distance);
+        if (configService.get().viewDistance().capToClient()) {
+            int clientDistance = Math.max(player.getClientViewDistance(), fakeChunkService.getSendViewDistance(player));
+            capped = Math.min(capped, clientDistance);
+        }
+        return loadController.cap(player, capped);
+    }
+
+    /**
+     * Publishes the player's view snapshot, which moves their ring in the client chunk
+     * ledger, and unloads what the client holds past it that the server will not unload itself.
+     * Runs before the radius is sent, so a server radius packet racing it is judged by the new view
+     */
+    private void releaseDistantChunks(Player player, int radius) {
+        viewSnapshots.publish(player, radius);
+
+        List<Long> released = clientChunkLedger.releaseOutsideRing(player.getUniqueId(),
+                key -> packetService.isTrackedByServer(player, key));
+        if (!released.isEmpty()) {
+            fakeChunkTracker.removeAll(player.getUniqueId(), released);
+            packetService.unloadChunks(player, released);
+        }
+    }
+
     /**
      * Checks if a chunk is within the world border.
      * 
@@ -252,19 +316,19 @@ public class ViewDistanceService {
     }
 
     /**
-     * Classifies chunks into real (within server view-distance) and fake (beyond server view-distance)
+     * Classifies chunks into real (sent by the server itself) and fake (beyond the server's reach).
+     * Real means inside the player's own send distance, with per-world and per-player overrides,
+     * or already tracked by the server for this player.
      * Also filters out chunks outside the world border.
      */
     private ChunkClassification classifyChunks(Player player, Set<Long> allChunks) {
-        int serverViewDistance = fakeChunkService.getServerViewDistance();
+        int sendDistance = fakeChunkService.getSendViewDistance(player);
         int playerChunkX = player.getLocation().getBlockX() >> 4;
         int playerChunkZ = player.getLocation().getBlockZ() >> 4;
 
         Set<Long> realChunks = new HashSet<>();
         Set<Long> fakeChunks = new HashSet<>();
 
-        double serverRadiusSquared = (serverViewDistance + 0.5) * (serverViewDistance + 0.5);
-
         for (long key : allChunks) {
             int chunkX = (int) (key & 0xFFFFFFFFL);
             int chunkZ = (int) (key >> 32);
@@ -273,11 +337,8 @@ public class ViewDistanceService {
                 continue;
             }
             
-            int dx = chunkX - playerChunkX;
-            int dz = chunkZ - playerChunkZ;
-            double distanceSquared = dx * dx + dz * dz;
-
-            if (distanceSquared <= serverRadiusSquared) {
+            if (isWithinSendDistance(chunkX - playerChunkX, chunkZ - playerChunkZ, sendDistance)
+                    || packetService.isTrackedByServer(player, key)) {
                 realChunks.add(key);
             } else {
                 fakeChunks.add(key);
@@ -287,6 +348,16 @@ public class ViewDistanceService {
         return new ChunkClassification(realChunks, fakeChunks);
     }
 
+    /**
+     * Same shape as the server's chunk tracking view: a circle measured from the
+     * edge of the chunk next to the center, so it reaches a little past the radius
+     */
+    private static boolean isWithinSendDistance(int dx, int dz, int sendDistance) {
+        long x = Math.max(0, Math.abs(dx) - 1);
+        long z = Math.max(0, Math.abs(dz) - 1);
+        return x * x + z * z < (long) sendDistance * sendDistance;
+    }
+
     /**
      * Simple container for chunk classification result
      * realChunks are kept for potential future use (e.g., debugging, statistics)
@@ -0,0 +1,78 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.thewinterframework.service.annotation.Service;
+import me.mapacheee.extendedhorizons.viewdistance.entity.ViewSnapshot;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ *   The latest ViewSnapshot of every player
+ *   The main thread publishes one on each view update; packet listeners read it
+ *   instead of the player's location or PlayerView, which are not safe off the main
+ *   thread and may be mid-teleport
+ *   A snapshot is replaced whole, so readers always see one consistent state
+ *   Once the client's level is recreated (respawn, world change) the snapshot may name the
+ *   old world until the next view update, so worldOf reports none in between
+ */
+@Service
+public class ViewSnapshotTracker {
+
+    private final Map<UUID, ViewSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<UUID> levelChanged = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Publishes the player's current chunk and radius; main thread only
+     * @return the snapshot in effect, the previous one if nothing changed
+     */
+    public ViewSnapshot publish(Player player, int radius) {
+        Location location = player.getLocation();
+        UUID worldId = player.getWorld().getUID();
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+        ViewSnapshot snapshot = snapshots.compute(player.getUniqueId(), (id, current) -> {
+            if (current != null && current.worldId().equals(worldId) && current.chunkX() == chunkX
+                    && current.chunkZ() == chunkZ && current.radius() == radius) {
+                return current;
+            }
+            return new ViewSnapshot(worldId, chunkX, chunkZ, radius, current != null ? current.version() + 1 : 0L);
+        });
+        levelChanged.remove(player.getUniqueId());
+        return snapshot;
+    }
+
+    /**
+     * The client's level is being recreated; any thread
+     */
+    public void onLevelChange(UUID playerId) {
+        levelChanged.add(playerId);
+    }
+
+    /**
+     * World of the player's last snapshot, or null before the first one and between a
+     * level change and the next publish
+     */
+    public UUID worldOf(UUID playerId) {
+        if (levelChanged.contains(playerId)) {
+            return null;
+        }
+        ViewSnapshot snapshot = snapshots.get(playerId);
+        return snapshot != null ? snapshot.worldId() : null;
+    }
+
+    /**
+     * The last published snapshot, or null before the first view update
+     */
+    public ViewSnapshot get(UUID playerId) {
+        return snapshots.get(playerId);
+    }
+
+    public void clear(UUID playerId) {
+        snapshots.remove(playerId);
+        levelChanged.remove(playerId);
+    }
+}
@@ -0,0 +1,127 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import com.github.retrooper.packetevents.protocol.world.chunk.Column;
+import me.mapacheee.extendedhorizons.integration.packetevents.ColumnMemoryEstimator;
+import me.mapacheee.extendedhorizons.shared.service.ConfigService;
+import me.mapacheee.extendedhorizons.viewdistance.cache.ChunkDiskCache;
+import me.mapacheee.extendedhorizons.viewdistance.cache.MemoryBudget;
+import me.mapacheee.extendedhorizons.viewdistance.cache.OffHeapSlabStore;
+import me.mapacheee.extendedhorizons.viewdistance.cache.TinyLfuCache;
+import me.mapacheee.extendedhorizons.viewdistance.cache.WorldCacheProfile;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ *   Every cache tier of one world, owned by ChunkCacheManager
+ *   The partition budget is a child of the manager's budget, so each charge counts
+ *   against the world ceiling and the global ceiling at the same time
+ *   Chunk keys are only unique within a world, which is why nothing here is shared
+ *   except the off-heap slab store
+ *   Block changes are recorded per chunk as a mask of dirty sections; cached copies are
+ *   refreshed from the server when next served instead of being evicted on every change
+ */
+final class WorldCachePartition {
+
+    /**
+     * Sections changed since the chunk was cached and the server tick of the latest change.
+     * Bit i is section i above the world bottom; bit 63 stands for every section from 63 up.
+     */
+    record DirtySections(long mask, int tick) {
+        DirtySections merge(DirtySections other) {
+            return new DirtySections(mask | other.mask, Math.max(tick, other.tick));
+        }
+    }
+
+    final UUID worldId;
+    final String worldName;
+    final MemoryBudget budget;
+    final TinyLfuCache<Column> decodedCache;
+    final ChunkPacketCache packetCache;
+    volatile ChunkDiskCache diskCache;
+    volatile WorldCacheProfile profile;
+    volatile boolean dropped;
+    final Map<Long, DirtySections> dirtyChunks = new ConcurrentHashMap<>();
+    /**
+     * Captures handed to the demotion thread and not stored yet, counted per chunk key
+     */
+    final Map<Long, Integer> pendingCaptures = new ConcurrentHashMap<>();
+
+    final LongAdder decodedHits = new LongAdder();
+    final LongAdder packetHits = new LongAdder();
+    final LongAdder diskHits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder promotions = new LongAdder();
+    final LongAdder demotions = new LongAdder();
+
+    WorldCachePartition(UUID worldId, String worldName, WorldCacheProfile profile, ConfigService configService,
+                        OffHeapSlabStore slabStore, MemoryBudget parentBudget, long ceiling) {
+        this.worldId = worldId;
+        this.worldName = worldName;
+        this.profile = profile;
+        this.budget = new MemoryBudget(ceiling, parentBudget);
+        this.decodedCache = new TinyLfuCache<>(ceiling, ceiling / ColumnMemoryEstimator.FALLBACK_BYTES,
+                column -> ColumnMemoryEstimator.estimate(column) + TinyLfuCache.ENTRY_OVERHEAD_BYTES);
+        this.decodedCache.setMemoryBudget(budget);
+        this.packetCache = new ChunkPacketCache(configService, slabStore);
+        this.packetCache.setMemoryBudget(budget);
+    }
+
+    long memoryBytes() {
+        return decodedCache.weightedSize() + packetCache.getWeightedSizeBytes();
+    }
+
+    int memoryEntries() {
+        return decodedCache.size() + packetCache.getCacheSize();
+    }
+
+    /**
+     * Evicts encoded packets first, then decoded columns, until the given bytes are released
+     * @return bytes actually released
+     */
+    long release(long bytes) {
+        long released = packetCache.trimTo(Math.max(0L, packetCache.getWeightedSizeBytes() - bytes));
+        if (released < bytes) {
+            released += decodedCache.trimTo(Math.max(0L, decodedCache.weightedSize() - (bytes - released)));
+        }
+        return released;
+    }
+
+    /**
+     * Trims both memory tiers down to the given share of their weight
+     * @return bytes released
+     */
+    long shrink(double keep) {
+        long released = packetCache.trimTo((long) (packetCache.getWeightedSizeBytes() * keep));
+        released += decodedCache.trimTo((long) (decodedCache.weightedSize() * keep));
+        return released;
+    }
+
+    /**
+     * Whether any tier holds the chunk or a capture of it is still being stored
+     */
+    boolean holds(long key, int x, int z) {
+        ChunkDiskCache disk = diskCache;
+        return decodedCache.contains(key) || packetCache.isCached(x, z) || (disk != null && disk.contains(key))
+                || pendingCaptures.containsKey(key);
+    }
+
+    void beginCapture(long key) {
+        pendingCaptures.merge(key, 1, Integer::sum);
+    }
+
+    void endCapture(long key) {
+        pendingCaptures.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Empties the memory tiers, releasing their charge on the parent budget
+     */
+    void clearMemory() {
+        decodedCache.clear();
+        packetCache.clear();
+        dirtyChunks.clear();
+    }
+}
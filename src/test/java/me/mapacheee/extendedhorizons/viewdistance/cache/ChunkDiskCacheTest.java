@@ -0,0 +1,127 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkDiskCacheTest {
+
+    private static final String FORMAT = "protocol=772 codec=3";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesAndReadsBack() throws IOException {
+        ChunkDiskCache cache = new ChunkDiskCache(directory, 1024, false, FORMAT);
+
+        cache.write(key(3, -7), new byte[]{1, 2, 3});
+
+        assertTrue(cache.contains(key(3, -7)));
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.read(key(3, -7)));
+        assertEquals(3, cache.sizeBytes());
+    }
+
+    @Test
+    void rewritingAKeyReplacesItsSize() throws IOException {
+        ChunkDiskCache cache = new ChunkDiskCache(directory, 1024, false, FORMAT);
+
+        cache.write(key(0, 0), new byte[100]);
+        cache.write(key(0, 0), new byte[40]);
+
+        assertEquals(1, cache.size());
+        assertEquals(40, cache.sizeBytes());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedFirst() throws IOException {
+        ChunkDiskCache cache = new ChunkDiskCache(directory, 300, false, FORMAT);
+        cache.write(key(0, 0), new byte[100]);
+        cache.write(key(1, 0), new byte[100]);
+        cache.write(key(2, 0), new byte[100]);
+        cache.read(key(0, 0));
+
+        cache.write(key(3, 0), new byte[100]);
+
+        assertTrue(cache.contains(key(0, 0)));
+        assertFalse(cache.contains(key(1, 0)));
+        assertFalse(Files.exists(directory.resolve("1.0.bin")));
+        assertEquals(300, cache.sizeBytes());
+    }
+
+    @Test
+    void removedAndRewrittenKeysDoNotPileUp() throws IOException {
+        ChunkDiskCache cache = new ChunkDiskCache(directory, 250, false, FORMAT);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.write(key(0, 0), new byte[100]);
+            cache.remove(key(0, 0));
+        }
+        cache.write(key(0, 0), new byte[100]);
+        cache.write(key(1, 0), new byte[100]);
+        cache.write(key(2, 0), new byte[100]);
+
+        // Only the eldest entry goes, not the freshly rewritten one behind stale duplicates
+        assertFalse(cache.contains(key(0, 0)));
+        assertTrue(cache.contains(key(1, 0)));
+        assertTrue(cache.contains(key(2, 0)));
+        assertEquals(200, cache.sizeBytes());
+    }
+
+    @Test
+    void removeDeletesTheFile() throws IOException {
+        ChunkDiskCache cache = new ChunkDiskCache(directory, 1024, false, FORMAT);
+        cache.write(key(5, 5), new byte[10]);
+
+        cache.remove(key(5, 5));
+
+        assertFalse(cache.contains(key(5, 5)));
+        assertNull(cache.read(key(5, 5)));
+        assertFalse(Files.exists(directory.resolve("5.5.bin")));
+        assertEquals(0, cache.sizeBytes());
+    }
+
+    @Test
+    void persistentCacheIndexesPreviousFiles() throws IOException {
+        new ChunkDiskCache(directory, 1024, true, FORMAT).write(key(-2, 9), new byte[]{4, 5});
+
+        ChunkDiskCache reopened = new ChunkDiskCache(directory, 1024, true, FORMAT);
+
+        assertArrayEquals(new byte[]{4, 5}, reopened.read(key(-2, 9)));
+        assertEquals(2, reopened.sizeBytes());
+    }
+
+    @Test
+    void persistentCacheWrittenInAnotherFormatIsWiped() throws IOException {
+        new ChunkDiskCache(directory, 1024, true, "protocol=771 codec=3").write(key(-2, 9), new byte[]{4, 5});
+
+        ChunkDiskCache reopened = new ChunkDiskCache(directory, 1024, true, FORMAT);
+
+        assertFalse(reopened.contains(key(-2, 9)));
+        assertFalse(Files.exists(directory.resolve("-2.9.bin")));
+        assertEquals(0, reopened.sizeBytes());
+    }
+
+    @Test
+    void volatileCacheStartsEmpty() throws IOException {
+        new ChunkDiskCache(directory, 1024, false, FORMAT).write(key(1, 1), new byte[]{1});
+
+        ChunkDiskCache reopened = new ChunkDiskCache(directory, 1024, false, FORMAT);
+
+        assertFalse(reopened.contains(key(1, 1)));
+        assertFalse(Files.exists(directory.resolve("1.1.bin")));
+    }
+
+    private static long key(int x, int z) {
+        return ((long) z << 32) | (x & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,100 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class FrameCompressorTest {
+
+    private static final int CHUNK_DATA = 0x27;
+    private static final int THRESHOLD = 256;
+
+    @Test
+    void smallPacketIsSentUncompressed() {
+        byte[] body = {1, 2, 3};
+
+        byte[] frame = FrameCompressor.compress(CHUNK_DATA, body, THRESHOLD);
+
+        assertArrayEquals(new byte[]{0, CHUNK_DATA, 1, 2, 3}, frame);
+    }
+
+    @Test
+    void largePacketInflatesBackToIdAndBody() throws DataFormatException {
+        byte[] body = new byte[40_000];
+        new Random(3).nextBytes(body);
+        Arrays.fill(body, 0, 20_000, (byte) 0);
+
+        byte[] frame = FrameCompressor.compress(CHUNK_DATA, body, THRESHOLD);
+
+        int[] prefix = readVarInt(frame);
+        assertEquals(body.length + 1, prefix[0]);
+        byte[] data = inflate(frame, prefix[1], prefix[0]);
+        assertEquals(CHUNK_DATA, data[0]);
+        assertArrayEquals(body, Arrays.copyOfRange(data, 1, data.length));
+    }
+
+    @Test
+    void incompressibleBodyStillFits() throws DataFormatException {
+        byte[] body = new byte[100_000];
+        new Random(4).nextBytes(body);
+
+        byte[] frame = FrameCompressor.compress(0x80, body, 0);
+
+        int[] prefix = readVarInt(frame);
+        byte[] data = inflate(frame, prefix[1], prefix[0]);
+        // Packet ids of 128 and above take two VarInt bytes
+        assertEquals((byte) 0x80, data[0]);
+        assertEquals(1, data[1]);
+        assertArrayEquals(body, Arrays.copyOfRange(data, 2, data.length));
+    }
+
+    @Test
+    void fingerprintTellsBodiesApart() {
+        byte[] body = new byte[5000];
+        new Random(5).nextBytes(body);
+        byte[] changed = body.clone();
+        changed[2500] ^= 1;
+
+        assertEquals(FrameCompressor.fingerprint(body), FrameCompressor.fingerprint(body.clone()));
+        assertNotEquals(FrameCompressor.fingerprint(body), FrameCompressor.fingerprint(changed));
+    }
+
+    /**
+     * @return the value and the offset right after it
+     */
+    private static int[] readVarInt(byte[] frame) {
+        int value = 0;
+        int position = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = frame[position++];
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return new int[]{value, position};
+    }
+
+    private static byte[] inflate(byte[] frame, int offset, int length) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(frame, offset, frame.length - offset);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!inflater.finished()) {
+            int read = inflater.inflate(buffer);
+            out.write(buffer, 0, read);
+        }
+        inflater.end();
+        byte[] data = out.toByteArray();
+        assertEquals(length, data.length);
+        return data;
+    }
+}
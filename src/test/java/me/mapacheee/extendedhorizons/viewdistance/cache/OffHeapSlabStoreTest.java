@@ -0,0 +1,112 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapSlabStoreTest {
+
+    private static final long SLAB_BYTES = 4 * 1024 * 1024;
+
+    @Test
+    void readsBackWhatWasAllocated() {
+        OffHeapSlabStore store = new OffHeapSlabStore(SLAB_BYTES);
+        byte[] data = payload(3000, (byte) 7);
+
+        long handle = store.allocate(data);
+
+        assertNotEquals(OffHeapSlabStore.NO_HANDLE, handle);
+        assertEquals(3000, OffHeapSlabStore.lengthOf(handle));
+        assertArrayEquals(data, store.read(handle));
+        assertEquals(1, store.stats().liveAllocations());
+    }
+
+    @Test
+    void freedHandleReadsNull() {
+        OffHeapSlabStore store = new OffHeapSlabStore(SLAB_BYTES);
+        long handle = store.allocate(payload(2000, (byte) 1));
+
+        store.free(handle);
+
+        assertNull(store.read(handle));
+        assertEquals(0, store.stats().liveAllocations());
+    }
+
+    @Test
+    void staleHandleDoesNotSeeNextPayloadInSameSlot() {
+        OffHeapSlabStore store = new OffHeapSlabStore(SLAB_BYTES);
+        long stale = store.allocate(payload(2000, (byte) 1));
+        store.free(stale);
+
+        long fresh = store.allocate(payload(2000, (byte) 2));
+
+        assertNull(store.read(stale));
+        assertArrayEquals(payload(2000, (byte) 2), store.read(fresh));
+    }
+
+    @Test
+    void staleHandleStaysDeadAfterItsSlabIsReleasedAndReused() {
+        OffHeapSlabStore store = new OffHeapSlabStore(SLAB_BYTES);
+        long stale = store.allocate(payload(2000, (byte) 1));
+        store.free(stale);
+        assertEquals(1, store.releaseEmptySlabs());
+        assertEquals(0, store.stats().slabs());
+
+        long fresh = store.allocate(payload(2000, (byte) 2));
+
+        assertEquals(1, store.stats().slabs());
+        assertNull(store.read(stale));
+        assertArrayEquals(payload(2000, (byte) 2), store.read(fresh));
+
+        // Freeing the stale handle must not release the new payload's slot
+        store.free(stale);
+        assertArrayEquals(payload(2000, (byte) 2), store.read(fresh));
+        assertEquals(1, store.stats().liveAllocations());
+    }
+
+    @Test
+    void refusesEmptyAndOversizedPayloads() {
+        OffHeapSlabStore store = new OffHeapSlabStore(SLAB_BYTES);
+
+        assertEquals(OffHeapSlabStore.NO_HANDLE, store.allocate(new byte[0]));
+        assertEquals(OffHeapSlabStore.NO_HANDLE, store.allocate(new byte[OffHeapSlabStore.maxPayloadBytes() + 1]));
+        assertEquals(2, store.stats().failedAllocations());
+    }
+
+    @Test
+    void stopsAtMaximumBytes() {
+        OffHeapSlabStore store = new OffHeapSlabStore(SLAB_BYTES);
+        byte[] data = payload(OffHeapSlabStore.maxPayloadBytes(), (byte) 3);
+
+        for (int i = 0; i < 4; i++) {
+            assertNotEquals(OffHeapSlabStore.NO_HANDLE, store.allocate(data));
+        }
+
+        assertEquals(OffHeapSlabStore.NO_HANDLE, store.allocate(data));
+        assertEquals(SLAB_BYTES, store.stats().reservedBytes());
+    }
+
+    @Test
+    void slotPaddingIsAtMostAQuarter() {
+        OffHeapSlabStore store = new OffHeapSlabStore(SLAB_BYTES);
+        for (int length = 1100; length < OffHeapSlabStore.maxPayloadBytes(); length = length * 3 / 2) {
+            long handle = store.allocate(new byte[length]);
+            int slot = OffHeapSlabStore.slotSize(handle);
+            assertTrue(slot >= length && slot <= length * 1.25 + 256, "slot " + slot + " for " + length);
+            store.free(handle);
+            store.releaseEmptySlabs();
+        }
+    }
+
+    private static byte[] payload(int length, byte value) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, value);
+        return data;
+    }
+}
@@ -0,0 +1,108 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PacketCodecsTest {
+
+    @Test
+    void everyCodecRoundTrips() {
+        for (PacketCodec codec : PacketCodecs.benchmarkCandidates()) {
+            for (byte[] data : samples()) {
+                byte[] stored = PacketCodecs.encode(codec, data);
+
+                assertEquals(codec.id(), stored[0] & 0xFF);
+                assertEquals(data.length, PacketCodecs.originalLength(stored));
+                assertArrayEquals(data, PacketCodecs.decode(stored), codec.name() + " on " + data.length + " bytes");
+            }
+        }
+    }
+
+    @Test
+    void compressedOutputStaysWithinTheBound() {
+        for (PacketCodec codec : PacketCodecs.benchmarkCandidates()) {
+            for (byte[] data : samples()) {
+                byte[] stored = PacketCodecs.encode(codec, data);
+                assertTrue(stored.length - 5 <= codec.maxCompressedLength(data.length), codec.name());
+            }
+        }
+    }
+
+    @Test
+    void lz4ShrinksRepetitiveChunkData() {
+        byte[] data = chunkLike(64 * 1024, new Random(1));
+
+        byte[] stored = PacketCodecs.encode(PacketCodecs.LZ4, data);
+
+        assertTrue(stored.length < data.length / 2, "stored " + stored.length);
+    }
+
+    @Test
+    void decodesPacketsStoredWithAnotherCodec() {
+        byte[] data = chunkLike(20_000, new Random(2));
+        byte[] stored = PacketCodecs.encode(PacketCodecs.forName("deflate", 1), data);
+
+        // The configured codec changed since; the header still names the one that wrote it
+        assertArrayEquals(data, PacketCodecs.decode(stored));
+    }
+
+    @Test
+    void resolvesCodecNamesFromConfig() {
+        assertSame(PacketCodecs.LZ4, PacketCodecs.forName(" LZ4 ", 0));
+        assertSame(PacketCodecs.NONE, PacketCodecs.forName(null, 0));
+        assertSame(PacketCodecs.NONE, PacketCodecs.forName("zstd", 0));
+        assertEquals("deflate-3", PacketCodecs.forName("gzip", 3).name());
+    }
+
+    @Test
+    void rejectsUnknownCodecIds() {
+        byte[] stored = PacketCodecs.encode(PacketCodecs.NONE, new byte[]{1, 2, 3});
+        stored[0] = 42;
+
+        assertThrows(IllegalStateException.class, () -> PacketCodecs.decode(stored));
+    }
+
+    private static List<byte[]> samples() {
+        Random random = new Random(7);
+        List<byte[]> samples = new ArrayList<>();
+        for (int length = 0; length <= 20; length++) {
+            samples.add(chunkLike(length, random));
+        }
+        byte[] noise = new byte[50_000];
+        random.nextBytes(noise);
+        samples.add(noise);
+        samples.add(new byte[100_000]);
+        samples.add(chunkLike(200_000, random));
+        // A repeat farther back than LZ4's 64KB window
+        byte[] far = new byte[140_000];
+        random.nextBytes(far);
+        System.arraycopy(far, 0, far, 70_000, 1000);
+        samples.add(far);
+        return samples;
+    }
+
+    /**
+     * Short runs and repeated palette entries, like the sections of a chunk packet
+     */
+    private static byte[] chunkLike(int length, Random random) {
+        byte[] data = new byte[length];
+        int i = 0;
+        while (i < length) {
+            int run = 1 + random.nextInt(24);
+            byte value = (byte) random.nextInt(6);
+            for (int j = 0; j < run && i < length; j++) {
+                data[i++] = value;
+            }
+        }
+        return data;
+    }
+}
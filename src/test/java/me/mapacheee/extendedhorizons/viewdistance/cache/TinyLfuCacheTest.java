@@ -0,0 +1,149 @@
+package me.mapacheee.extendedhorizons.viewdistance.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TinyLfuCacheTest {
+
+    @Test
+    void countsHitsAndMisses() {
+        TinyLfuCache<byte[]> cache = cache(1000);
+        cache.put(key(1, 1), new byte[]{9});
+
+        assertArrayEquals(new byte[]{9}, cache.get(key(1, 1)));
+        assertNull(cache.get(key(2, 2)));
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void staysWithinItsMaximumWeight() {
+        TinyLfuCache<byte[]> cache = cache(1000);
+
+        for (int i = 0; i < 50; i++) {
+            cache.put(key(i, 0), new byte[100]);
+        }
+
+        assertTrue(cache.weightedSize() <= 1000);
+        assertEquals(10, cache.size());
+        assertEquals(40, cache.evictionCount());
+    }
+
+    @Test
+    void frequentlyReadEntriesSurviveAOneOffScan() {
+        TinyLfuCache<byte[]> cache = cache(1000);
+        for (int i = 0; i < 10; i++) {
+            cache.put(key(i, 0), new byte[100]);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 10; i++) {
+                cache.get(key(i, 0));
+            }
+        }
+
+        for (int i = 100; i < 200; i++) {
+            cache.put(key(i, 0), new byte[100]);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cache.contains(key(i, 0)), "hot chunk " + i);
+        }
+    }
+
+    @Test
+    void replacingAKeyAdjustsItsWeightAndReportsTheOldValue() {
+        TinyLfuCache<byte[]> cache = cache(1000);
+        List<TinyLfuCache.RemovalCause> causes = new ArrayList<>();
+        cache.setRemovalListener((key, value, cause) -> causes.add(cause));
+
+        cache.put(key(0, 0), new byte[100]);
+        cache.put(key(0, 0), new byte[30]);
+
+        assertEquals(1, cache.size());
+        assertEquals(30, cache.weightedSize());
+        assertEquals(List.of(TinyLfuCache.RemovalCause.REPLACED), causes);
+    }
+
+    @Test
+    void refusesAValueHeavierThanTheWholeCache() {
+        TinyLfuCache<byte[]> cache = cache(100);
+
+        assertFalse(cache.put(key(0, 0), new byte[101]));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void oversizedReplacementDropsTheOldValue() {
+        TinyLfuCache<byte[]> cache = cache(100);
+        List<TinyLfuCache.RemovalCause> causes = new ArrayList<>();
+        cache.setRemovalListener((key, value, cause) -> causes.add(cause));
+        cache.put(key(0, 0), new byte[50]);
+
+        assertFalse(cache.put(key(0, 0), new byte[101]));
+
+        assertNull(cache.peek(key(0, 0)));
+        assertEquals(0, cache.weightedSize());
+        assertEquals(List.of(TinyLfuCache.RemovalCause.EXPLICIT), causes);
+    }
+
+    @Test
+    void shrinkingTheMaximumEvictsAtOnce() {
+        TinyLfuCache<byte[]> cache = cache(1000);
+        for (int i = 0; i < 10; i++) {
+            cache.put(key(i, 0), new byte[100]);
+        }
+
+        cache.setMaximumWeight(300);
+
+        assertTrue(cache.weightedSize() <= 300);
+        assertEquals(300, cache.maximumWeight());
+    }
+
+    @Test
+    void findsAndDropsWholeRegions() {
+        TinyLfuCache<byte[]> cache = cache(10_000);
+        cache.put(key(0, 0), new byte[1]);
+        cache.put(key(31, 31), new byte[1]);
+        cache.put(key(32, 0), new byte[1]);
+        cache.put(key(-1, 0), new byte[1]);
+
+        assertEquals(Set.of(key(0, 0), key(-1, 0)), cache.presentKeys(List.of(key(0, 0), key(-1, 0), key(5, 5))));
+
+        assertEquals(2, cache.removeRegion(0, 0));
+        assertFalse(cache.contains(key(31, 31)));
+        assertTrue(cache.contains(key(32, 0)));
+        assertTrue(cache.contains(key(-1, 0)));
+    }
+
+    @Test
+    void chargesItsWeightToASharedBudget() {
+        MemoryBudget budget = new MemoryBudget(10_000);
+        TinyLfuCache<byte[]> cache = cache(1000);
+        cache.put(key(0, 0), new byte[100]);
+
+        cache.setMemoryBudget(budget);
+        cache.put(key(1, 0), new byte[50]);
+        assertEquals(150, budget.used());
+
+        cache.clear();
+        assertEquals(0, budget.used());
+    }
+
+    private static TinyLfuCache<byte[]> cache(long maximumWeight) {
+        return new TinyLfuCache<>(maximumWeight, 64, value -> value.length);
+    }
+
+    private static long key(int x, int z) {
+        return ((long) z << 32) | (x & 0xFFFFFFFFL);
+    }
+}
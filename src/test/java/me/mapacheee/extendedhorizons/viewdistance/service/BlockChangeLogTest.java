@@ -0,0 +1,113 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockChangeLogTest {
+
+    private final World world = world();
+    private final World otherWorld = world();
+    private final BlockChangeLog log = new BlockChangeLog();
+
+    @Test
+    void reportsPositionsChangedAfterTheStamp() {
+        log.blockChanged(world, 1, 70, 2);
+        long since = log.sequence();
+
+        log.blockChanged(world, 3, 71, 4);
+        log.blockChanged(world, 5, -60, 6);
+
+        BlockChangeLog.ChunkDelta delta = log.changesSince(world, 0, 0, since);
+        assertEquals(Set.of(4, -4), delta.sections().keySet());
+        assertEquals(Set.of(position(3, 71, 4)), Set.copyOf(delta.sections().get(4)));
+        assertEquals(Set.of(position(5, -60, 6)), Set.copyOf(delta.sections().get(-4)));
+    }
+
+    @Test
+    void otherChunksAndWorldsStayClean() {
+        long since = log.sequence();
+
+        log.blockChanged(world, 1, 70, 2);
+
+        assertTrue(log.changesSince(world, 1, 0, since).isEmpty());
+        assertTrue(log.changesSince(otherWorld, 0, 0, since).isEmpty());
+        assertTrue(log.changesSince(world, 0, 0, log.sequence()).isEmpty());
+    }
+
+    @Test
+    void crowdedSectionCountsAsChangedWhole() {
+        long since = log.sequence();
+
+        for (int i = 0; i < 300; i++) {
+            log.blockChanged(world, i & 15, 64 + (i >> 8), (i >> 4) & 15);
+        }
+
+        ShortSet positions = log.changesSince(world, 0, 0, since).sections().get(4);
+        assertSame(BlockChangeLog.ALL_POSITIONS, positions);
+    }
+
+    @Test
+    void bulkChangeCannotBeAnsweredWithPositions() {
+        long since = log.sequence();
+
+        log.chunkChanged(world, 0, 0);
+
+        assertNull(log.changesSince(world, 0, 0, since));
+        assertNotNull(log.changesSince(world, 0, 0, log.sequence()));
+    }
+
+    @Test
+    void stampsOlderThanTheRetentionWindowAreRefused() {
+        long old = log.sequence();
+        log.blockChanged(world, 1, 70, 2);
+        long recent = log.sequence();
+
+        log.prune();
+        assertNotNull(log.changesSince(world, 0, 0, old));
+
+        log.blockChanged(world, 1, 70, 3);
+        log.prune();
+
+        assertNull(log.changesSince(world, 0, 0, old));
+        assertEquals(1, log.changesSince(world, 0, 0, recent).sections().get(4).size());
+    }
+
+    @Test
+    void clearingAWorldForgetsItsChanges() {
+        long since = log.sequence();
+        log.blockChanged(world, 1, 70, 2);
+        log.chunkChanged(world, 0, 0);
+
+        log.clearWorld(world.getUID());
+
+        assertTrue(log.changesSince(world, 0, 0, since).isEmpty());
+    }
+
+    private static short position(int x, int y, int z) {
+        return (short) ((x & 15) << 8 | (z & 15) << 4 | (y & 15));
+    }
+
+    private static World world() {
+        UUID id = UUID.randomUUID();
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getUID" -> id;
+                    case "getMinHeight" -> -64;
+                    case "getMaxHeight" -> 320;
+                    case "hashCode" -> id.hashCode();
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
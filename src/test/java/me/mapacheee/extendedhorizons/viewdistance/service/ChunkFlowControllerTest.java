@@ -0,0 +1,84 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkFlowControllerTest {
+
+    private static final float CEILING = 64.0F;
+
+    @Test
+    void startsBelowTheConfiguredMaximum() {
+        assertEquals(9.0F, new ChunkFlowController.Flow(64).rate);
+        assertEquals(4.0F, new ChunkFlowController.Flow(4).rate);
+    }
+
+    @Test
+    void timelyAcknowledgementsAddOneChunkEach() {
+        ChunkFlowController.Flow flow = new ChunkFlowController.Flow(64);
+
+        assertFalse(flow.acknowledged(ms(0), ms(20), CEILING));
+        assertFalse(flow.acknowledged(ms(50), ms(75), CEILING));
+
+        assertEquals(11.0F, flow.rate);
+    }
+
+    @Test
+    void firstAcknowledgementOpensTheWindow() {
+        ChunkFlowController.Flow flow = new ChunkFlowController.Flow(64);
+        flow.outstanding = 1;
+
+        flow.acknowledged(ms(0), ms(20), CEILING);
+
+        assertEquals(0, flow.outstanding);
+        assertEquals(10, flow.maxUnacknowledged);
+    }
+
+    @Test
+    void slowAcknowledgementHalvesTheRate() {
+        ChunkFlowController.Flow flow = new ChunkFlowController.Flow(64);
+        flow.acknowledged(ms(0), ms(20), CEILING);
+
+        // 20 ms is the best round trip; anything over 2 x 20 + 50 ms counts as queueing
+        assertTrue(flow.acknowledged(ms(100), ms(200), CEILING));
+
+        assertEquals(5.0F, flow.rate);
+    }
+
+    @Test
+    void backlogIsCutOncePerRoundTrip() {
+        ChunkFlowController.Flow flow = new ChunkFlowController.Flow(64);
+        flow.acknowledged(ms(0), ms(20), CEILING);
+
+        assertTrue(flow.acknowledged(ms(100), ms(300), CEILING));
+        // Sent before the cut took effect: same congestion, no second cut
+        assertFalse(flow.acknowledged(ms(110), ms(310), CEILING));
+        assertFalse(flow.acknowledged(ms(120), ms(320), CEILING));
+        assertEquals(5.0F, flow.rate);
+
+        assertTrue(flow.acknowledged(ms(400), ms(600), CEILING));
+        assertEquals(2.5F, flow.rate);
+    }
+
+    @Test
+    void rateStaysBetweenTheFloorAndTheCeiling() {
+        ChunkFlowController.Flow flow = new ChunkFlowController.Flow(64);
+        for (int i = 0; i < 20; i++) {
+            flow.acknowledged(ms(i * 100), ms(i * 100 + 20), 12.0F);
+        }
+        assertEquals(12.0F, flow.rate);
+
+        for (int i = 0; i < 20; i++) {
+            long sentAt = ms(10_000 + i * 1000);
+            flow.acknowledged(sentAt, sentAt + ms(500), 12.0F);
+        }
+        assertEquals(0.5F, flow.rate);
+    }
+
+    private static long ms(long millis) {
+        return millis * 1_000_000L;
+    }
+}
@@ -0,0 +1,58 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientChunkLedgerTest {
+
+    private static final UUID PLAYER = UUID.randomUUID();
+    private static final UUID WORLD = UUID.randomUUID();
+    private static final long KEY = 42L;
+    private static final long FINGERPRINT = 0x1234_5678_9ABC_DEF0L;
+    private static final int LENGTH = 30_000;
+
+    @Test
+    void fullSendIsRecognisedByItsBody() {
+        ClientChunkLedger ledger = new ClientChunkLedger(new ViewSnapshotTracker());
+        ledger.record(PLAYER, WORLD, KEY, 7L, FINGERPRINT, LENGTH);
+
+        assertTrue(ledger.holdsBody(PLAYER, WORLD, KEY, FINGERPRINT, LENGTH));
+        assertFalse(ledger.holdsBody(PLAYER, WORLD, KEY, FINGERPRINT + 1, LENGTH));
+        assertFalse(ledger.holdsBody(PLAYER, WORLD, KEY, FINGERPRINT, LENGTH + 1));
+        assertFalse(ledger.holdsBody(PLAYER, UUID.randomUUID(), KEY, FINGERPRINT, LENGTH));
+    }
+
+    @Test
+    void partialUpdateForgetsTheBody() {
+        ClientChunkLedger ledger = new ClientChunkLedger(new ViewSnapshotTracker());
+        ledger.record(PLAYER, WORLD, KEY, 7L, FINGERPRINT, LENGTH);
+        ledger.record(PLAYER, WORLD, KEY, 9L);
+
+        assertTrue(ledger.holds(PLAYER, KEY));
+        assertFalse(ledger.holdsBody(PLAYER, WORLD, KEY, FINGERPRINT, LENGTH));
+    }
+
+    @Test
+    void bodyIsOnlyAttachedToARecordedChunk() {
+        ClientChunkLedger ledger = new ClientChunkLedger(new ViewSnapshotTracker());
+        ledger.attachBody(PLAYER, WORLD, KEY, FINGERPRINT, LENGTH);
+        assertFalse(ledger.holds(PLAYER, KEY));
+
+        ledger.record(PLAYER, WORLD, KEY, 7L);
+        ledger.attachBody(PLAYER, WORLD, KEY, FINGERPRINT, LENGTH);
+        assertTrue(ledger.holdsBody(PLAYER, WORLD, KEY, FINGERPRINT, LENGTH));
+    }
+
+    @Test
+    void forgottenChunkHoldsNoBody() {
+        ClientChunkLedger ledger = new ClientChunkLedger(new ViewSnapshotTracker());
+        ledger.record(PLAYER, WORLD, KEY, 7L, FINGERPRINT, LENGTH);
+        ledger.forget(PLAYER, KEY);
+
+        assertFalse(ledger.holdsBody(PLAYER, WORLD, KEY, FINGERPRINT, LENGTH));
+    }
+}
@@ -0,0 +1,79 @@
+package me.mapacheee.extendedhorizons.viewdistance.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EgressBudgetTest {
+
+    private static final long CHUNK = 16 * 1024;
+    private static final UUID FIRST = UUID.randomUUID();
+    private static final UUID SECOND = UUID.randomUUID();
+
+    @Test
+    void unlimitedGrantsEverything() {
+        EgressBudget budget = new EgressBudget(() -> 0L);
+        budget.endTick();
+
+        assertEquals(50, budget.take(FIRST, 50));
+    }
+
+    @Test
+    void idleTicksDoNotAddUpToABurst() {
+        EgressBudget budget = new EgressBudget(() -> 20 * CHUNK);
+
+        for (int i = 0; i < 40; i++) {
+            budget.endTick();
+        }
+
+        assertEquals(1, budget.take(FIRST, 100));
+    }
+
+    @Test
+    void tickAllowanceIsSplitBetweenLastTicksDemanders() {
+        EgressBudget budget = new EgressBudget(() -> 20 * 4 * CHUNK);
+        budget.endTick();
+        assertEquals(1, budget.take(FIRST, 1));
+        assertEquals(1, budget.take(SECOND, 1));
+
+        budget.endTick();
+
+        assertEquals(2, budget.take(FIRST, 10));
+        assertEquals(2, budget.take(SECOND, 10));
+    }
+
+    @Test
+    void overdrawnChunksAreRepaidInLaterTicks() {
+        EgressBudget budget = new EgressBudget(() -> 20 * CHUNK);
+        budget.endTick();
+        assertEquals(1, budget.take(FIRST, 5));
+
+        budget.sentChunk(5 * CHUNK);
+
+        for (int i = 0; i < 4; i++) {
+            budget.endTick();
+            assertEquals(0, budget.take(FIRST, 5), "tick " + i);
+        }
+        int granted = 0;
+        for (int i = 0; i < 4 && granted == 0; i++) {
+            budget.endTick();
+            granted = budget.take(FIRST, 5);
+        }
+        assertEquals(1, granted);
+    }
+
+    @Test
+    void sentBytesShowUpInTheHorizonRate() {
+        EgressBudget budget = new EgressBudget(() -> 0L);
+
+        for (int i = 0; i < 100; i++) {
+            budget.sentChunk(CHUNK);
+            budget.endTick();
+        }
+
+        assertTrue(Math.abs(budget.getHorizonRate() - 20 * CHUNK) < CHUNK);
+    }
+}